@@ -1,6 +1,16 @@
-from fastapi import FastAPI, HTTPException
+import hashlib
+import json
+
+from fastapi import FastAPI, HTTPException, Request, Response
 from fastapi.middleware.cors import CORSMiddleware
 
+try:
+    import cbor2  # optional: binary snapshots for clients that accept application/cbor
+except ImportError:
+    cbor2 = None
+
+import publisher
+from sources import fixed, simulate
 from sources.fixed import static
 from sources.simulate import simulated, start as sim_start
 
@@ -33,24 +43,63 @@ value_sources = {
     "current3": lambda: float(Current_value3),
 }
 
+# --- Sample time (epoch seconds) per key, for sources that keep their own clock. Keys without one
+# stay plain values even with ?ts=1: a "now" stamp would make a frozen key look freshly sampled
+sample_time = {
+    "current": lambda: getattr(current_value, "ts", None),
+}
 
 @app.get("/health")
 def health():
     return {"status": "ok", "mode": MODE, "keys": list(value_sources.keys())}
 
 
-@app.get("/api/snapshot")
-def snapshot():
-    """Return a dictionary of all values."""
+def build_snapshot(ts: bool = False):
+    """Dictionary of all values; with ts each value that has its own sample time is
+    {"v": value, "ts": sample_epoch_millis} (the time of that key's last sample)."""
     out = {}
     for key, fn in value_sources.items():
         try:
-            out[key] = fn()
+            value = fn()
         except Exception as e:
-            out[key] = None  # gracefully handle errors
+            value = None  # gracefully handle errors
+        clock = sample_time.get(key) if ts and value is not None else None
+        sampled = clock() if clock is not None else None
+        if sampled is not None:
+            out[key] = {"v": value, "ts": int(sampled * 1000)}
+        else:
+            out[key] = value
     return out
 
 
+# --- Push every sensor update to a local UI (GAUGES_INGEST=udp|unix|shm); HTTP stays available
+if publisher.start(lambda: build_snapshot(ts=True)):
+    simulate.listeners.append(publisher.notify)
+    fixed.listeners.append(publisher.notify)
+
+
+@app.get("/api/snapshot")
+def snapshot(request: Request, ts: int = 0):
+    """Return a dictionary of all values.
+
+    With ?ts=1 each value with its own sample time is sent as {"v": value, "ts": sample_epoch_millis}
+    so the UI can trace sensor-to-pixel latency and tell a key that stopped updating.
+    Clients sending "Accept: application/cbor" get the same dictionary CBOR-encoded
+    (when cbor2 is installed); everyone else gets JSON.
+    Every response carries an ETag of its body; a matching If-None-Match gets a 304.
+    """
+    out = build_snapshot(bool(ts))
+    if cbor2 is not None and "application/cbor" in request.headers.get("accept", ""):
+        body, media_type = cbor2.dumps(out), "application/cbor"
+    else:
+        body, media_type = json.dumps(out, separators=(",", ":")).encode("utf-8"), "application/json"
+    # Unchanged snapshots are answered with 304 so the UI skips decode and apply
+    etag = '"' + hashlib.blake2b(body, digest_size=8).hexdigest() + '"'
+    if request.headers.get("if-none-match") == etag:
+        return Response(status_code=304, headers={"ETag": etag})
+    return Response(content=body, media_type=media_type, headers={"ETag": etag})
+
+
 @app.get("/api/value/{key}")
 def get_value(key: str):
     """Optional: fetch a single value (for debugging/testing)."""
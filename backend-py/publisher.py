@@ -0,0 +1,128 @@
+"""Push snapshots to a UI on the same machine (no HTTP polling).
+
+Enabled with GAUGES_INGEST=udp|unix|shm (the UI's ingest.transport must match):
+  udp  : one datagram per update to 127.0.0.1:GAUGES_INGEST_PORT (default 8765)
+  unix : length-prefixed frames (4-byte big-endian) over the stream socket at
+         GAUGES_INGEST_PATH (default /tmp/gauges-ingest.sock), reconnecting as needed
+  shm  : values written in place into the ring at GAUGES_INGEST_SHM
+         (default /dev/shm/gauges.ring), see shm_writer.py
+
+Each sensor update sends only the keys whose entry changed, value or ts (a delta); a full snapshot goes
+out at least once per second so a UI that starts later catches up. Frames are CBOR
+when cbor2 is installed, JSON otherwise (the UI detects which).
+"""
+import json
+import os
+import socket
+import struct
+import threading
+import time
+
+try:
+    import cbor2
+except ImportError:
+    cbor2 = None
+
+FULL_EVERY_S = 1.0
+
+_wake = threading.Event()
+_running = False
+
+
+def notify():
+    """Call from a sensor source after every update."""
+    _wake.set()
+
+
+def _encode(payload):
+    if cbor2 is not None:
+        return cbor2.dumps(payload)
+    return json.dumps(payload, separators=(",", ":")).encode("utf-8")
+
+
+class _UdpSender:
+    def __init__(self, port):
+        self.addr = ("127.0.0.1", port)
+        self.sock = socket.socket(socket.AF_INET, socket.SOCK_DGRAM)
+
+    def publish(self, payload):
+        try:
+            self.sock.sendto(_encode(payload), self.addr)
+        except OSError:
+            pass  # UI not listening yet
+
+
+class _UnixSender:
+    def __init__(self, path):
+        self.path = path
+        self.sock = None
+
+    def publish(self, payload):
+        frame = _encode(payload)
+        if self.sock is None:
+            try:
+                s = socket.socket(socket.AF_UNIX, socket.SOCK_STREAM)
+                s.connect(self.path)
+                self.sock = s
+            except OSError:
+                return  # UI not listening yet; retry on the next update
+        try:
+            self.sock.sendall(struct.pack(">I", len(frame)) + frame)
+        except OSError:
+            self.sock.close()
+            self.sock = None
+
+
+class _ShmSender:
+    def __init__(self, path):
+        from shm_writer import ShmWriter
+        self.writer = ShmWriter(path)
+
+    def publish(self, payload):
+        for key, entry in payload.items():
+            if isinstance(entry, dict):
+                if entry.get("v") is not None:
+                    self.writer.write(key, entry["v"], entry.get("ts"))
+            elif entry is not None:
+                self.writer.write(key, entry)
+
+
+def _loop(build_snapshot, sender):
+    last = {}
+    last_full = 0.0
+    while _running:
+        _wake.wait(timeout=FULL_EVERY_S)
+        _wake.clear()
+        snap = build_snapshot()
+        now = time.monotonic()
+        if now - last_full >= FULL_EVERY_S:
+            out = snap
+            last_full = now
+        else:
+            out = {k: v for k, v in snap.items() if v != last.get(k)}
+        last = snap
+        if out:
+            sender.publish(out)
+
+
+def start(build_snapshot):
+    """Start publishing if GAUGES_INGEST selects a transport; returns the transport name or None."""
+    global _running
+    transport = os.environ.get("GAUGES_INGEST", "").strip().lower()
+    if _running or transport not in ("udp", "unix", "shm"):
+        return None
+    if transport == "udp":
+        sender = _UdpSender(int(os.environ.get("GAUGES_INGEST_PORT", "8765")))
+    elif transport == "shm":
+        sender = _ShmSender(os.environ.get("GAUGES_INGEST_SHM", "/dev/shm/gauges.ring"))
+    else:
+        sender = _UnixSender(os.environ.get("GAUGES_INGEST_PATH", "/tmp/gauges-ingest.sock"))
+    _running = True
+    threading.Thread(target=_loop, args=(build_snapshot, sender), daemon=True).start()
+    return transport
+
+
+def stop():
+    global _running
+    _running = False
+    _wake.set()
@@ -0,0 +1,81 @@
+"""Fixed-layout shared-memory ring read in place by the UI (ingest.transport=shm).
+
+Layout (little-endian; must match ui-java SharedMemorySource):
+  header (64 B): magic "GSHM", layout u32 = 2, slot_count u32, slot_size u32 = 64,
+                 global_seq u64 @16, instance u64 @24
+  slot   (64 B): seq u64 (odd while writing), value f64, ts_millis i64 (0 = no sample time),
+                 key_len u8, key bytes (UTF-8, max 35), crc32 u32 @60 of bytes 8 .. 25+key_len
+
+Each key gets a slot on first write. A write is a seqlock: seq -> odd, fields and checksum,
+seq -> even, then global_seq += 1 so the reader knows something moved. Single writer only.
+Python stores carry no release ordering, so on a weakly ordered CPU (ARM) the reader may see
+the even seq before the fields; it verifies the CRC32 and re-reads the slot when it does not match.
+"""
+import mmap
+import os
+import struct
+import time
+import zlib
+
+MAGIC = b"GSHM"
+LAYOUT = 2
+HEADER_SIZE = 64
+SLOT_SIZE = 64
+KEY_MAX = SLOT_SIZE - 29
+CRC_OFFSET = 60
+
+_HEADER = struct.Struct("<4sIII")
+_U64 = struct.Struct("<Q")
+_FIELDS = struct.Struct("<dqB")
+_U32 = struct.Struct("<I")
+
+
+class ShmWriter:
+    def __init__(self, path="/dev/shm/gauges.ring", slots=256):
+        self.path = path
+        self.slots = slots
+        self.index = {}
+        self.raw = [b""] * slots
+        self.seq = [0] * slots
+        self.global_seq = 0
+        size = HEADER_SIZE + slots * SLOT_SIZE
+        # Re-create the file so a reader notices the new instance and drops old slot keys
+        tmp = path + ".tmp"
+        with open(tmp, "wb") as f:
+            f.truncate(size)
+        fd = os.open(tmp, os.O_RDWR)
+        self.mm = mmap.mmap(fd, size)
+        os.close(fd)
+        _HEADER.pack_into(self.mm, 0, MAGIC, LAYOUT, slots, SLOT_SIZE)
+        _U64.pack_into(self.mm, 24, time.time_ns())
+        os.replace(tmp, path)
+
+    def write(self, key, value, ts_millis=None):
+        i = self.index.get(key)
+        if i is None:
+            if len(self.index) >= self.slots:
+                return False
+            raw = key.encode("utf-8")
+            if len(raw) > KEY_MAX:
+                return False
+            i = self.index[key] = len(self.index)
+            self.raw[i] = raw
+        raw = self.raw[i]
+        base = HEADER_SIZE + i * SLOT_SIZE
+        if ts_millis is None:
+            ts_millis = 0  # no sample time: the reader stamps it on receipt
+
+        # value, ts, key_len and key in one store, all inside the odd window, then their checksum
+        fields = _FIELDS.pack(float(value), int(ts_millis), len(raw)) + raw
+        s = self.seq[i] + 1
+        _U64.pack_into(self.mm, base, s)  # odd: write in progress
+        self.mm[base + 8:base + 8 + len(fields)] = fields
+        _U32.pack_into(self.mm, base + CRC_OFFSET, zlib.crc32(fields))
+        self.seq[i] = s + 1
+        _U64.pack_into(self.mm, base, s + 1)  # even: stable
+        self.global_seq += 1
+        _U64.pack_into(self.mm, 16, self.global_seq)
+        return True
+
+    def close(self):
+        self.mm.close()
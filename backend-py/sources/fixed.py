@@ -1,7 +1,13 @@
 from types import SimpleNamespace
+import time
 
 # Holds the live value
-static = SimpleNamespace(value=42.0)
+static = SimpleNamespace(value=42.0, ts=time.time())
+
+# Called (no args) after every update, e.g. publisher.notify
+listeners = []
 
 def set_value(v) -> None:
-    static.value = float(v)
\ No newline at end of file
+    static.value = float(v)
+    static.ts = time.time()
+    for fn in listeners: fn()
\ No newline at end of file
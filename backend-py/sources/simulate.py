@@ -2,7 +2,10 @@ from types import SimpleNamespace
 import threading, time
 
 # Holds the live value + settings
-simulated = SimpleNamespace(value=0.0, low=0.0, high=180.0, speed=10.0, _running=False)
+simulated = SimpleNamespace(value=0.0, ts=time.time(), low=0.0, high=180.0, speed=10.0, _running=False)
+
+# Called (no args) after every update, e.g. publisher.notify
+listeners = []
 
 def configure(*, low: float | None = None, high: float | None = None, speed: float | None = None) -> None:
     if low   is not None: simulated.low   = float(low)
@@ -20,6 +23,8 @@ def _loop():
         if x >= hi: x = hi - (x - hi); direction = -1.0
         elif x <= lo: x = lo + (lo - x); direction = 1.0
         simulated.value = x
+        simulated.ts = time.time()
+        for fn in listeners: fn()
         time.sleep(0.01)
 
 def start():
@@ -0,0 +1,68 @@
+package gauges.helpers;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * JsonConfigBenchmark
+ *
+ * Config parsing and setConfig-style lookups.
+ * - parse       : lenient parse of a gauge config into an immutable tree
+ * - pathLookup  : precompiled JsonConfig.Path (what gauges use)
+ * - splitLookup : the old split-per-call lookup, kept as a baseline
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonConfigBenchmark {
+
+    private static final String CONFIG = """
+            {
+              // center gauge style
+              "range":    { "min": 0, "max": 8000 },
+              "display":  { "title": "RPM", "format": "0", "suffix": "" },
+              "styles":   { "bg": "#0D0F14", "ring": { "bg": "#1B2230", "fg": "#28E0A6" } },
+              "layout":   { "width": 320, "height": 320 },
+              "simulate": { "enabled": false, "min": 0, "max": 8000, "speed_hz": 0.5 },
+            }
+            """;
+
+    private static final JsonConfig.Path RING_FG = JsonConfig.path("styles.ring.fg");
+
+    private Map<String, Object> tree;
+
+    @Setup
+    public void setup() {
+        tree = JsonConfig.parse(CONFIG);
+    }
+
+    @Benchmark
+    public Map<String, Object> parse() {
+        return JsonConfig.parse(CONFIG);
+    }
+
+    @Benchmark
+    public Object pathLookup() {
+        return RING_FG.get(tree);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object splitLookup() {
+        Object cur = tree;
+        for (String p : "styles.ring.fg".split("\\.")) {
+            if (!(cur instanceof Map)) return null;
+            cur = ((Map<String, Object>) cur).get(p);
+            if (cur == null) return null;
+        }
+        return cur;
+    }
+}
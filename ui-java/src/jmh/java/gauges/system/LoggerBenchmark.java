@@ -0,0 +1,56 @@
+package gauges.system;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * LoggerBenchmark
+ *
+ * Throughput of Logger's formatted write path (caller lookup, timestamp, file write + flush)
+ * into a temp file, single-threaded and with writers contending on the Logger lock.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoggerBenchmark {
+
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        dir = Files.createTempDirectory("logger-bench");
+        Logger.start(dir.resolve("bench.log"));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        Logger.stop();
+        try (var files = Files.list(dir)) {
+            for (Path p : files.toList()) Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public void info() {
+        Logger.info("[Bench] snapshot applied entries=100 version=12345");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void infoContended() {
+        Logger.info("[Bench] snapshot applied entries=100 version=12345");
+    }
+}
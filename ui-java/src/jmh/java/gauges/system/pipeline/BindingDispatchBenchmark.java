@@ -0,0 +1,94 @@
+package gauges.system.pipeline;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * BindingDispatchBenchmark
+ *
+ * One FX pulse worth of binding work, mirroring the windows' GaugeBindingEntry:
+ * IndexRouter lookup per bound key, change check, then reflective setValue(double).
+ * The target is a plain object so no JavaFX toolkit is needed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BindingDispatchBenchmark {
+
+    @Param({ "8", "64" })
+    public int bindings;
+
+    /** Stand-in gauge exposing the same setter the bindings look up. */
+    public static final class Sink {
+        double value;
+        public void setValue(double v) { value = v; }
+    }
+
+    private IndexStore store;
+    private IndexRouter router;
+    private String[] keys;
+    private Sink[] sinks;
+    private double[] last;
+    private Method setValue;
+
+    @Setup
+    public void setup() throws Exception {
+        store = new IndexStore();
+        store.applySnapshot(SnapshotPayloads.dataPoints(bindings, 3L));
+        router = new IndexRouter(store);
+        keys = new String[bindings];
+        sinks = new Sink[bindings];
+        last = new double[bindings];
+        for (int i = 0; i < bindings; i++) {
+            keys[i] = SnapshotPayloads.key(i);
+            sinks[i] = new Sink();
+            last[i] = Double.NaN;
+        }
+        setValue = Sink.class.getMethod("setValue", double.class);
+    }
+
+    @Benchmark
+    public void getDouble(Blackhole bh) {
+        for (String k : keys) bh.consume(router.getDouble(k));
+    }
+
+    @Benchmark
+    public void getRaw(Blackhole bh) {
+        for (String k : keys) bh.consume(router.getRaw(k));
+    }
+
+    @Benchmark
+    public void getString(Blackhole bh) {
+        for (String k : keys) bh.consume(router.getString(k));
+    }
+
+    /** Full pulse where every binding changed: lookup + reflective dispatch. */
+    @Benchmark
+    public void dispatchPulse() throws Exception {
+        for (int i = 0; i < keys.length; i++) {
+            setValue.invoke(sinks[i], router.getDouble(keys[i]));
+        }
+    }
+
+    /** Full pulse where nothing changed: lookup + change check only (steady-state cost). */
+    @Benchmark
+    public void unchangedPulse() throws Exception {
+        for (int i = 0; i < keys.length; i++) {
+            double v = router.getDouble(keys[i]);
+            if (Double.compare(v, last[i]) != 0) {
+                setValue.invoke(sinks[i], v);
+                last[i] = v;
+            }
+        }
+    }
+}
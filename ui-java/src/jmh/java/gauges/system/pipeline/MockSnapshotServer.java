@@ -0,0 +1,163 @@
+package gauges.system.pipeline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * MockSnapshotServer
+ *
+ * In-process stand-in for the backend's /api/snapshot, built on the JDK HttpServer.
+ * - keys        : number of channels (ch0000 .. chNNNN)
+ * - rateHz      : how often a new snapshot is generated ("sensor" update rate)
+ * - shape       : NUMBER ({"ch0000": 1.5}) or OBJECT ({"ch0000": {v, ts, type, status}})
+ * - jitterMs    : random 0..jitterMs delay before each response
+ * - errorRate   : fraction of requests answered with 503
+ * - malformedRate : fraction of requests answered with a truncated body
+ * - format      : wire format served when the client accepts it (JSON otherwise)
+ * - validators  : send ETag / X-Snapshot-Seq and answer If-None-Match with 304
+ *
+ * Every snapshot also carries "_seq" and "_gen_nanos" (System.nanoTime() at generation) so an
+ * in-process consumer can measure sensor-to-store latency.
+ */
+public final class MockSnapshotServer implements AutoCloseable {
+
+    /** Key holding the generation timestamp (System.nanoTime()) of the served snapshot. */
+    public static final String GEN_NANOS_KEY = "_gen_nanos";
+
+    public record Config(int port, int keys, double rateHz, SnapshotPayloads.Shape shape,
+                         int jitterMs, double errorRate, double malformedRate, SnapshotCodec format,
+                         boolean validators) {
+    }
+
+    private final Config cfg;
+    private final HttpServer http;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService generator;
+    private final double[] values;
+    private final double[] phases;
+    private volatile byte[] latest = "{}".getBytes(StandardCharsets.UTF_8);
+    private volatile byte[] latestEncoded = latest;
+    private long seq;
+    private volatile long servedSeq;
+
+    public MockSnapshotServer(Config cfg) throws IOException {
+        this.cfg = cfg;
+        this.values = new double[cfg.keys()];
+        this.phases = new double[cfg.keys()];
+        for (int i = 0; i < phases.length; i++) phases[i] = ThreadLocalRandom.current().nextDouble(Math.PI * 2);
+
+        this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), cfg.port()), 64);
+        this.http.createContext("/api/snapshot", this::serve);
+        this.handlers = Executors.newFixedThreadPool(4, r -> daemon(r, "MockSnapshot-Http"));
+        this.http.setExecutor(handlers);
+        this.generator = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "MockSnapshot-Gen"));
+    }
+
+    public MockSnapshotServer start() {
+        generate();
+        long periodNanos = (long) (1_000_000_000L / Math.max(0.1, cfg.rateHz()));
+        generator.scheduleAtFixedRate(this::generate, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+        http.start();
+        return this;
+    }
+
+    public URI endpoint() {
+        return URI.create("http://127.0.0.1:" + http.getAddress().getPort() + "/api/snapshot");
+    }
+
+    @Override
+    public void close() {
+        generator.shutdownNow();
+        http.stop(0);
+        handlers.shutdownNow();
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Generation / serving
+    // ------------------------------------------------------------------------------------------------
+
+    private void generate() {
+        long now = System.currentTimeMillis();
+        double t = System.nanoTime() / 1e9;
+        StringBuilder sb = new StringBuilder(cfg.keys() * (cfg.shape() == SnapshotPayloads.Shape.NUMBER ? 20 : 80) + 64);
+        sb.append('{');
+        sb.append("\"_seq\":").append(++seq);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.round((50 + 50 * Math.sin(t * 0.5 + phases[i])) * 100.0) / 100.0;
+            sb.append(",\"").append(SnapshotPayloads.key(i)).append("\":");
+            if (cfg.shape() == SnapshotPayloads.Shape.NUMBER) {
+                sb.append(values[i]);
+            } else {
+                sb.append("{\"v\":").append(values[i])
+                  .append(",\"ts\":").append(now)
+                  .append(",\"type\":\"float\",\"status\":\"ok\"}");
+            }
+        }
+        // Stamped last so the time covers building the payload, as a real sensor read would
+        sb.append(",\"").append(GEN_NANOS_KEY).append("\":").append(System.nanoTime());
+        String json = sb.append('}').toString();
+        if (cfg.format() != SnapshotCodec.JSON) latestEncoded = SnapshotPayloads.encode(json, cfg.format());
+        latest = json.getBytes(StandardCharsets.UTF_8);
+        servedSeq = seq;
+    }
+
+    private void serve(HttpExchange ex) throws IOException {
+        try (ex) {
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            if (cfg.jitterMs() > 0) {
+                try {
+                    Thread.sleep(rnd.nextInt(cfg.jitterMs() + 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (rnd.nextDouble() < cfg.errorRate()) {
+                ex.sendResponseHeaders(503, -1);
+                return;
+            }
+            long current = servedSeq;
+            String tag = "\"" + current + "\"";
+            if (cfg.validators() && tag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+                ex.getResponseHeaders().set("ETag", tag);
+                ex.sendResponseHeaders(304, -1);
+                return;
+            }
+            String accept = ex.getRequestHeaders().getFirst("Accept");
+            SnapshotCodec codec = cfg.format() != SnapshotCodec.JSON && accept != null
+                    && accept.contains(cfg.format().mediaType()) ? cfg.format() : SnapshotCodec.JSON;
+            byte[] body = codec == SnapshotCodec.JSON ? latest : latestEncoded;
+            if (rnd.nextDouble() < cfg.malformedRate()) {
+                body = Arrays.copyOf(body, Math.max(1, body.length / 2));
+            }
+            ex.getResponseHeaders().set("Content-Type", codec.mediaType());
+            if (cfg.validators()) {
+                ex.getResponseHeaders().set("ETag", tag);
+                ex.getResponseHeaders().set("X-Snapshot-Seq", Long.toString(current));
+            }
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
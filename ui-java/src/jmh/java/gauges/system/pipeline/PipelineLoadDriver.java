@@ -0,0 +1,174 @@
+package gauges.system.pipeline;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import gauges.system.Metrics;
+
+/**
+ * PipelineLoadDriver
+ *
+ * Scaling test for IndexFetcher + IndexStore against MockSnapshotServer.
+ * For each key count it runs the real fetcher/store pair for a fixed duration and reports
+ * sensor-to-store latency (snapshot generation → applied in the store) plus fetch/parse/apply
+ * percentiles from the Metrics registry.
+ *
+ * Usage (gradle pipelineLoad --args="..."):
+ *   --keys=10,100,1000 --rate=50 --poll=30 --seconds=10 --shape=NUMBER|OBJECT
+ *   --jitter=0 --errors=0.0 --malformed=0.0 --format=json|cbor --validators=true|false
+ *   --inflight=2   (IndexFetcher maxInFlight)
+ *   --record=build/sessions   (also run a SessionRecorder into that directory)
+ *   --replay=build/sessions --speed=max   (play recordings through store + history instead)
+ *   --serve --port=8000   (only run the mock server so the real app can poll it)
+ */
+public final class PipelineLoadDriver {
+
+    private static String recordDir;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> kv = new LinkedHashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) continue;
+            int eq = a.indexOf('=');
+            if (eq < 0) kv.put(a.substring(2), "true");
+            else kv.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+
+        int[] keyCounts = Arrays.stream(kv.getOrDefault("keys", "10,100,1000").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        double rateHz = Double.parseDouble(kv.getOrDefault("rate", "50"));
+        double pollHz = Double.parseDouble(kv.getOrDefault("poll", "30"));
+        int seconds = Integer.parseInt(kv.getOrDefault("seconds", "10"));
+        SnapshotPayloads.Shape shape = SnapshotPayloads.Shape.valueOf(kv.getOrDefault("shape", "NUMBER").toUpperCase(Locale.ROOT));
+        int jitter = Integer.parseInt(kv.getOrDefault("jitter", "0"));
+        double errors = Double.parseDouble(kv.getOrDefault("errors", "0"));
+        double malformed = Double.parseDouble(kv.getOrDefault("malformed", "0"));
+        SnapshotCodec format = SnapshotCodec.fromName(kv.getOrDefault("format", "json"));
+        boolean validators = Boolean.parseBoolean(kv.getOrDefault("validators", "true"));
+        int inFlight = Integer.parseInt(kv.getOrDefault("inflight", "2"));
+        recordDir = kv.get("record");
+
+        if (kv.containsKey("replay")) {
+            replay(Paths.get(kv.get("replay")), ReplaySource.parseSpeed(kv.getOrDefault("speed", "max")));
+            return;
+        }
+
+        if (kv.containsKey("serve")) {
+            int port = Integer.parseInt(kv.getOrDefault("port", "8000"));
+            MockSnapshotServer server = new MockSnapshotServer(new MockSnapshotServer.Config(
+                    port, keyCounts[0], rateHz, shape, jitter, errors, malformed, format, validators)).start();
+            System.out.println("[Load] mock backend serving " + keyCounts[0] + " keys at " + server.endpoint()
+                    + " (Ctrl+C to stop)");
+            Thread.currentThread().join();
+            return;
+        }
+
+        System.out.println(String.format(Locale.ROOT,
+                "[Load] rate=%.1fHz poll=%.1fHz inflight=%d shape=%s format=%s jitter=%dms errors=%.3f malformed=%.3f duration=%ds",
+                rateHz, pollHz, inFlight, shape, format, jitter, errors, malformed, seconds));
+        for (int keys : keyCounts) {
+            run(new MockSnapshotServer.Config(0, keys, rateHz, shape, jitter, errors, malformed, format, validators), pollHz, inFlight, seconds);
+        }
+    }
+
+    private static void run(MockSnapshotServer.Config cfg, double pollHz, int inFlight, int seconds) throws Exception {
+        Metrics.Histogram e2e = Metrics.histogram("load.sensor_to_store.nanos");
+        Metrics.Histogram fetch = Metrics.histogram("fetch.latency.nanos");
+        Metrics.Histogram parse = Metrics.histogram("store.parse.nanos");
+        Metrics.Histogram apply = Metrics.histogram("store.apply.nanos");
+        Metrics.Counter ok = Metrics.counter("fetch.ok");
+        Metrics.Counter err = Metrics.counter("fetch.errors");
+        Metrics.Counter parseErr = Metrics.counter("store.parse.errors");
+        Metrics.Counter notModified = Metrics.counter("fetch.not_modified");
+        Metrics.Counter unchanged = Metrics.counter("fetch.unchanged");
+        Metrics.Counter stale = Metrics.counter("fetch.dropped.stale");
+        e2e.reset();
+        fetch.reset();
+        parse.reset();
+        apply.reset();
+        long ok0 = ok.get(), err0 = err.get(), parseErr0 = parseErr.get();
+        long nm0 = notModified.get(), unchanged0 = unchanged.get(), stale0 = stale.get();
+
+        IndexStore store = new IndexStore();
+        long[] lastGen = { Long.MIN_VALUE };
+        store.setOnChange(k -> {
+            // Only the first apply of each generated snapshot counts (re-polls of the same one are staleness)
+            IndexStore.DataPoint dp = store.get(MockSnapshotServer.GEN_NANOS_KEY);
+            if (dp == null) return;
+            long gen = (long) dp.v;
+            if (gen != lastGen[0]) {
+                lastGen[0] = gen;
+                e2e.record(System.nanoTime() - gen);
+            }
+        });
+
+        SessionRecorder recorder = recordDir == null ? null
+                : SessionRecorder.install(store, Paths.get(recordDir), 1000L, 64L << 20, 256L << 20);
+        Metrics.Counter recBytes = Metrics.counter("recorder.bytes.written");
+        Metrics.Counter recSamples = Metrics.counter("recorder.samples");
+        Metrics.Histogram recEncode = Metrics.histogram("recorder.encode.nanos");
+        long recBytes0 = recBytes.get(), recSamples0 = recSamples.get();
+        recEncode.reset();
+
+        try (MockSnapshotServer server = new MockSnapshotServer(cfg).start()) {
+            Duration period = Duration.ofNanos((long) (1_000_000_000L / Math.max(0.1, pollHz)));
+            IndexFetcher fetcher = new IndexFetcher(server.endpoint(), period, Duration.ofSeconds(2),
+                    cfg.format(), store::applySnapshot, inFlight);
+            fetcher.start();
+            Thread.sleep(seconds * 1000L);
+            fetcher.stop();
+        }
+        if (recorder != null) {
+            recorder.stop();
+            long samples = recSamples.get() - recSamples0, bytes = recBytes.get() - recBytes0;
+            System.out.println(String.format(Locale.ROOT,
+                    "[Load] keys=%5d  recorder samples=%d bytes=%d (%.2f B/sample) encode+write p50=%.2fms max=%.2fms",
+                    cfg.keys(), samples, bytes, samples == 0 ? 0.0 : (double) bytes / samples,
+                    ms(recEncode.percentile(0.50)), ms(recEncode.max())));
+        }
+
+        System.out.println(String.format(Locale.ROOT,
+                "[Load] keys=%5d  sensor->store p50=%7.2fms p90=%7.2fms p99=%7.2fms max=%7.2fms (n=%d)"
+                        + "  fetch p50=%6.2fms p99=%6.2fms  parse p50=%6.3fms  apply p50=%6.3fms"
+                        + "  ok=%d errors=%d parseErrors=%d notModified=%d unchanged=%d stale=%d",
+                cfg.keys(),
+                ms(e2e.percentile(0.50)), ms(e2e.percentile(0.90)), ms(e2e.percentile(0.99)), ms(e2e.max()), e2e.count(),
+                ms(fetch.percentile(0.50)), ms(fetch.percentile(0.99)),
+                ms(parse.percentile(0.50)), ms(apply.percentile(0.50)),
+                ok.get() - ok0, err.get() - err0, parseErr.get() - parseErr0,
+                notModified.get() - nm0, unchanged.get() - unchanged0, stale.get() - stale0));
+    }
+
+    /** Throughput of store apply + shared history for recorded sessions; the pass line is printed by ReplaySource. */
+    private static void replay(Path recording, double speed) throws InterruptedException {
+        Metrics.Histogram apply = Metrics.histogram("store.apply.nanos");
+        apply.reset();
+        IndexStore store = new IndexStore();
+        ChannelHistory history = new ChannelHistory(600, 36_000, Map.of());
+        store.addTap(history);
+        long[] dispatched = { 0 };
+        store.setOnChange(k -> dispatched[0]++);
+
+        ReplaySource source = new ReplaySource(recording, speed, false, batch -> {
+            for (String key : batch.keySet()) history.series(key);
+            store.applySnapshot(batch);
+        });
+        source.start();
+        source.awaitCompletion(Long.MAX_VALUE);
+        System.out.println(String.format(Locale.ROOT,
+                "[Load] replay %s  apply p50=%.3fms p99=%.3fms max=%.3fms  onChange=%d  keys=%d",
+                source.describe(), ms(apply.percentile(0.50)), ms(apply.percentile(0.99)), ms(apply.max()),
+                dispatched[0], store.snapshot().size()));
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private PipelineLoadDriver() {}
+}
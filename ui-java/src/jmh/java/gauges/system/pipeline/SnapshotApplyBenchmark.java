@@ -0,0 +1,90 @@
+package gauges.system.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * SnapshotApplyBenchmark
+ *
+ * Cost of one snapshot through IndexStore at realistic channel counts.
+ * - applyJson      : full String path used by BootCoordinator (parse + adapt + apply)
+ * - applyJsonBytes : raw JSON bytes through the streaming decoder (IndexFetcher's path)
+ * - applyCbor      : the same snapshot as CBOR bytes
+ * - applyMap       : apply of already-adapted DataPoints only
+ * - fromUnknown    : DataPoint.fromUnknown over pre-parsed raw values
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SnapshotApplyBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int keys;
+
+    @Param({ "NUMBER", "OBJECT" })
+    public SnapshotPayloads.Shape shape;
+
+    private IndexStore store;
+    private String json;
+    private byte[] jsonBytes;
+    private byte[] cborBytes;
+    private Map<String, IndexStore.DataPoint> adapted;
+    private List<Object> rawValues;
+
+    @Setup
+    public void setup() throws Exception {
+        store = new IndexStore();
+        json = SnapshotPayloads.json(keys, shape, 42L);
+        jsonBytes = SnapshotPayloads.encode(json, SnapshotCodec.JSON);
+        cborBytes = SnapshotPayloads.encode(json, SnapshotCodec.CBOR);
+        adapted = SnapshotPayloads.dataPoints(keys, 42L);
+        Map<String, Object> raw = new ObjectMapper().readValue(json, new TypeReference<Map<String, Object>>() { });
+        rawValues = new ArrayList<>(raw.values());
+    }
+
+    @Benchmark
+    public long applyJson() {
+        store.applySnapshot(json);
+        return store.version();
+    }
+
+    @Benchmark
+    public long applyJsonBytes() {
+        store.applySnapshot(jsonBytes, 0, jsonBytes.length, SnapshotCodec.JSON);
+        return store.version();
+    }
+
+    @Benchmark
+    public long applyCbor() {
+        store.applySnapshot(cborBytes, 0, cborBytes.length, SnapshotCodec.CBOR);
+        return store.version();
+    }
+
+    @Benchmark
+    public long applyMap() {
+        store.applySnapshot(adapted);
+        return store.version();
+    }
+
+    @Benchmark
+    public void fromUnknown(Blackhole bh) {
+        for (int i = 0; i < rawValues.size(); i++) {
+            bh.consume(IndexStore.DataPoint.fromUnknown(rawValues.get(i)));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package gauges.system.pipeline;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * SnapshotPayloads
+ *
+ * Synthetic /api/snapshot bodies for benchmarks, shaped like the backend output.
+ * - NUMBER : { "ch0000": 12.5, ... }
+ * - OBJECT : { "ch0000": { "v": 12.5, "ts": 1700000000000, "type": "float", "status": "ok" }, ... }
+ * encode() turns a JSON body into the bytes of the given wire format.
+ */
+public final class SnapshotPayloads {
+
+    public enum Shape { NUMBER, OBJECT }
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final ObjectMapper CBOR_MAPPER = new ObjectMapper(new CBORFactory());
+
+    static String key(int i) {
+        return String.format("ch%04d", i);
+    }
+
+    static String json(int keys, Shape shape, long seed) {
+        Random rnd = new Random(seed);
+        long ts = 1_700_000_000_000L;
+        StringBuilder sb = new StringBuilder(keys * (shape == Shape.NUMBER ? 20 : 80));
+        sb.append('{');
+        for (int i = 0; i < keys; i++) {
+            if (i > 0) sb.append(',');
+            double v = Math.round(rnd.nextDouble() * 100_000.0) / 10.0;
+            sb.append('"').append(key(i)).append("\":");
+            if (shape == Shape.NUMBER) {
+                sb.append(v);
+            } else {
+                sb.append("{\"v\":").append(v)
+                  .append(",\"ts\":").append(ts + i)
+                  .append(",\"type\":\"float\",\"status\":\"ok\"}");
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    static Map<String, IndexStore.DataPoint> dataPoints(int keys, long seed) {
+        Random rnd = new Random(seed);
+        Map<String, IndexStore.DataPoint> out = new LinkedHashMap<>();
+        for (int i = 0; i < keys; i++) {
+            out.put(key(i), new IndexStore.DataPoint(rnd.nextDouble() * 10_000.0, 1_700_000_000_000L + i));
+        }
+        return out;
+    }
+
+    static byte[] encode(String json, SnapshotCodec codec) {
+        if (codec == SnapshotCodec.JSON) return json.getBytes(StandardCharsets.UTF_8);
+        try {
+            return CBOR_MAPPER.writeValueAsBytes(JSON_MAPPER.readTree(json));
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot transcode payload", e);
+        }
+    }
+
+    private SnapshotPayloads() {}
+}
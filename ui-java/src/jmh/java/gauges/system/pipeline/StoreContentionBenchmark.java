@@ -0,0 +1,64 @@
+package gauges.system.pipeline;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * StoreContentionBenchmark
+ *
+ * One fetcher-like writer applying snapshots while several binding-like readers poll keys,
+ * which is the shape of the running app (fetch thread vs FX pulse).
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StoreContentionBenchmark {
+
+    @Param({ "100", "1000" })
+    public int keys;
+
+    private IndexStore store;
+    private Map<String, IndexStore.DataPoint> snapshot;
+    private String[] keyNames;
+
+    @Setup
+    public void setup() {
+        store = new IndexStore();
+        snapshot = SnapshotPayloads.dataPoints(keys, 7L);
+        store.applySnapshot(snapshot);
+        keyNames = snapshot.keySet().toArray(String[]::new);
+    }
+
+    /** Per-reader cursor so threads walk keys independently. */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public long writer() {
+        store.applySnapshot(snapshot);
+        return store.version();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public double reader(Cursor c) {
+        String k = keyNames[c.next++ % keyNames.length];
+        return store.getDouble(k);
+    }
+}
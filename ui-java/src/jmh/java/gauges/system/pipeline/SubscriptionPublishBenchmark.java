@@ -0,0 +1,73 @@
+package gauges.system.pipeline;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * SubscriptionPublishBenchmark
+ *
+ * Apply cost with per-key subscribers attached (KeySubscriptions), against applyMap in
+ * SnapshotApplyBenchmark as the baseline.
+ * - inline    : each subscriber bound to one key, delivered inside the apply
+ * - coalesced : same, delivered through an executor that just drops the drain task (routing cost only)
+ * - prefix    : subscribers on key prefixes instead of exact keys
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SubscriptionPublishBenchmark {
+
+    @Param({ "100", "1000" })
+    public int keys;
+
+    @Param({ "8", "64" })
+    public int subscribers;
+
+    private IndexStore inline;
+    private IndexStore coalesced;
+    private IndexStore prefix;
+    private Map<String, IndexStore.DataPoint> batch;
+    private long seen;
+
+    @Setup
+    public void setup() {
+        batch = SnapshotPayloads.dataPoints(keys, 42L);
+        inline = new IndexStore();
+        coalesced = new IndexStore();
+        prefix = new IndexStore();
+        KeySubscriptions.Delivery sink = KeySubscriptions.Delivery.on(r -> { });
+        for (int i = 0; i < subscribers; i++) {
+            String key = SnapshotPayloads.key(i * keys / subscribers);
+            inline.subscribe(key, KeySubscriptions.Delivery.inline(), c -> seen += c.size());
+            coalesced.subscribe(key, sink, c -> seen += c.size());
+            prefix.subscribePrefix(key, KeySubscriptions.Delivery.inline(), c -> seen += c.size());
+        }
+    }
+
+    @Benchmark
+    public long inline() {
+        inline.applySnapshot(batch);
+        return seen;
+    }
+
+    @Benchmark
+    public long coalesced() {
+        coalesced.applySnapshot(batch);
+        return coalesced.version();
+    }
+
+    @Benchmark
+    public long prefix() {
+        prefix.applySnapshot(batch);
+        return seen;
+    }
+}
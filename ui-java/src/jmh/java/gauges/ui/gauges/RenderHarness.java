@@ -0,0 +1,234 @@
+package gauges.ui.gauges;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import gauges.helpers.JsonConfig;
+import gauges.system.Metrics;
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.Scene;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Region;
+
+/**
+ * RenderHarness
+ *
+ * Headless draw() benchmark for the canvas gauges, runnable on a Linux dev box
+ * (gradle renderBench — Monocle headless platform + software prism pipeline).
+ *
+ * For every gauge class × style config × size × update rate it:
+ * - feeds a synthetic value stream (sine at rateHz, sampled at 60 fps) through the gauge's
+ *   own update path (setValue → draw, or pushSample + draw for RollingGauge)
+ * - snapshots the gauge into a reused WritableImage so the software pipeline really rasterizes
+ * - reports draw() time (from the gauge's gauge.*.draw.nanos histogram), full frame time
+ *   (update + snapshot) and bytes allocated per frame on the FX thread
+ *
+ * Options (as program args, all optional):
+ *   --frames=600 --warmup=200 --sizes=240,480,800 --rates=1,10 --snapshotEvery=1
+ *   --out=build/reports/render/render-results.csv
+ */
+public final class RenderHarness {
+
+    private static final double FPS = 60.0;
+
+    /** Gauge class → style configs it is benchmarked with. */
+    private static final Map<Class<? extends Region>, List<String>> SUBJECTS = new LinkedHashMap<>();
+    static {
+        SUBJECTS.put(CenterTextGauge.class, List.of("configs/gauges/center_style_a.json", "configs/gauges/center_style_b.json"));
+        SUBJECTS.put(NoTextGaugeDigital.class, List.of("configs/gauges/digital_style_a.json", "configs/gauges/digital_style_b.json"));
+        SUBJECTS.put(RollingGauge.class, List.of("configs/gauges/rolling_style_a.json", "configs/gauges/rolling_style_b.json"));
+    }
+
+    private static final Map<Class<?>, String> DRAW_METRIC = Map.of(
+            CenterTextGauge.class, "gauge.center_text.draw.nanos",
+            NoTextGaugeDigital.class, "gauge.no_text_digital.draw.nanos",
+            RollingGauge.class, "gauge.rolling.draw.nanos");
+
+    private record Options(int frames, int warmup, int[] sizes, double[] rates, int snapshotEvery, Path out) { }
+
+    private record Result(String gauge, String config, int size, double rateHz, int frames,
+                          long drawP50, long drawP99, double drawMean,
+                          long frameP50, long frameP99, double allocPerFrame) { }
+
+    public static void main(String[] args) throws Exception {
+        Options opt = parse(args);
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        Platform.startup(() -> started.complete(null));
+        started.get();
+
+        List<Result> results = new ArrayList<>();
+        for (Map.Entry<Class<? extends Region>, List<String>> e : SUBJECTS.entrySet()) {
+            for (String cfg : e.getValue()) {
+                for (int size : opt.sizes()) {
+                    for (double rate : opt.rates()) {
+                        CompletableFuture<Result> f = new CompletableFuture<>();
+                        Platform.runLater(() -> {
+                            try {
+                                f.complete(run(e.getKey(), cfg, size, rate, opt));
+                            } catch (Throwable t) {
+                                f.completeExceptionally(t);
+                            }
+                        });
+                        Result r = f.get();
+                        results.add(r);
+                        print(r);
+                    }
+                }
+            }
+        }
+
+        write(results, opt.out());
+        System.out.println("[Render] results written to " + opt.out().toAbsolutePath());
+        Platform.exit();
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // One scenario (FX thread)
+    // ------------------------------------------------------------------------------------------------
+
+    private static Result run(Class<? extends Region> cls, String configPath, int size, double rateHz,
+                              Options opt) throws Exception {
+        Region gauge = cls.getDeclaredConstructor().newInstance();
+        Method setConfig = cls.getMethod("setConfig", Map.class);
+        setConfig.invoke(gauge, withoutSimulation(JsonConfig.load(configPath)));
+
+        // Not shown: the scene only gives the gauge a parent so it lays out and can be snapshotted
+        Group root = new Group(gauge);
+        new Scene(root, size, size);
+        gauge.resize(size, size);
+        root.layout();
+
+        Frame frame = frameDriver(gauge);
+        WritableImage image = new WritableImage(size, size);
+        SnapshotParameters params = new SnapshotParameters();
+
+        double min = 0, max = 100;
+        double t = 0;
+        for (int i = 0; i < opt.warmup(); i++, t += 1.0 / FPS) {
+            frame.step(value(t, rateHz, min, max));
+            gauge.snapshot(params, image);
+        }
+
+        Metrics.Histogram draw = Metrics.histogram(DRAW_METRIC.get(cls));
+        Metrics.Histogram frameNanos = Metrics.histogram("render.harness.frame.nanos");
+        draw.reset();
+        frameNanos.reset();
+
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+        long alloc0 = mx.getThreadAllocatedBytes(tid);
+
+        for (int i = 0; i < opt.frames(); i++, t += 1.0 / FPS) {
+            long f0 = System.nanoTime();
+            frame.step(value(t, rateHz, min, max));
+            if (opt.snapshotEvery() > 0 && i % opt.snapshotEvery() == 0) {
+                gauge.snapshot(params, image);
+            }
+            frameNanos.recordSince(f0);
+        }
+
+        long allocated = mx.getThreadAllocatedBytes(tid) - alloc0;
+        return new Result(cls.getSimpleName(), shortName(configPath), size, rateHz, opt.frames(),
+                draw.percentile(0.50), draw.percentile(0.99), draw.mean(),
+                frameNanos.percentile(0.50), frameNanos.percentile(0.99),
+                (double) allocated / opt.frames());
+    }
+
+    /** One frame of live update, done the way the running app does it for that gauge. */
+    @FunctionalInterface
+    private interface Frame {
+        void step(double value) throws Exception;
+    }
+
+    private static Frame frameDriver(Region gauge) throws Exception {
+        if (gauge instanceof RollingGauge rolling) {
+            // Mirrors RollingGauge's AnimationTimer: setValue, then pushSample + draw each pulse
+            Method push = RollingGauge.class.getDeclaredMethod("pushSample", double.class);
+            Method draw = RollingGauge.class.getDeclaredMethod("draw");
+            push.setAccessible(true);
+            draw.setAccessible(true);
+            return v -> {
+                rolling.setValue(v);
+                push.invoke(rolling, v);
+                draw.invoke(rolling);
+            };
+        }
+        // CenterTextGauge / NoTextGaugeDigital redraw from their value listener
+        Method setValue = gauge.getClass().getMethod("setValue", double.class);
+        return v -> setValue.invoke(gauge, v);
+    }
+
+    /** Synthetic sensor: sine at rateHz with a little deterministic ripple, spanning min..max. */
+    private static double value(double t, double rateHz, double min, double max) {
+        double s = Math.sin(2 * Math.PI * rateHz * t) * 0.9 + Math.sin(2 * Math.PI * 7.3 * rateHz * t) * 0.1;
+        return min + (s + 1) * 0.5 * (max - min);
+    }
+
+    /** The harness drives values itself; a style's own simulator would fight it. */
+    private static Map<String, Object> withoutSimulation(Map<String, Object> cfg) {
+        Map<String, Object> copy = new LinkedHashMap<>(cfg);
+        copy.remove("simulate");
+        return copy;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Options / output
+    // ------------------------------------------------------------------------------------------------
+
+    private static Options parse(String[] args) {
+        Map<String, String> kv = new LinkedHashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--") || !a.contains("=")) continue;
+            int eq = a.indexOf('=');
+            kv.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+        return new Options(
+                Integer.parseInt(kv.getOrDefault("frames", "600")),
+                Integer.parseInt(kv.getOrDefault("warmup", "200")),
+                Arrays.stream(kv.getOrDefault("sizes", "240,480,800").split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray(),
+                Arrays.stream(kv.getOrDefault("rates", "1,10").split(",")).mapToDouble(s -> Double.parseDouble(s.trim())).toArray(),
+                Integer.parseInt(kv.getOrDefault("snapshotEvery", "1")),
+                Paths.get(kv.getOrDefault("out", "build/reports/render/render-results.csv")));
+    }
+
+    private static void print(Result r) {
+        System.out.println(String.format(Locale.ROOT,
+                "[Render] %-18s %-16s %4dpx %5.1fHz  draw p50=%7.1fus p99=%7.1fus  frame p50=%7.1fus p99=%7.1fus  alloc=%8.0f B/frame",
+                r.gauge(), r.config(), r.size(), r.rateHz(),
+                r.drawP50() / 1e3, r.drawP99() / 1e3, r.frameP50() / 1e3, r.frameP99() / 1e3, r.allocPerFrame()));
+    }
+
+    private static void write(List<Result> results, Path out) throws IOException {
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8))) {
+            w.println("gauge,config,size,rate_hz,frames,draw_p50_ns,draw_p99_ns,draw_mean_ns,frame_p50_ns,frame_p99_ns,alloc_bytes_per_frame");
+            for (Result r : results) {
+                w.println(String.format(Locale.ROOT, "%s,%s,%d,%.3f,%d,%d,%d,%.1f,%d,%d,%.1f",
+                        r.gauge(), r.config(), r.size(), r.rateHz(), r.frames(),
+                        r.drawP50(), r.drawP99(), r.drawMean(), r.frameP50(), r.frameP99(), r.allocPerFrame()));
+            }
+        }
+    }
+
+    private static String shortName(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        return name.endsWith(".json") ? name.substring(0, name.length() - 5) : name;
+    }
+
+    private RenderHarness() {}
+}
@@ -1,5 +1,201 @@
 package gauges.helpers;
 
-public class JsonConfig {
-    
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+/**
+ * JsonConfig
+ *
+ * Single, Jackson-backed home for hand-edited JSON (mode files, gauge configs).
+ * - parse(text)      : lenient parse (comments, trailing commas, single/smart quotes) into an
+ *                      immutable Map tree
+ * - load(resource)   : classpath config loaded once and cached by resource path; gauges shared
+ *                      by several modes get the very same immutable tree
+ * - path("a.b.c")    : precompiled dot path for setConfig lookups (no split per call)
+ *
+ * Trees returned here are deeply unmodifiable, so they can be shared across threads and windows.
+ */
+public final class JsonConfig {
+
+    private static final ObjectMapper JSON = JsonMapper.builder()
+            .enable(JsonReadFeature.ALLOW_JAVA_COMMENTS)
+            .enable(JsonReadFeature.ALLOW_TRAILING_COMMA)
+            .enable(JsonReadFeature.ALLOW_SINGLE_QUOTES)
+            .build();
+    private static final TypeReference<Map<String, Object>> MAP_OF_OBJECT =
+            new TypeReference<Map<String, Object>>() { };
+
+    /** Parsed configs per normalized resource path (missing/unreadable resources map to {}). */
+    private static final Map<String, Map<String, Object>> CACHE = new ConcurrentHashMap<>();
+
+    // ------------------------------------------------------------------------------------------------
+    // Parsing / loading
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * Parse a JSON object into an immutable Map tree.
+     *
+     * @throws IllegalArgumentException if the text is not a JSON object.
+     */
+    public static Map<String, Object> parse(String text) {
+        try {
+            return deepUnmodifiable(JSON.readValue(normalize(text), MAP_OF_OBJECT));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON object: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    /**
+     * Parse into a Jackson tree (used by ModeLayout, which walks sections before converting them).
+     *
+     * @throws IllegalArgumentException if the text is not valid JSON.
+     */
+    public static JsonNode parseTree(String text) {
+        try {
+            return JSON.readTree(normalize(text));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    /** Convert an object node into an immutable Map tree. */
+    public static Map<String, Object> toMap(JsonNode node) {
+        return deepUnmodifiable(JSON.convertValue(node, MAP_OF_OBJECT));
+    }
+
+    /**
+     * Load a classpath config (e.g. "configs/gauges/center_style_a.json"), parsing it at most once.
+     * A leading "/" is ignored. Missing or unreadable resources are logged and yield an empty map.
+     */
+    public static Map<String, Object> load(String resourcePath) {
+        if (resourcePath == null || resourcePath.isBlank()) return Collections.emptyMap();
+        String norm = resourcePath.startsWith("/") ? resourcePath.substring(1) : resourcePath;
+        return CACHE.computeIfAbsent(norm, JsonConfig::readResource);
+    }
+
+    /** Forget every cached config so the next load() re-reads from the classpath. */
+    public static void invalidate() {
+        CACHE.clear();
+    }
+
+    private static Map<String, Object> readResource(String path) {
+        try (InputStream in = loader().getResourceAsStream(path)) {
+            if (in == null) {
+                System.out.println("[Config] not found on classpath: " + path);
+                return Collections.emptyMap();
+            }
+            Map<String, Object> tree = parse(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            System.out.println("[Config] Loaded: " + path);
+            return tree;
+        } catch (Exception e) {
+            System.out.println("[Config] unreadable: " + path + " (" + e + ")");
+            return Collections.emptyMap();
+        }
+    }
+
+    /** Normalize common hand-editing gotchas so the parser survives. */
+    public static String normalize(String raw) {
+        if (raw == null) return "";
+        return raw.replace("\r", "")
+                // strip standalone lines with just "..."
+                .replaceAll("(?m)^\\s*\\.\\.\\.\\s*$", "")
+                // replace curly “smart quotes” with normal quotes
+                .replace('“', '"').replace('”', '"').replace('’', '\'');
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> deepUnmodifiable(Map<String, Object> in) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> e : in.entrySet()) {
+            out.put(e.getKey(), deepUnmodifiable(e.getValue()));
+        }
+        return Collections.unmodifiableMap(out);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object deepUnmodifiable(Object v) {
+        if (v instanceof Map<?, ?> child) return deepUnmodifiable((Map<String, Object>) child);
+        if (v instanceof List<?> list) {
+            List<Object> out = new ArrayList<>(list.size());
+            for (Object o : list) out.add(deepUnmodifiable(o));
+            return Collections.unmodifiableList(out);
+        }
+        return v;
+    }
+
+    private static ClassLoader loader() {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        return cl != null ? cl : JsonConfig.class.getClassLoader();
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Precompiled dot paths
+    // ------------------------------------------------------------------------------------------------
+
+    /** Compile a dot path such as "range.min" or "styles.ring.bg". Keep the result in a static field. */
+    public static Path path(String dotted) {
+        return new Path(dotted);
+    }
+
+    /** A dot path split once; lookups walk nested maps without allocating. */
+    public static final class Path {
+        private final String dotted;
+        private final String[] parts;
+
+        private Path(String dotted) {
+            this.dotted = Objects.requireNonNull(dotted, "dotted");
+            this.parts = dotted.split("\\.");
+        }
+
+        /** Raw value at this path, or null if any segment is missing. */
+        public Object get(Map<String, Object> m) {
+            Object cur = m;
+            for (String p : parts) {
+                if (!(cur instanceof Map<?, ?> map)) return null;
+                cur = map.get(p);
+                if (cur == null) return null;
+            }
+            return cur;
+        }
+
+        public double getDouble(Map<String, Object> m, double def) {
+            Object o = get(m);
+            if (o instanceof Number n) return n.doubleValue();
+            if (o instanceof String s) {
+                try { return Double.parseDouble(s); } catch (Exception ignore) {}
+            }
+            return def;
+        }
+
+        public String getString(Map<String, Object> m, String def) {
+            Object o = get(m);
+            return (o == null) ? def : Objects.toString(o);
+        }
+
+        public boolean getBoolean(Map<String, Object> m, boolean def) {
+            Object o = get(m);
+            if (o instanceof Boolean b) return b;
+            if (o instanceof String s) return Boolean.parseBoolean(s);
+            return def;
+        }
+
+        @Override
+        public String toString() { return dotted; }
+    }
+
+    private JsonConfig() {}
 }
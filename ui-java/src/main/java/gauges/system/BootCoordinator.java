@@ -3,15 +3,33 @@ package gauges.system;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.function.Consumer;
 
+import gauges.helpers.JsonConfig;
 import gauges.system.Logger;
+import gauges.system.pipeline.AlarmEngine;
+import gauges.system.pipeline.ChannelHistory;
+import gauges.system.pipeline.DatagramSource;
+import gauges.system.pipeline.DerivedChannels;
+import gauges.system.pipeline.FreshnessTracker;
 import gauges.system.pipeline.IndexFetcher;
 import gauges.system.pipeline.IndexRouter;
 import gauges.system.pipeline.IndexStore;
+import gauges.system.pipeline.IngestPipeline;
+import gauges.system.pipeline.KeyAliases;
+import gauges.system.pipeline.LatencyTracer;
+import gauges.system.pipeline.ReplaySource;
+import gauges.system.pipeline.SessionRecorder;
+import gauges.system.pipeline.SharedMemorySource;
+import gauges.system.pipeline.SnapshotCodec;
+import gauges.system.pipeline.SnapshotSink;
+import gauges.system.pipeline.SnapshotSource;
+import gauges.system.pipeline.WindowAggregates;
 import javafx.application.Platform;
 import javafx.stage.Stage;
 import javafx.stage.Window;
@@ -25,7 +43,9 @@ import javafx.stage.Window;
 public final class BootCoordinator {
 
     private IndexStore store;
-    private IndexFetcher fetcher;
+    private SnapshotSource fetcher;
+    private IngestPipeline ingest;
+    private SessionRecorder recorder;
 
     public void start(Stage primaryStage) {
         Platform.setImplicitExit(true);
@@ -43,6 +63,9 @@ public final class BootCoordinator {
                 try { ModeController.global().load(initialMode); }
                 catch (Throwable t) { System.err.println("[Boot] Failed to load initial mode: " + initialMode); t.printStackTrace(); }
 
+                // Compile the remaining modes (and pre-build their gauges) off the FX thread
+                ModeController.global().prewarmAsync();
+
                 dumpOpenWindows("[Boot] after WindowManager");
                 Runtime.getRuntime().addShutdownHook(new Thread(this::safeStopFetcher, "Shutdown-StopFetcher"));
             } catch (Throwable t) {
@@ -60,6 +83,145 @@ public final class BootCoordinator {
         Properties props = loadAppProperties();
         String baseUrl = prop(props, "backend.url", "http://127.0.0.1:8000");
 
+        // Metrics: JMX always, localhost HTTP only when metrics.http.port > 0
+        try { MetricsExporter.install(intProp(props, "metrics.http.port", 0)); }
+        catch (Throwable t) { System.err.println("[Boot] Metrics exporter failed: " + t); }
+
+        store = new IndexStore();
+        // Channel aliases first: bindings, derived expressions and alarm rules resolve through them
+        try {
+            KeyAliases.install(JsonConfig.load(prop(props, "aliases.config", "configs/aliases.json")));
+        } catch (Throwable t) {
+            System.err.println("[Boot] Channel aliases failed to load: " + t);
+        }
+        IndexRouter.install(store);
+        LatencyTracer.install(store, boolProp(props, "latency.trace", true));
+        ChannelHistory.install(store,
+                intProp(props, "history.capacity", 600),
+                intProp(props, "history.maxCapacity", 36_000),
+                historyRetention(props));
+
+        // Computed channels: configs/derived.json plus the active mode's "derived" object
+        try {
+            DerivedChannels derived = DerivedChannels.install(store,
+                    JsonConfig.load(prop(props, "derived.config", "configs/derived.json")));
+            ModeController.global().addListener((mode, json) -> {
+                ModeLayout layout = ModeController.global().getCurrentLayout();
+                derived.setModeChannels(layout == null ? java.util.Map.of() : layout.derived());
+            });
+        } catch (Throwable t) {
+            System.err.println("[Boot] Derived channels failed to load: " + t);
+        }
+        // Windowed aggregates ("rpm@max5s"), requested by the bindings that read them
+        WindowAggregates.install(store);
+        // Threshold alarms: transitions only, pushed to WarningBanner / ShiftIndicator
+        try {
+            AlarmEngine.install(store, JsonConfig.load(prop(props, "alarms.config", "configs/alarms.json")));
+        } catch (Throwable t) {
+            System.err.println("[Boot] Alarms failed to load: " + t);
+        }
+
+        // Session recording for post-drive analysis (off by default: SD card wear)
+        if (boolProp(props, "recorder.enabled", false)) {
+            try {
+                recorder = SessionRecorder.install(store,
+                        Paths.get(prop(props, "recorder.dir", "logs/sessions")),
+                        longProp(props, "recorder.chunkMillis", 1000L),
+                        longProp(props, "recorder.maxFileMB", 64L) * 1024 * 1024,
+                        longProp(props, "recorder.maxTotalMB", 512L) * 1024 * 1024);
+            } catch (Throwable t) {
+                System.err.println("[Boot] Session recorder failed to start: " + t);
+            }
+        }
+
+        // Channel freshness: stale/dead per key, and a reconnect nudge when the whole source goes quiet
+        FreshnessTracker freshness = null;
+        if (boolProp(props, "freshness.enabled", true)) {
+            freshness = FreshnessTracker.install(store,
+                    Double.parseDouble(prop(props, "freshness.staleFactor", "3")),
+                    longProp(props, "freshness.minStaleMs", 250L),
+                    longProp(props, "freshness.deadMs", 5000L),
+                    freshnessExpect(props));
+        }
+
+        try {
+            store.setOnChange(key -> {
+                if (!isLoggingEnabled()) {
+                    return;
+                }
+                logInfo("[IndexStore] snapshot applied (key=" + key + ") v=" + store.version());
+            });
+        }
+        catch (Throwable ignore) { }
+
+        // Ingest queue: transports hand bodies over and return; decode and apply run on their own threads.
+        // Every transport (replay included) goes through it, so IngestApply is the store's only writer
+        SnapshotSink sink = store::applySnapshot;
+        Consumer<Map<String, IndexStore.DataPoint>> batchSink = store::applySnapshot;
+        if (boolProp(props, "ingest.queue.enabled", true)) {
+            ingest = new IngestPipeline(store, intProp(props, "ingest.queue.capacity", 8));
+            ingest.start();
+            sink = ingest;
+            batchSink = ingest::offer;
+            LatencyTracer.setDiagnosticSink(ingest::offer);
+            if (WindowAggregates.global() != null) WindowAggregates.global().setSink(ingest::offer);
+            System.out.println("[Pipeline] IngestPipeline " + ingest.describe());
+        }
+
+        // Transport: HTTP polling (default) or frames pushed by a backend on the same machine
+        String transport = prop(props, "ingest.transport", "http").toLowerCase(java.util.Locale.ROOT);
+        try {
+            switch (transport) {
+                case "udp" -> {
+                    DatagramSource udp = DatagramSource.udp(intProp(props, "ingest.udp.port", 8765), sink);
+                    fetcher = udp;
+                    udp.start();
+                    System.out.println("[Pipeline] DatagramSource listening → " + udp.describe());
+                }
+                case "unix" -> {
+                    DatagramSource unix = DatagramSource.unix(
+                            Paths.get(prop(props, "ingest.unix.path", "/tmp/gauges-ingest.sock")), sink);
+                    fetcher = unix;
+                    unix.start();
+                    System.out.println("[Pipeline] DatagramSource listening → " + unix.describe());
+                }
+                case "shm" -> {
+                    SharedMemorySource shm = new SharedMemorySource(
+                            Paths.get(prop(props, "ingest.shm.path", "/dev/shm/gauges.ring")),
+                            longProp(props, "ingest.shm.idleMicros", 250L),
+                            batchSink);
+                    fetcher = shm;
+                    shm.start();
+                    System.out.println("[Pipeline] SharedMemorySource reading → " + shm.describe());
+                }
+                case "replay" -> {
+                    ReplaySource replay = new ReplaySource(
+                            Paths.get(prop(props, "ingest.replay.path", "logs/sessions")),
+                            ReplaySource.parseSpeed(prop(props, "ingest.replay.speed", "1")),
+                            boolProp(props, "ingest.replay.loop", false),
+                            batchSink);
+                    fetcher = replay;
+                    replay.start();
+                    double skip = Double.parseDouble(prop(props, "ingest.replay.skipSeconds", "0"));
+                    if (skip > 0) replay.seek(skip);
+                    System.out.println("[Pipeline] ReplaySource playing → " + replay.describe());
+                }
+                default -> {
+                    if (!"http".equals(transport)) {
+                        System.err.println("[Pipeline] Unknown ingest.transport '" + transport + "', using http");
+                    }
+                    startHttpFetcher(props, baseUrl, sink);
+                }
+            }
+        } catch (Throwable t) {
+            System.err.println("[Pipeline] Failed to start " + transport + " ingest:");
+            t.printStackTrace();
+        }
+        SnapshotSource source = fetcher;
+        if (freshness != null && source != null) freshness.setReconnect(source::reconnect);
+    }
+
+    private void startHttpFetcher(Properties props, String baseUrl, SnapshotSink sink) {
         // Candidate paths to probe
         java.util.List<String> candidates = new java.util.ArrayList<>();
         String cliIndex  = System.getProperty("index.path", null);
@@ -88,36 +250,46 @@ public final class BootCoordinator {
 
         URI endpoint = probeEndpoint(baseUrl, candidates, timeout);
 
-        store = new IndexStore();
-        IndexRouter.install(store);
+        // Ask the backend for per-value sample timestamps ({v, ts}) so latency tracing sees the sensor
+        // stage; freshness needs them too, to tell a key the backend stopped updating
+        if (boolProp(props, "latency.backend_ts", false) || boolProp(props, "freshness.enabled", true)) {
+            endpoint = withQuery(endpoint, "ts=1");
+        }
 
-        fetcher = new IndexFetcher(
-                endpoint,
-                period,
-                timeout,
-                snapshot -> {
-                    try { applySnapshotCompat(store, snapshot); }
-                    catch (Throwable t) { System.err.println("[Pipeline] Failed to apply snapshot (compat):"); t.printStackTrace(); }
-                }
-        );
+        // Wire format: the fetcher asks for it and falls back to whatever the backend answers with
+        SnapshotCodec format = SnapshotCodec.fromName(prop(props, "fetch.format", "cbor"));
 
-        try {
-            store.setOnChange(key -> {
-                if (!isLoggingEnabled()) {
-                    return;
-                }
-                logInfo("[IndexStore] snapshot applied (key=" + key + ") v=" + store.version());
-            });
+        // Overlapping requests keep one snapshot per period when the backend is slower than that
+        int maxInFlight = intProp(props, "fetch.maxInFlight", 2);
+
+        fetcher = new IndexFetcher(endpoint, period, timeout, format, sink, maxInFlight);
+        fetcher.start();
+        System.out.println("[Pipeline] IndexFetcher started → " + endpoint + " every " + period.toMillis() + " ms ("
+                + format + ", maxInFlight=" + maxInFlight + ")");
+    }
+
+    /** freshness.expect.<key>=<ms> entries: fixed expected update interval instead of the learned one. */
+    private static java.util.Map<String, Long> freshnessExpect(Properties props) {
+        String prefix = "freshness.expect.";
+        java.util.Map<String, Long> out = new java.util.LinkedHashMap<>();
+        for (String name : props.stringPropertyNames()) {
+            if (!name.startsWith(prefix) || name.length() == prefix.length()) continue;
+            long ms = longProp(props, name, -1L);
+            if (ms > 0) out.put(KeyAliases.resolve(name.substring(prefix.length())), ms);
         }
-        catch (Throwable ignore) { }
+        return out;
+    }
 
-        try {
-            fetcher.start();
-            System.out.println("[Pipeline] IndexFetcher started → " + endpoint + " every " + period.toMillis() + " ms");
-        } catch (Throwable t) {
-            System.err.println("[Pipeline] Failed to start IndexFetcher:");
-            t.printStackTrace();
+    /** history.retention.<key>=<samples> entries (keys are tracked from boot). */
+    private static java.util.Map<String, Integer> historyRetention(Properties props) {
+        String prefix = "history.retention.";
+        java.util.Map<String, Integer> out = new java.util.LinkedHashMap<>();
+        for (String name : props.stringPropertyNames()) {
+            if (!name.startsWith(prefix) || name.length() == prefix.length()) continue;
+            int n = intProp(props, name, -1);
+            if (n > 0) out.put(name.substring(prefix.length()), n);
         }
+        return out;
     }
 
     /** Probe a list of candidate paths and return the first that responds with 2xx. */
@@ -151,78 +323,6 @@ public final class BootCoordinator {
         return uri;
     }
 
-    /**
-     * Accepts the raw JSON text from IndexFetcher and adapts it to whatever form
-     * IndexStore expects (Map<String, IndexStore.DataPoint>), with a reflective fallback.
-     */
-    @SuppressWarnings({ "rawtypes" })
-    private static void applySnapshotCompat(IndexStore store, String jsonText) throws Exception {
-        // If IndexStore has an overload that accepts String, use it directly.
-        try {
-            var m = IndexStore.class.getMethod("applySnapshot", String.class);
-            logInfo("[Boot] Using IndexStore.applySnapshot(String) overload");
-            m.invoke(store, jsonText);
-            return;
-        } catch (NoSuchMethodException ignore) { }
-
-        Map parsed;
-        try {
-            var jsonHelper  = Class.forName("gauges.helpers.JsonConfig");
-            var parseMethod = jsonHelper.getMethod("parse", String.class);
-            Object any = parseMethod.invoke(null, jsonText);
-            if (any instanceof Map) parsed = (Map) any; else {
-                try { var toMap = any.getClass().getMethod("toMap"); parsed = (Map) toMap.invoke(any); }
-                catch (Throwable t) { throw new IllegalStateException("JsonConfig.parse did not return Map and has no toMap(): " + any); }
-            }
-        } catch (ClassNotFoundException | NoSuchMethodException e) {
-            parsed = (Map) java.util.Map.of();
-            System.err.println("[Boot] JsonConfig not found; unable to parse snapshot into Map.\n" +
-                    "       Add a String overload to IndexStore.applySnapshot or ensure JsonConfig is on classpath.");
-        }
-
-        Class<?> dpClass = Class.forName("gauges.system.pipeline.IndexStore$DataPoint");
-        java.util.function.Function<Object, Object> toDataPoint = raw -> {
-            try {
-                if (raw == null) return null;
-                if (raw instanceof Number) {
-                    double v = ((Number) raw).doubleValue();
-                    long ts = System.currentTimeMillis();
-                    return constructDataPoint(dpClass, v, ts, null, null, raw);
-                }
-                if (raw instanceof Map) {
-                    Map m = (Map) raw;
-                    Object vObj   = firstNonNull(m.get("v"), m.get("value"), m.get("val"));
-                    Object tsObj  = firstNonNull(m.get("ts"), m.get("t"), m.get("time"));
-                    Object type   = firstNonNull(m.get("type"), m.get("kind"), m.get("k"));
-                    Object status = firstNonNull(m.get("status"), m.get("s"));
-                    double v = vObj instanceof Number ? ((Number) vObj).doubleValue() : parseDoubleOrNaN(vObj);
-                    long ts = tsObj instanceof Number ? ((Number) tsObj).longValue() : System.currentTimeMillis();
-                    return constructDataPoint(dpClass, v, ts, toStringOrNull(type), toStringOrNull(status), raw);
-                }
-                // Last resort: stringify
-                return constructDataPoint(dpClass, Double.NaN, System.currentTimeMillis(), "text", null, String.valueOf(raw));
-            } catch (Throwable t) {
-                System.err.println("[Boot] Failed to adapt raw value into DataPoint: " + raw);
-                t.printStackTrace();
-                return null;
-            }
-        };
-
-        java.util.Map<String, Object> out = new java.util.LinkedHashMap<>();
-        for (Object k : parsed.keySet()) {
-            Object dp = toDataPoint.apply(parsed.get(k));
-            if (dp != null) out.put(String.valueOf(k), dp);
-        }
-
-        try {
-            var m = IndexStore.class.getMethod("applySnapshot", java.util.Map.class);
-            m.invoke(store, out);
-            logInfo("[Boot] Applied snapshot via Map adapter: size=" + out.size());
-        } catch (NoSuchMethodException ex) {
-            throw new IllegalStateException("IndexStore.applySnapshot(Map) not found; expected signature missing.");
-        }
-    }
-
     private static void logInfo(String message) {
         if (!isLoggingEnabled()) {
             return;
@@ -242,37 +342,6 @@ public final class BootCoordinator {
         }
     }
 
-    private static Object constructDataPoint(Class<?> dpClass, double v, long ts, String type, String status, Object raw) throws Exception {
-        // Try common constructor shapes
-        for (var ctor : dpClass.getDeclaredConstructors()) {
-            Class<?>[] p = ctor.getParameterTypes();
-            try {
-                if (p.length == 2 && p[0] == double.class && p[1] == long.class) { ctor.setAccessible(true); return ctor.newInstance(v, ts); }
-                if (p.length == 3 && p[0] == double.class && p[1] == long.class && p[2] == String.class) { ctor.setAccessible(true); return ctor.newInstance(v, ts, type); }
-                if (p.length == 4 && p[0] == double.class && p[1] == long.class && p[2] == String.class && p[3] == String.class) { ctor.setAccessible(true); return ctor.newInstance(v, ts, type, status); }
-                if (p.length == 1 && p[0] == Object.class) { ctor.setAccessible(true); return ctor.newInstance(raw); }
-            } catch (Throwable ignore) { }
-        }
-        // Try common factories: of(...), from(...), create(...)
-        for (String name : new String[]{"of", "from", "create"}) {
-            for (var m : dpClass.getMethods()) {
-                if (!m.getName().equals(name)) continue;
-                Class<?>[] p = m.getParameterTypes();
-                try {
-                    if (p.length == 2 && p[0] == double.class && p[1] == long.class) return m.invoke(null, v, ts);
-                    if (p.length == 3 && p[0] == double.class && p[1] == long.class && p[2] == String.class) return m.invoke(null, v, ts, type);
-                    if (p.length == 1 && p[0] == Object.class) return m.invoke(null, raw);
-                    if (p.length == 1 && java.util.Map.class.isAssignableFrom(p[0])) return m.invoke(null, raw);
-                } catch (Throwable ignore) { }
-            }
-        }
-        throw new NoSuchMethodException("No compatible constructor/factory found for IndexStore.DataPoint");
-    }
-
-    private static Object firstNonNull(Object... arr) { for (Object o : arr) if (o != null) return o; return null; }
-    private static String toStringOrNull(Object o) { return o == null ? null : String.valueOf(o); }
-    private static double parseDoubleOrNaN(Object o) { try { return (o == null) ? Double.NaN : Double.parseDouble(String.valueOf(o)); } catch (Exception e) { return Double.NaN; } }
-
     private static Properties loadAppProperties() {
         Properties p = new Properties();
         try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream("Application.properties")) {
@@ -293,6 +362,16 @@ public final class BootCoordinator {
         return (v != null && !v.isBlank()) ? v.trim() : def;
     }
 
+    private static boolean boolProp(Properties p, String key, boolean def) {
+        String v = prop(p, key, null);
+        return v == null ? def : Boolean.parseBoolean(v.trim());
+    }
+
+    private static URI withQuery(URI uri, String query) {
+        String s = uri.toString();
+        return URI.create(s + (uri.getQuery() == null ? "?" : "&") + query);
+    }
+
     private static int intProp(Properties p, String key, int def) {
         String s = prop(p, key, String.valueOf(def));
         try { return Integer.parseInt(s.trim()); } catch (Exception ignore) { return def; }
@@ -304,6 +383,13 @@ public final class BootCoordinator {
 
     private void safeStopFetcher() {
         try { if (fetcher != null) fetcher.stop(); } catch (Throwable ignore) { }
+        try { if (ingest != null) ingest.stop(); } catch (Throwable ignore) { }
+        try { MetricsExporter.stop(); } catch (Throwable ignore) { }
+        try { LatencyTracer.stop(); } catch (Throwable ignore) { }
+        try { if (FreshnessTracker.global() != null) FreshnessTracker.global().stop(); } catch (Throwable ignore) { }
+        try { if (AlarmEngine.global() != null) AlarmEngine.global().stop(); } catch (Throwable ignore) { }
+        try { if (WindowAggregates.global() != null) WindowAggregates.global().stop(); } catch (Throwable ignore) { }
+        try { if (recorder != null) recorder.stop(); } catch (Throwable ignore) { }
     }
 
     private static void dumpOpenWindows(String tag) {
@@ -0,0 +1,181 @@
+package gauges.system;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics
+ *
+ * Process-wide registry of runtime metrics for watching pipeline and render health.
+ * - Counter   : monotonically increasing count (LongAdder backed)
+ * - Gauge     : last written value (e.g., snapshot size, store size)
+ * - Histogram : HDR-style log-linear buckets over long values (nanos, bytes, ...)
+ *
+ * Metrics are looked up once (typically into a static final field) and then written on
+ * hot paths; inc()/set()/record() never allocate. Reading (percentiles, dumps) happens on
+ * the exporter side only, see MetricsExporter.
+ *
+ * Names are dotted, lower-case paths such as "fetch.latency.nanos" or "store.apply.nanos".
+ */
+public final class Metrics {
+
+    private static final Map<String, Metric> REGISTRY = new ConcurrentSkipListMap<>();
+
+    /** Get or create the counter registered under name. */
+    public static Counter counter(String name) {
+        return register(name, Counter.class, Counter::new);
+    }
+
+    /** Get or create the gauge registered under name. */
+    public static Gauge gauge(String name) {
+        return register(name, Gauge.class, Gauge::new);
+    }
+
+    /** Get or create the histogram registered under name. */
+    public static Histogram histogram(String name) {
+        return register(name, Histogram.class, Histogram::new);
+    }
+
+    /** Read-only, name-sorted view of every registered metric. */
+    public static Map<String, Metric> all() {
+        return Collections.unmodifiableMap(REGISTRY);
+    }
+
+    private static <T extends Metric> T register(String name, Class<T> kind,
+                                                 java.util.function.Function<String, T> factory) {
+        Objects.requireNonNull(name, "name");
+        Metric m = REGISTRY.computeIfAbsent(name, factory::apply);
+        if (!kind.isInstance(m)) {
+            throw new IllegalStateException("Metric '" + name + "' already registered as "
+                    + m.getClass().getSimpleName() + ", not " + kind.getSimpleName());
+        }
+        return kind.cast(m);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Metric types
+    // ------------------------------------------------------------------------------------------------
+
+    /** Common base so exporters can walk the registry. */
+    public abstract static sealed class Metric permits Counter, Gauge, Histogram {
+        private final String name;
+
+        Metric(String name) { this.name = name; }
+
+        public String name() { return name; }
+    }
+
+    /** Increment-only counter. */
+    public static final class Counter extends Metric {
+        private final LongAdder count = new LongAdder();
+
+        private Counter(String name) { super(name); }
+
+        public void inc() { count.increment(); }
+        public void add(long n) { count.add(n); }
+        public long get() { return count.sum(); }
+    }
+
+    /** Last-value gauge. */
+    public static final class Gauge extends Metric {
+        private volatile double value = Double.NaN;
+
+        private Gauge(String name) { super(name); }
+
+        public void set(double v) { value = v; }
+        public double get() { return value; }
+    }
+
+    /**
+     * Log-linear histogram over non-negative longs.
+     *
+     * Each power of two is split into SUB_BUCKETS linear slots, so any recorded value lands in a
+     * bucket whose width is at most 1/SUB_BUCKETS (~3%) of the value. Values above MAX_TRACKABLE
+     * are clamped into the top bucket; count/sum/min/max stay exact.
+     */
+    public static final class Histogram extends Metric {
+        private static final int SUB_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int MAX_EXPONENT = 40; // 2^40 ns ≈ 18 minutes
+        private static final long MAX_TRACKABLE = (1L << MAX_EXPONENT) - 1;
+        private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+        private Histogram(String name) { super(name); }
+
+        /** Record one value (negative values are treated as 0). */
+        public void record(long value) {
+            long v = Math.max(0L, value);
+            buckets.incrementAndGet(indexOf(Math.min(v, MAX_TRACKABLE)));
+            count.increment();
+            sum.add(v);
+            min.accumulate(v);
+            max.accumulate(v);
+        }
+
+        /** Convenience: record System.nanoTime() - startNanos. */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        public long count() { return count.sum(); }
+        public long sum() { return sum.sum(); }
+        public long min() { long m = min.get(); return m == Long.MAX_VALUE ? 0L : m; }
+        public long max() { long m = max.get(); return m == Long.MIN_VALUE ? 0L : m; }
+
+        public double mean() {
+            long n = count.sum();
+            return n == 0 ? 0.0 : (double) sum.sum() / n;
+        }
+
+        /** Approximate value at quantile q in [0..1] (upper edge of the matching bucket). */
+        public long percentile(double q) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) total += buckets.get(i);
+            if (total == 0) return 0L;
+            long rank = (long) Math.ceil(Math.max(0.0, Math.min(1.0, q)) * total);
+            if (rank < 1) rank = 1;
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(upperEdge(i), max());
+            }
+            return max();
+        }
+
+        /** Clear all recorded values (used between benchmark phases). */
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0L);
+            count.reset();
+            sum.reset();
+            min.reset();
+            max.reset();
+        }
+
+        private static int indexOf(long v) {
+            if (v < SUB_BUCKETS) return (int) v;
+            int exp = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+            int sub = (int) (v >>> exp) & (SUB_BUCKETS - 1);
+            return (exp + 1) * SUB_BUCKETS + sub;
+        }
+
+        private static long upperEdge(int index) {
+            if (index < SUB_BUCKETS) return index;
+            int exp = index / SUB_BUCKETS - 1;
+            long sub = index % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1) << exp) - 1;
+        }
+    }
+
+    private Metrics() {}
+}
@@ -0,0 +1,180 @@
+package gauges.system;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * MetricsExporter
+ *
+ * Publishes the Metrics registry for inspection on a running dashboard.
+ * - JMX: one DynamicMBean "gauges:type=Metrics" (jconsole / VisualVM), always installed
+ * - HTTP: optional plain-text endpoint on 127.0.0.1:<port>/metrics (enabled when port > 0)
+ *
+ * Histograms are flattened into <name>.count / .mean / .p50 / .p90 / .p99 / .max entries.
+ */
+public final class MetricsExporter {
+
+    private static final String OBJECT_NAME = "gauges:type=Metrics";
+
+    private static volatile boolean jmxInstalled;
+    private static volatile HttpServer http;
+
+    /** Register the JMX bean and, when httpPort > 0, start the localhost endpoint. Idempotent. */
+    public static synchronized void install(int httpPort) {
+        installJmx();
+        if (httpPort > 0 && http == null) {
+            startHttp(httpPort);
+        }
+    }
+
+    /** Stop the HTTP endpoint if running (JMX bean stays registered). */
+    public static synchronized void stop() {
+        HttpServer s = http;
+        http = null;
+        if (s != null) s.stop(0);
+    }
+
+    /** Flatten the registry into name → value pairs (sorted by metric name). */
+    public static Map<String, Object> flatten() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (Metrics.Metric m : Metrics.all().values()) {
+            if (m instanceof Metrics.Counter c) {
+                out.put(c.name(), c.get());
+            } else if (m instanceof Metrics.Gauge g) {
+                out.put(g.name(), g.get());
+            } else if (m instanceof Metrics.Histogram h) {
+                out.put(h.name() + ".count", h.count());
+                out.put(h.name() + ".mean", h.mean());
+                out.put(h.name() + ".p50", h.percentile(0.50));
+                out.put(h.name() + ".p90", h.percentile(0.90));
+                out.put(h.name() + ".p99", h.percentile(0.99));
+                out.put(h.name() + ".max", h.max());
+            }
+        }
+        return out;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // JMX
+    // ------------------------------------------------------------------------------------------------
+
+    private static void installJmx() {
+        if (jmxInstalled) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new RegistryBean(), name);
+            }
+            jmxInstalled = true;
+            System.out.println("[Metrics] JMX bean registered as " + OBJECT_NAME);
+        } catch (Exception e) {
+            System.err.println("[Metrics] JMX registration failed: " + e);
+        }
+    }
+
+    /** Read-only view of the registry; the attribute set is rebuilt on every getMBeanInfo(). */
+    private static final class RegistryBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object v = flatten().get(attribute);
+            if (v == null) throw new AttributeNotFoundException(attribute);
+            return v;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Object> all = flatten();
+            AttributeList out = new AttributeList();
+            for (String a : attributes) {
+                Object v = all.get(a);
+                if (v != null) out.add(new Attribute(a, v));
+            }
+            return out;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("No operations on " + OBJECT_NAME);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attrs = new ArrayList<>();
+            for (Map.Entry<String, Object> e : flatten().entrySet()) {
+                attrs.add(new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(),
+                        e.getKey(), true, false, false));
+            }
+            return new MBeanInfo(RegistryBean.class.getName(), "Gauges runtime metrics",
+                    attrs.toArray(MBeanAttributeInfo[]::new), null, null, null);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // HTTP
+    // ------------------------------------------------------------------------------------------------
+
+    private static void startHttp(int port) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", MetricsExporter::serve);
+            // The dispatcher thread inherits the daemon flag of the thread calling start(),
+            // so start from a daemon thread to never keep the JVM alive after the UI closes.
+            Thread starter = new Thread(server::start, "Metrics-HttpStart");
+            starter.setDaemon(true);
+            starter.start();
+            starter.join();
+            http = server;
+            System.out.println("[Metrics] HTTP endpoint on http://127.0.0.1:" + port + "/metrics");
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("[Metrics] HTTP endpoint failed on port " + port + ": " + e);
+        }
+    }
+
+    private static void serve(HttpExchange ex) throws IOException {
+        StringBuilder sb = new StringBuilder(4096);
+        for (Map.Entry<String, Object> e : flatten().entrySet()) {
+            sb.append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+        }
+        byte[] body = sb.toString().getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private MetricsExporter() {}
+}
@@ -8,11 +8,15 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * ModeController
@@ -20,7 +24,11 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * Responsibilities:
  *  - Provide a global singleton (ModeController.global()).
  *  - Load mode JSON files from the classpath (under configs/Modes/ or configs/modes/).
- *  - Cache the raw JSON and expose it to windows that will parse & render displays.
+ *  - Compile each mode once into an immutable ModeLayout (display specs, resolved gauge
+ *    classes, parsed gauge configs) and cache it per mode, so re-entering a mode does no I/O
+ *    and no parsing.
+ *  - Optionally pre-warm every discoverable mode on a background thread after startup, so a
+ *    later switch is a cache hit and listeners can prepare their nodes ahead of time.
  *  - Notify listeners when a mode is loaded/changed.
  *
  * Conventions:
@@ -31,12 +39,12 @@ import java.util.concurrent.CopyOnWriteArrayList;
  *
  * Typical use:
  *    ModeController mc = ModeController.global();
- *    mc.addListener(name -> { /* rebuild windows from mc.getRawJson() */ /* });
+ *    mc.addListener((name, raw) -> { /* rebuild windows from mc.getCurrentLayout() */ /* });
  *    mc.load("mode1");
  *
- * Windows can then parse mc.getRawJson() to pull:
- *    - dashboard.displays[]
- *    - single_gauge.displays[]
+ * Windows then read mc.getCurrentLayout():
+ *    - dashboard()   (dashboard.displays[])
+ *    - singleGauge() (single_gauge)
  */
 public final class ModeController {
 
@@ -48,6 +56,12 @@ public final class ModeController {
     /** Simple listener invoked after a mode has been loaded and cached. */
     public interface Listener {
         void onModeChanged(String modeName, String rawJson);
+
+        /**
+         * Called from the pre-warm thread once a mode has been compiled in the background
+         * (see prewarmAsync). Windows may use it to build gauge nodes ahead of the switch.
+         */
+        default void onModePrepared(String modeName, ModeLayout layout) {}
     }
     private final List<Listener> listeners = new CopyOnWriteArrayList<>();
 
@@ -63,7 +77,7 @@ public final class ModeController {
      * If you want "mode1" to map to a different filename (e.g., "mode1_general"),
      * you can set an alias here. By default, we map mode1 -> mode1 and mode2 -> mode2.
      */
-    private final Map<String, String> aliases = new LinkedHashMap<>();
+    private final Map<String, String> aliases = new ConcurrentHashMap<>();
     {
         // Default identity aliases; customize if needed:
         aliases.put("mode1", "mode1");
@@ -75,33 +89,139 @@ public final class ModeController {
         Objects.requireNonNull(modeName, "modeName");
         Objects.requireNonNull(fileStem, "fileStem");
         aliases.put(modeName, fileStem);
+        compiled.remove(modeName);
     }
 
     // --------- State ---------
     private volatile String currentModeName = null;
     private volatile String currentRawJson = null;
-    private volatile String currentDashboardSection = null;
-    private volatile String currentSingleGaugeSection = null;
+    private volatile ModeLayout currentLayout = null;
+
+    /** Compiled layouts per mode name (filled on first load of each mode). */
+    private final Map<String, ModeLayout> compiled = new ConcurrentHashMap<>();
 
+    /** Background compiler for prewarmAsync() (created on first use). */
+    private ExecutorService prewarmExecutor;
 
     public String getCurrentModeName() { return currentModeName; }
     public String getRawJson() { return currentRawJson; }
+    public ModeLayout getCurrentLayout() { return currentLayout; }
 
-    public String getDashboardSectionRaw() { return currentDashboardSection; }
-    public String getSingleGaugeSectionRaw() { return currentSingleGaugeSection; }
+    public String getDashboardSectionRaw() {
+        ModeLayout l = currentLayout;
+        return l == null ? null : l.dashboardSectionRaw();
+    }
+    public String getSingleGaugeSectionRaw() {
+        ModeLayout l = currentLayout;
+        return l == null ? null : l.singleGaugeSectionRaw();
+    }
 
     // --------- Public API ---------
     /**
      * Load a mode by name (e.g., "mode1", "mode2").
-     * This method resolves aliases, then attempts to load
+     * The first load of a mode resolves aliases, reads
      *   configs/Modes/<fileStem>.json
      *   configs/modes/<fileStem>.json
-     * from the classpath.
+     * from the classpath and compiles it; later loads reuse the cached ModeLayout.
      *
      * @throws IllegalStateException if the resource cannot be found/read.
      */
     public synchronized void load(String modeName) {
         Objects.requireNonNull(modeName, "modeName");
+
+        ModeLayout layout = layoutFor(modeName);
+        final String json = layout.rawJson();
+
+        this.currentModeName = modeName;
+        this.currentRawJson  = json;
+        this.currentLayout   = layout;
+
+        // Notify listeners
+        for (Listener l : listeners) {
+            try {
+                l.onModeChanged(modeName, json);
+            } catch (Throwable t) {
+                System.out.println("[Mode] Listener threw: " + t);
+            }
+        }
+    }
+
+    /**
+     * Compile (or fetch from cache) the layout of a mode without switching to it.
+     * Safe to call from any thread.
+     *
+     * @throws IllegalStateException if the resource cannot be found/read.
+     */
+    public ModeLayout prepare(String modeName) {
+        Objects.requireNonNull(modeName, "modeName");
+        return layoutFor(modeName);
+    }
+
+    /**
+     * Compile every mode from listAvailableModes() (plus aliased names) on a background daemon
+     * thread and hand each result to Listener.onModePrepared. Idempotent; failures are logged
+     * and leave the mode to be compiled on its first load().
+     */
+    public void prewarmAsync() {
+        synchronized (this) {
+            if (prewarmExecutor != null) return;
+            prewarmExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "Mode-Prewarm");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+        }
+        prewarmExecutor.execute(() -> {
+            Set<String> names = new LinkedHashSet<>(aliases.keySet());
+            names.addAll(listAvailableModes());
+            long t0 = System.nanoTime();
+            int ok = 0;
+            for (String name : names) {
+                try {
+                    ModeLayout layout = layoutFor(name);
+                    ok++;
+                    for (Listener l : listeners) {
+                        try {
+                            l.onModePrepared(name, layout);
+                        } catch (Throwable t) {
+                            System.out.println("[Mode] Listener threw in onModePrepared: " + t);
+                        }
+                    }
+                } catch (Throwable t) {
+                    System.out.println("[Mode] Pre-warm skipped '" + name + "': " + t.getMessage());
+                }
+            }
+            System.out.println("[Mode] Pre-warmed " + ok + "/" + names.size() + " modes in "
+                    + (System.nanoTime() - t0) / 1_000_000 + " ms");
+        });
+    }
+
+    /** Drop every compiled layout so the next load re-reads from the classpath. */
+    public void invalidateCache() {
+        compiled.clear();
+    }
+
+    /**
+     * Returns a list of discoverable mode file names (without .json) under
+     * configs/Modes and configs/modes. Handy for exposing a mode-picker UI.
+     * Note: In an executable JAR, listing may be limited. We'll try our best.
+     */
+    public List<String> listAvailableModes() {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        if (cl == null) cl = ModeController.class.getClassLoader();
+        List<String> out = new ArrayList<>();
+        out.addAll(listModesUnder(cl, "configs/Modes"));
+        out.addAll(listModesUnder(cl, "configs/modes"));
+        return out.isEmpty() ? Collections.emptyList() : out;
+    }
+
+    // --------- Helpers ---------
+    private ModeLayout layoutFor(String modeName) {
+        return compiled.computeIfAbsent(modeName, m -> ModeLayout.compile(m, readModeJson(m)));
+    }
+
+    private String readModeJson(String modeName) {
         final String fileStem = aliases.getOrDefault(modeName, modeName);
 
         // Generate candidate classpath paths (NO "resources/" prefix)
@@ -137,38 +257,9 @@ public final class ModeController {
                     + hints();
             throw new IllegalStateException(msg);
         }
-
-        this.currentModeName = modeName;
-        this.currentRawJson  = json;
-        this.currentDashboardSection = sliceTopLevelObject(json, "dashboard");
-        this.currentSingleGaugeSection = sliceTopLevelObject(json, "single_gauge");
-
-
-        // Notify listeners
-        for (Listener l : listeners) {
-            try {
-                l.onModeChanged(modeName, json);
-            } catch (Throwable t) {
-                System.out.println("[Mode] Listener threw: " + t);
-            }
-        }
-    }
-
-    /**
-     * Returns a list of discoverable mode file names (without .json) under
-     * configs/Modes and configs/modes. Handy for exposing a mode-picker UI.
-     * Note: In an executable JAR, listing may be limited. We'll try our best.
-     */
-    public List<String> listAvailableModes() {
-        ClassLoader cl = Thread.currentThread().getContextClassLoader();
-        if (cl == null) cl = ModeController.class.getClassLoader();
-        List<String> out = new ArrayList<>();
-        out.addAll(listModesUnder(cl, "configs/Modes"));
-        out.addAll(listModesUnder(cl, "configs/modes"));
-        return out.isEmpty() ? Collections.emptyList() : out;
+        return json;
     }
 
-    // --------- Helpers ---------
     private static String slurpUtf8(InputStream in) throws IOException {
         StringBuilder sb = new StringBuilder(4096);
         try (BufferedReader br = new BufferedReader(new InputStreamReader(in, java.nio.charset.StandardCharsets.UTF_8))) {
@@ -265,38 +356,7 @@ public final class ModeController {
         return Collections.emptyList();
     }
 
-        /** Extract top-level object section like { ... } for a given key. Returns null if not found. */
-    private static String sliceTopLevelObject(String json, String key) {
-        if (json == null || key == null) return null;
-        String needle = "\"" + key + "\""; // "dashboard"
-        int i = json.indexOf(needle);
-        if (i < 0) return null;
-        int colon = json.indexOf(':', i + needle.length());
-        if (colon < 0) return null;
-        // Find first '{' after colon
-        int brace = -1;
-        for (int j = colon+1; j < json.length(); j++) {
-            char c = json.charAt(j);
-            if (Character.isWhitespace(c)) continue;
-            if (c == '{') { brace = j; break; }
-            else return null; // not an object
-        }
-        if (brace < 0) return null;
-        int depth = 0;
-        for (int j = brace; j < json.length(); j++) {
-            char c = json.charAt(j);
-            if (c == '{') depth++;
-            else if (c == '}') {
-                depth--;
-                if (depth == 0) {
-                    return json.substring(brace, j+1);
-                }
-            }
-        }
-        return null;
-    }
-
-private static String hints() {
+    private static String hints() {
         return "\n[Hints]\n" +
                "  • Place files under: src/main/resources/configs/Modes/<name>.json (or lowercase 'modes').\n" +
                "  • Do NOT prefix 'resources/' in getResourceAsStream paths.\n" +
@@ -0,0 +1,325 @@
+package gauges.system;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import gauges.helpers.JsonConfig;
+
+/**
+ * ModeLayout
+ *
+ * Immutable, pre-parsed form of one mode JSON file. Built once per mode by ModeController and
+ * cached, so switching back to a mode that was already seen does no parsing at all.
+ * - dashboard()   : every entry of dashboard.displays[] (in file order)
+ * - singleGauge() : the single_gauge entry (flat object or legacy displays[0]), or null
+ * - derived()     : the optional "derived" object (computed channel name → expression)
+ *
+ * Each Display carries the resolved gauge class and its config map (shared via JsonConfig.load),
+ * so windows only instantiate, configure and place nodes.
+ */
+public final class ModeLayout {
+
+    /** One gauge placement. x/y are the center, w/h the size (0 = use the gauge's preferred size). */
+    public record Display(String type,
+                          Class<?> gaugeClass,
+                          String configPath,
+                          Map<String, Object> config,
+                          String bindKey,
+                          double x,
+                          double y,
+                          double w,
+                          double h) {
+    }
+
+    private final String modeName;
+    private final String rawJson;
+    private final List<Display> dashboard;
+    private final Display singleGauge;
+    private final Map<String, Object> derived;
+    private final String dashboardSectionRaw;
+    private final String singleGaugeSectionRaw;
+
+    private ModeLayout(String modeName,
+                       String rawJson,
+                       List<Display> dashboard,
+                       Display singleGauge,
+                       Map<String, Object> derived,
+                       String dashboardSectionRaw,
+                       String singleGaugeSectionRaw) {
+        this.modeName = modeName;
+        this.rawJson = rawJson;
+        this.dashboard = List.copyOf(dashboard);
+        this.singleGauge = singleGauge;
+        this.derived = derived;
+        this.dashboardSectionRaw = dashboardSectionRaw;
+        this.singleGaugeSectionRaw = singleGaugeSectionRaw;
+    }
+
+    public String modeName() { return modeName; }
+    /** The mode file exactly as read from the classpath. */
+    public String rawJson() { return rawJson; }
+    public List<Display> dashboard() { return dashboard; }
+    public Display singleGauge() { return singleGauge; }
+    /** Computed channels declared by this mode (see DerivedChannels); empty if none. */
+    public Map<String, Object> derived() { return derived; }
+
+    /** Re-serialized "dashboard" object (null if absent); kept for diagnostics. */
+    public String dashboardSectionRaw() { return dashboardSectionRaw; }
+    /** Re-serialized "single_gauge" object (null if absent); kept for diagnostics. */
+    public String singleGaugeSectionRaw() { return singleGaugeSectionRaw; }
+
+    // ------------------------------------------------------------------------------------------------
+    // Compilation
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * Parse the raw mode JSON, resolve gauge classes and load every referenced gauge config.
+     * Never throws for content problems: bad entries are logged and skipped.
+     */
+    public static ModeLayout compile(String modeName, String rawJson) {
+        Objects.requireNonNull(modeName, "modeName");
+        String norm = JsonConfig.normalize(rawJson);
+
+        JsonNode root = null;
+        try {
+            root = JsonConfig.parseTree(norm);
+        } catch (Exception e) {
+            System.out.println("[Mode] JSON parse failed for '" + modeName + "': " + e.getMessage()
+                    + " — trying legacy scanner");
+        }
+
+        List<Map<String, Object>> dashRaw;
+        Map<String, Object> singleRaw;
+        Map<String, Object> derived = Map.of();
+        String dashSection = null;
+        String singleSection = null;
+
+        if (root != null && root.isObject()) {
+            JsonNode dash = root.get("dashboard");
+            JsonNode single = root.get("single_gauge");
+            dashSection = (dash != null && dash.isObject()) ? dash.toString() : null;
+            singleSection = (single != null && single.isObject()) ? single.toString() : null;
+            dashRaw = displaysOf(dash);
+            singleRaw = singleOf(single);
+            JsonNode derivedNode = root.get("derived");
+            if (derivedNode != null && derivedNode.isObject()) derived = JsonConfig.toMap(derivedNode);
+        } else {
+            dashSection = LegacyScanner.sliceTopLevelObject(norm, "dashboard");
+            singleSection = LegacyScanner.sliceTopLevelObject(norm, "single_gauge");
+            dashRaw = LegacyScanner.displays(dashSection);
+            List<Map<String, Object>> singles = LegacyScanner.displays(singleSection);
+            singleRaw = singles.isEmpty() ? null : singles.get(0);
+        }
+
+        List<Display> dashboard = new ArrayList<>();
+        for (Map<String, Object> m : dashRaw) {
+            Display d = toDisplay(modeName, m);
+            if (d != null) dashboard.add(d);
+        }
+        Display single = singleRaw == null ? null : toDisplay(modeName, singleRaw);
+
+        System.out.println("[Mode] Compiled '" + modeName + "': dashboard=" + dashboard.size()
+                + " single_gauge=" + (single == null ? "none" : single.type()));
+        return new ModeLayout(modeName, rawJson, dashboard, single, derived, dashSection, singleSection);
+    }
+
+    private static List<Map<String, Object>> displaysOf(JsonNode section) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        if (section == null || !section.isObject()) return out;
+        JsonNode displays = section.get("displays");
+        if (displays == null || !displays.isArray()) return out;
+        for (JsonNode item : displays) {
+            if (item.isObject()) out.add(JsonConfig.toMap(item));
+        }
+        return out;
+    }
+
+    /** single_gauge: preferred flat { type, config, bind } or legacy { displays: [ {...} ] }. */
+    private static Map<String, Object> singleOf(JsonNode section) {
+        if (section == null || !section.isObject()) return null;
+        if (section.hasNonNull("type")) return JsonConfig.toMap(section);
+        List<Map<String, Object>> list = displaysOf(section);
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    private static Display toDisplay(String modeName, Map<String, Object> m) {
+        String type = asString(m.get("type"));
+        if (type == null || type.isBlank()) {
+            System.out.println("[Mode] '" + modeName + "': skipping display with missing 'type'");
+            return null;
+        }
+        String configPath = asString(m.get("config"));
+        return new Display(
+                type,
+                resolveClass(type),
+                configPath,
+                JsonConfig.load(configPath),
+                asString(m.get("bind")),
+                asDouble(m.get("x")),
+                asDouble(m.get("y")),
+                asDouble(m.get("w")),
+                asDouble(m.get("h")));
+    }
+
+    private static Class<?> resolveClass(String fqcn) {
+        try {
+            return Class.forName(fqcn, false, loader());
+        } catch (Throwable t) {
+            System.out.println("[Mode] gauge class not found: " + fqcn + " (" + t + ")");
+            return null;
+        }
+    }
+
+    private static ClassLoader loader() {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        return cl != null ? cl : ModeLayout.class.getClassLoader();
+    }
+
+    private static String asString(Object o) {
+        return (o instanceof String s) ? s : null;
+    }
+
+    private static double asDouble(Object o) {
+        if (o instanceof Number n) return n.doubleValue();
+        if (o instanceof String s) try { return Double.parseDouble(s.trim()); } catch (Exception ignore) {}
+        return 0;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Legacy fallback
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * Brace-depth scanner used only when the mode file is not valid JSON (e.g., a dropped comma).
+     * Extracts type/config/bind/x/y/w/h from each object of a "displays" array.
+     */
+    private static final class LegacyScanner {
+
+        /** Extract top-level object section like { ... } for a given key. Returns null if not found. */
+        static String sliceTopLevelObject(String json, String key) {
+            if (json == null || key == null) return null;
+            String needle = "\"" + key + "\"";
+            int i = json.indexOf(needle);
+            if (i < 0) return null;
+            int colon = json.indexOf(':', i + needle.length());
+            if (colon < 0) return null;
+            int brace = -1;
+            for (int j = colon + 1; j < json.length(); j++) {
+                char c = json.charAt(j);
+                if (Character.isWhitespace(c)) continue;
+                if (c == '{') { brace = j; break; }
+                else return null; // not an object
+            }
+            if (brace < 0) return null;
+            int depth = 0;
+            for (int j = brace; j < json.length(); j++) {
+                char c = json.charAt(j);
+                if (c == '{') depth++;
+                else if (c == '}') {
+                    depth--;
+                    if (depth == 0) return json.substring(brace, j + 1);
+                }
+            }
+            return null;
+        }
+
+        static List<Map<String, Object>> displays(String section) {
+            List<Map<String, Object>> out = new ArrayList<>();
+            if (section == null || section.isBlank()) return out;
+
+            String needle = "\"displays\"";
+            int di = section.indexOf(needle);
+            if (di < 0) return out;
+            int colon = section.indexOf(':', di + needle.length());
+            if (colon < 0) return out;
+
+            int arrStart = -1;
+            for (int j = colon + 1; j < section.length(); j++) {
+                char c = section.charAt(j);
+                if (Character.isWhitespace(c)) continue;
+                if (c == '[') { arrStart = j; break; }
+                else return out;
+            }
+            if (arrStart < 0) return out;
+
+            int depth = 0, arrEnd = -1;
+            for (int j = arrStart; j < section.length(); j++) {
+                char c = section.charAt(j);
+                if (c == '[') depth++;
+                else if (c == ']') {
+                    depth--;
+                    if (depth == 0) { arrEnd = j; break; }
+                }
+            }
+            if (arrEnd < 0) return out;
+
+            String arrayBody = section.substring(arrStart + 1, arrEnd);
+            int i = 0;
+            while (i < arrayBody.length()) {
+                int objStart = arrayBody.indexOf('{', i);
+                if (objStart < 0) break;
+                int d = 0, objEnd = -1;
+                for (int j = objStart; j < arrayBody.length(); j++) {
+                    char c = arrayBody.charAt(j);
+                    if (c == '{') d++;
+                    else if (c == '}') {
+                        d--;
+                        if (d == 0) { objEnd = j; break; }
+                    }
+                }
+                if (objEnd < 0) break;
+
+                String obj = arrayBody.substring(objStart, objEnd + 1);
+                Map<String, Object> m = new LinkedHashMap<>();
+                m.put("type", extractString(obj, "\"type\""));
+                m.put("config", extractString(obj, "\"config\""));
+                m.put("bind", extractString(obj, "\"bind\""));
+                m.put("x", extractNumber(obj, "\"x\""));
+                m.put("y", extractNumber(obj, "\"y\""));
+                m.put("w", extractNumber(obj, "\"w\""));
+                m.put("h", extractNumber(obj, "\"h\""));
+                out.add(m);
+
+                i = objEnd + 1;
+            }
+            return out;
+        }
+
+        private static String extractString(String src, String key) {
+            int k = src.indexOf(key);
+            if (k < 0) return null;
+            int colon = src.indexOf(':', k + key.length());
+            if (colon < 0) return null;
+            int firstQuote = src.indexOf('"', colon + 1);
+            if (firstQuote < 0) return null;
+            int secondQuote = src.indexOf('"', firstQuote + 1);
+            if (secondQuote < 0) return null;
+            return src.substring(firstQuote + 1, secondQuote);
+        }
+
+        private static double extractNumber(String src, String key) {
+            int k = src.indexOf(key);
+            if (k < 0) return 0;
+            int colon = src.indexOf(':', k + key.length());
+            if (colon < 0) return 0;
+            int j = colon + 1;
+            while (j < src.length() && Character.isWhitespace(src.charAt(j))) j++;
+            int end = j;
+            while (end < src.length()) {
+                char c = src.charAt(end);
+                if ((c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+') { end++; continue; }
+                break;
+            }
+            try {
+                return Double.parseDouble(src.substring(j, end));
+            } catch (Exception ignore) { return 0; }
+        }
+
+        private LegacyScanner() {}
+    }
+}
@@ -0,0 +1,438 @@
+package gauges.system.pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import gauges.system.Metrics;
+
+/**
+ * AlarmEngine
+ *
+ * Threshold alarms evaluated on the ingest thread (an IndexStore.Tap), so widgets such as
+ * WarningBanner and ShiftIndicator never poll values: they only hear about state transitions.
+ * - rules     : { id, key, above | below, hysteresis, delayMs, clearDelayMs, severity, message }
+ *               from configs/alarms.json ("rules" array); derived and key@agg channels work too
+ * - hysteresis: an "above T" rule turns on at v >= T and off at v < T - hysteresis ("below" mirrors)
+ * - debounce  : the condition must hold for delayMs (on) / clearDelayMs (off); pending rules are
+ *               re-checked on every sample of their key (sample time) and by a 50 ms timer (wall
+ *               time), so a value that crosses and then holds still completes its delay when no
+ *               further samples come (HTTP 304, delta frames, a repeated ts)
+ * - index     : per key, the rules' on/off thresholds sit in one sorted array; a new sample only
+ *               visits rules whose thresholds lie between the previous and the new value (binary
+ *               search, O(log n) plus the rules actually crossed) and the pending ones
+ * - delivery  : each batch's transitions go to every listener in one task on the listener's own
+ *               executor (Platform::runLater for widgets); nothing is sent while states hold
+ */
+public final class AlarmEngine implements IndexStore.Tap {
+
+    /** Ordered severities; widgets show the highest active one. */
+    public enum Severity {
+        INFO, WARNING, CRITICAL;
+
+        static Severity parse(Object raw) {
+            if (raw == null) return WARNING;
+            try {
+                return valueOf(String.valueOf(raw).trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return WARNING;
+            }
+        }
+    }
+
+    /** One state transition of a rule. */
+    public record Alarm(String id, String key, Severity severity, String message, boolean active,
+                        double value, long ts, double threshold) { }
+
+    /** Receives transitions on the executor given to addListener. */
+    @FunctionalInterface
+    public interface Listener {
+        void onAlarms(List<Alarm> transitions);
+    }
+
+    private static volatile AlarmEngine GLOBAL;
+
+    private static final Metrics.Histogram EVAL_NANOS  = Metrics.histogram("alarms.eval.nanos");
+    private static final Metrics.Counter   TRANSITIONS = Metrics.counter("alarms.transitions");
+    private static final Metrics.Gauge     ACTIVE      = Metrics.gauge("alarms.active");
+
+    private static final int OFF = 0, ARMING = 1, ON = 2, DISARMING = 3;
+
+    private static final long TICK_MILLIS = 50;
+
+    private record Subscription(Listener listener, Executor executor) { }
+
+    private final Map<String, KeyIndex> byKey = new HashMap<>();
+    private final List<Rule> rules = new ArrayList<>();
+    private final CopyOnWriteArrayList<Subscription> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this (ingest thread)
+    private final Map<String, Alarm> active = new LinkedHashMap<>();
+    private List<Alarm> transitions = new ArrayList<>();
+    private int epoch;
+    private int pendingCount;
+
+    private ScheduledExecutorService timer;
+
+    public AlarmEngine(List<?> ruleDefs) {
+        if (ruleDefs != null) {
+            for (Object o : ruleDefs) {
+                if (!(o instanceof Map<?, ?> m)) continue;
+                Rule r = Rule.parse(m);
+                if (r != null) rules.add(r);
+            }
+        }
+        Map<String, List<Rule>> grouped = new LinkedHashMap<>();
+        for (Rule r : rules) grouped.computeIfAbsent(r.key, k -> new ArrayList<>()).add(r);
+        grouped.forEach((k, list) -> byKey.put(k, new KeyIndex(list)));
+    }
+
+    /** Build the global engine from a parsed alarms.json tree and tap it into the store. */
+    public static AlarmEngine install(IndexStore store, Map<String, Object> config) {
+        Object defs = config == null ? null : config.get("rules");
+        AlarmEngine e = new AlarmEngine(defs instanceof List<?> l ? l : List.of());
+        store.addTap(e);
+        e.start();
+        GLOBAL = e;
+        System.out.println("[Alarms] " + e.rules.size() + " rule(s) on " + e.byKey.size() + " key(s)");
+        return e;
+    }
+
+    /** The installed engine, or null before boot wired it. */
+    public static AlarmEngine global() {
+        return GLOBAL;
+    }
+
+    /** Start the timer that completes pending delays without new samples. */
+    public synchronized void start() {
+        if (timer != null || rules.isEmpty()) return;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "AlarmEngine");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::safeTick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (timer != null) timer.shutdownNow();
+        timer = null;
+    }
+
+    /**
+     * Subscribe to transitions, delivered through executor. The currently active alarms are sent
+     * first, so a widget created mid-alarm starts in the right state.
+     */
+    public void addListener(Listener listener, Executor executor) {
+        Subscription s = new Subscription(Objects.requireNonNull(listener, "listener"),
+                Objects.requireNonNull(executor, "executor"));
+        List<Alarm> current;
+        synchronized (this) {
+            listeners.add(s);
+            current = List.copyOf(active.values());
+        }
+        if (!current.isEmpty()) executor.execute(() -> listener.onAlarms(current));
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.removeIf(s -> s.listener == listener);
+    }
+
+    /** Ids of the rules whose id starts with prefix, ordered by threshold (e.g. shift-light stages). */
+    public List<String> ruleIds(String prefix) {
+        return rules.stream()
+                .filter(r -> r.id.startsWith(prefix))
+                .sorted(Comparator.comparingDouble((Rule r) -> r.above ? r.threshold : -r.threshold))
+                .map(r -> r.id)
+                .toList();
+    }
+
+    /** Currently active alarms (copy). */
+    public synchronized List<Alarm> active() {
+        return List.copyOf(active.values());
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Evaluation (ingest thread)
+    // ------------------------------------------------------------------------------------------------
+
+    @Override
+    public synchronized void onApply(Map<String, IndexStore.DataPoint> applied, long version) {
+        if (byKey.isEmpty()) return;
+        long t0 = System.nanoTime();
+        if (byKey.size() < applied.size()) {
+            for (KeyIndex idx : byKey.values()) {
+                IndexStore.DataPoint dp = applied.get(idx.key);
+                if (dp != null) evaluate(idx, dp);
+            }
+        } else {
+            for (Map.Entry<String, IndexStore.DataPoint> e : applied.entrySet()) {
+                KeyIndex idx = byKey.get(e.getKey());
+                if (idx != null && e.getValue() != null) evaluate(idx, e.getValue());
+            }
+        }
+        EVAL_NANOS.recordSince(t0);
+        dispatch();
+    }
+
+    /** Send this batch's transitions (lock held). */
+    private void dispatch() {
+        if (transitions.isEmpty()) return;
+
+        List<Alarm> batch = transitions;
+        transitions = new ArrayList<>();
+        TRANSITIONS.add(batch.size());
+        ACTIVE.set(active.size());
+        for (Subscription s : listeners) {
+            try {
+                s.executor.execute(() -> s.listener.onAlarms(batch));
+            } catch (Throwable t) {
+                System.out.println("[Alarms] listener dispatch failed: " + t);
+            }
+        }
+    }
+
+    private void evaluate(KeyIndex idx, IndexStore.DataPoint dp) {
+        double v = dp.v;
+        if (Double.isNaN(v)) return;
+        int stamp = ++epoch;
+        if (Double.isNaN(idx.prev)) {
+            for (Rule r : idx.rules) step(r, v, dp.ts, stamp);
+        } else {
+            // Only rules with a threshold in [min(prev, v), max(prev, v)] can change state
+            double lo = Math.min(idx.prev, v), hi = Math.max(idx.prev, v);
+            for (int i = lowerBound(idx.bounds, lo); i < idx.bounds.length && idx.bounds[i] <= hi; i++) {
+                step(idx.boundRule[i], v, dp.ts, stamp);
+            }
+            for (int i = 0; i < idx.pending.size(); i++) {
+                step(idx.pending.get(i), v, dp.ts, stamp);
+            }
+        }
+        idx.prev = v;
+        prune(idx);
+    }
+
+    private void prune(KeyIndex idx) {
+        int before = idx.pending.size();
+        idx.pending.removeIf(r -> r.state == OFF || r.state == ON);
+        pendingCount -= before - idx.pending.size();
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Wall-clock expiry (timer thread)
+    // ------------------------------------------------------------------------------------------------
+
+    private void safeTick() {
+        try {
+            tick(System.nanoTime());
+        } catch (Throwable t) {
+            System.out.println("[Alarms] tick failed: " + t);
+        }
+    }
+
+    /**
+     * Complete pending rules whose delay has run out in wall time. No sample moved them out of
+     * ARMING/DISARMING meanwhile, so the key's last value still meets the condition.
+     */
+    synchronized void tick(long nowNanos) {
+        if (pendingCount == 0) return;
+        for (KeyIndex idx : byKey.values()) {
+            if (idx.pending.isEmpty()) continue;
+            for (int i = 0; i < idx.pending.size(); i++) {
+                Rule r = idx.pending.get(i);
+                if (nowNanos - r.dueNanos < 0) continue;
+                int before = r.state;
+                long ts = r.since + (before == ARMING ? r.delayMs : r.clearDelayMs);
+                r.state = before == ARMING ? ON : OFF;
+                settle(r, before, idx.prev, ts);
+            }
+            prune(idx);
+        }
+        dispatch();
+    }
+
+    private void step(Rule r, double v, long ts, int stamp) {
+        if (r.seen == stamp) return;
+        r.seen = stamp;
+        int before = r.state;
+        switch (r.state) {
+            case OFF -> {
+                if (r.enter(v)) {
+                    r.since = ts;
+                    r.dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(r.delayMs);
+                    r.state = r.delayMs == 0 ? ON : ARMING;
+                }
+            }
+            case ARMING -> {
+                if (!r.enter(v)) r.state = OFF;
+                else if (ts - r.since >= r.delayMs) r.state = ON;
+            }
+            case ON -> {
+                if (r.exit(v)) {
+                    r.since = ts;
+                    r.dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(r.clearDelayMs);
+                    r.state = r.clearDelayMs == 0 ? OFF : DISARMING;
+                }
+            }
+            default -> { // DISARMING
+                if (!r.exit(v)) r.state = ON;
+                else if (ts - r.since >= r.clearDelayMs) r.state = OFF;
+            }
+        }
+        settle(r, before, v, ts);
+    }
+
+    /** After a state change: queue a pending rule, or record an on/off transition. */
+    private void settle(Rule r, int before, double v, long ts) {
+        if (r.state == before) return;
+        if (r.state == ARMING || r.state == DISARMING) {
+            byKey.get(r.key).pending.add(r);
+            pendingCount++;
+            return;
+        }
+        boolean on = r.state == ON;
+        if (on == (before == ON || before == DISARMING)) return; // ARMING→OFF or DISARMING→ON
+        Alarm a = new Alarm(r.id, r.key, r.severity, r.message, on, v, ts, r.threshold);
+        if (on) active.put(r.id, a);
+        else active.remove(r.id);
+        transitions.add(a);
+    }
+
+    private static int lowerBound(double[] a, double x) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < x) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Rules and per-key index
+    // ------------------------------------------------------------------------------------------------
+
+    private static final class Rule {
+        final String id;
+        final String key;
+        final boolean above;
+        final double threshold;
+        final double hysteresis;
+        final long delayMs;
+        final long clearDelayMs;
+        final Severity severity;
+        final String message;
+
+        int state = OFF;
+        long since;                          // sample time the pending condition started
+        long dueNanos;                       // wall time the pending delay runs out
+        int seen;
+
+        private Rule(String id, String key, boolean above, double threshold, double hysteresis,
+                     long delayMs, long clearDelayMs, Severity severity, String message) {
+            this.id = id;
+            this.key = key;
+            this.above = above;
+            this.threshold = threshold;
+            this.hysteresis = hysteresis;
+            this.delayMs = delayMs;
+            this.clearDelayMs = clearDelayMs;
+            this.severity = severity;
+            this.message = message;
+        }
+
+        boolean enter(double v) {
+            return above ? v >= threshold : v <= threshold;
+        }
+
+        boolean exit(double v) {
+            return above ? v < threshold - hysteresis : v > threshold + hysteresis;
+        }
+
+        /** Where the exit condition flips. */
+        double exitBound() {
+            return above ? threshold - hysteresis : threshold + hysteresis;
+        }
+
+        static Rule parse(Map<?, ?> m) {
+            String key = str(m.get("key"));
+            if (key != null) key = KeyAliases.resolve(key);
+            Object above = m.get("above"), below = m.get("below");
+            if (key == null || (above == null) == (below == null)) {
+                System.out.println("[Alarms] skipping rule " + m + ": needs a key and exactly one of above/below");
+                return null;
+            }
+            double threshold = num(above != null ? above : below, Double.NaN);
+            if (Double.isNaN(threshold)) {
+                System.out.println("[Alarms] skipping rule " + m + ": threshold is not a number");
+                return null;
+            }
+            String id = str(m.get("id"));
+            if (id == null) id = key + (above != null ? ">" : "<") + threshold;
+            String message = str(m.get("message"));
+            return new Rule(id, key, above != null, threshold,
+                    Math.abs(num(m.get("hysteresis"), 0.0)),
+                    (long) Math.max(0.0, num(m.get("delayMs"), 0.0)),
+                    (long) Math.max(0.0, num(m.get("clearDelayMs"), 0.0)),
+                    Severity.parse(m.get("severity")),
+                    message != null ? message : id);
+        }
+
+        private static String str(Object o) {
+            if (o == null) return null;
+            String s = String.valueOf(o).trim();
+            return s.isEmpty() ? null : s;
+        }
+
+        private static double num(Object o, double def) {
+            if (o instanceof Number n) return n.doubleValue();
+            if (o == null) return def;
+            try {
+                return Double.parseDouble(String.valueOf(o).trim());
+            } catch (NumberFormatException e) {
+                return def;
+            }
+        }
+    }
+
+    /** Sorted on/off thresholds of every rule on one key. */
+    private static final class KeyIndex {
+        final String key;
+        final Rule[] rules;
+        final double[] bounds;
+        final Rule[] boundRule;
+        final List<Rule> pending = new ArrayList<>();
+        double prev = Double.NaN;
+
+        KeyIndex(List<Rule> list) {
+            this.key = list.get(0).key;
+            this.rules = list.toArray(new Rule[0]);
+            Integer[] order = new Integer[rules.length * 2];
+            double[] raw = new double[order.length];
+            for (int i = 0; i < rules.length; i++) {
+                raw[2 * i] = rules[i].threshold;
+                raw[2 * i + 1] = rules[i].exitBound();
+                order[2 * i] = 2 * i;
+                order[2 * i + 1] = 2 * i + 1;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(i -> raw[i]));
+            bounds = new double[order.length];
+            boundRule = new Rule[order.length];
+            for (int i = 0; i < order.length; i++) {
+                bounds[i] = raw[order[i]];
+                boundRule[i] = rules[order[i] / 2];
+            }
+        }
+    }
+}
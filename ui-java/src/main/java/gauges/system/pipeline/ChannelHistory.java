@@ -0,0 +1,276 @@
+package gauges.system.pipeline;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import gauges.system.Metrics;
+
+/**
+ * ChannelHistory
+ *
+ * Shared, bounded per-channel history fed from IndexStore (as an IndexStore.Tap), so widgets
+ * that plot the past read one copy instead of each keeping their own.
+ * - Series    : fixed-capacity columnar ring (long[] ts, double[] v) per key, oldest → newest
+ * - retention : samples per key; default capacity, per-key overrides, hard cap (maxCapacity)
+ * - tracking  : only keys someone asked for (series(key) / attach) or listed at install hold
+ *               memory, so the footprint is keys-in-use × capacity whatever the gauge count
+ * - queries   : latest(n), range(from, to) into caller-owned arrays, and downsample() into
+ *               per-bucket min/max with the previous value held across empty buckets
+ *
+ * Samples are taken per applied DataPoint using its timestamp; re-applies of the same point are
+ * ignored and timestamps going backwards are clamped so every series stays sorted.
+ */
+public final class ChannelHistory implements IndexStore.Tap {
+
+    private static volatile ChannelHistory GLOBAL;
+
+    private static final Metrics.Gauge TRACKED = Metrics.gauge("history.series");
+    private static final Metrics.Gauge SAMPLES_CAPACITY = Metrics.gauge("history.capacity.samples");
+
+    private final int defaultCapacity;
+    private final int maxCapacity;
+    private final Map<String, Integer> retention;
+    private final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<>();
+
+    public ChannelHistory(int defaultCapacity, int maxCapacity, Map<String, Integer> retention) {
+        this.maxCapacity = Math.max(2, maxCapacity);
+        this.defaultCapacity = Math.min(this.maxCapacity, Math.max(2, defaultCapacity));
+        this.retention = Map.copyOf(Objects.requireNonNull(retention, "retention"));
+    }
+
+    /** Create the global history, tap it into the store and pre-track the retention keys. */
+    public static ChannelHistory install(IndexStore store, int defaultCapacity, int maxCapacity,
+                                         Map<String, Integer> retention) {
+        ChannelHistory h = new ChannelHistory(defaultCapacity, maxCapacity, retention);
+        for (String key : h.retention.keySet()) h.series(key);
+        store.addTap(h);
+        GLOBAL = h;
+        System.out.println("[History] installed (default=" + h.defaultCapacity + " max=" + h.maxCapacity
+                + " samples/key, " + h.retention.size() + " configured keys)");
+        return h;
+    }
+
+    /** The installed history, or null before boot wired it. */
+    public static ChannelHistory global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Give a node that declares setHistory(ChannelHistory.Series) the shared series of its bound
+     * key. Called by the binding managers; a no-op for other nodes or before install().
+     */
+    public static void attach(Object node, String key) {
+        ChannelHistory h = GLOBAL;
+        if (h == null || node == null || key == null || key.isBlank()) return;
+        try {
+            Method m = node.getClass().getMethod("setHistory", Series.class);
+            m.invoke(node, h.series(key.trim()));
+        } catch (NoSuchMethodException notHistoryAware) {
+            // plain gauge
+        } catch (ReflectiveOperationException e) {
+            System.out.println("[History] attach failed for " + node.getClass().getName() + " key=" + key + ": " + e);
+        }
+    }
+
+    /** The series for a key, tracking it from now on. */
+    public Series series(String key) {
+        return series.computeIfAbsent(key, k -> {
+            Series s = new Series(k, retention.getOrDefault(k, defaultCapacity), maxCapacity);
+            TRACKED.set(series.size() + 1);
+            return s;
+        });
+    }
+
+    /** The series for a key if it is tracked (null otherwise). */
+    public Series find(String key) {
+        return series.get(key);
+    }
+
+    @Override
+    public void onApply(Map<String, IndexStore.DataPoint> applied, long version) {
+        if (series.isEmpty()) return;
+        long capacity = 0;
+        if (series.size() < applied.size()) {
+            for (Series s : series.values()) {
+                IndexStore.DataPoint dp = applied.get(s.key);
+                if (dp != null) s.append(dp.ts, dp.v);
+                capacity += s.capacity();
+            }
+        } else {
+            for (Map.Entry<String, IndexStore.DataPoint> e : applied.entrySet()) {
+                Series s = series.get(e.getKey());
+                IndexStore.DataPoint dp = e.getValue();
+                if (s != null && dp != null) s.append(dp.ts, dp.v);
+            }
+            for (Series s : series.values()) capacity += s.capacity();
+        }
+        SAMPLES_CAPACITY.set(capacity);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Series
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * One channel's ring. Written by the ingest thread, read from the FX thread; every method
+     * locks the series briefly. Query results are copied into arrays owned by the caller.
+     */
+    public static final class Series {
+        private final String key;
+        private final int maxCapacity;
+        private long[] ts;
+        private double[] v;
+        private int head;      // next write slot
+        private int size;
+        private long appended;
+
+        Series(String key, int capacity, int maxCapacity) {
+            this.key = key;
+            this.maxCapacity = maxCapacity;
+            int cap = Math.min(maxCapacity, Math.max(2, capacity));
+            this.ts = new long[cap];
+            this.v = new double[cap];
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public synchronized int capacity() {
+            return ts.length;
+        }
+
+        public synchronized int size() {
+            return size;
+        }
+
+        /** Total samples ever appended; changes whenever the series does. */
+        public synchronized long appended() {
+            return appended;
+        }
+
+        /** Timestamp of the newest sample (Long.MIN_VALUE when empty). */
+        public synchronized long lastTs() {
+            return size == 0 ? Long.MIN_VALUE : ts[at(size - 1)];
+        }
+
+        /** Value of the newest sample (NaN when empty). */
+        public synchronized double lastValue() {
+            return size == 0 ? Double.NaN : v[at(size - 1)];
+        }
+
+        /** Grow (never shrink) to hold at least n samples, up to the history's hard cap. */
+        public synchronized void ensureCapacity(int n) {
+            int want = Math.min(maxCapacity, n);
+            if (want <= ts.length) return;
+            long[] nts = new long[want];
+            double[] nv = new double[want];
+            for (int i = 0; i < size; i++) {
+                nts[i] = ts[at(i)];
+                nv[i] = v[at(i)];
+            }
+            ts = nts;
+            v = nv;
+            head = size % want;
+        }
+
+        synchronized void append(long t, double value) {
+            if (size > 0) {
+                int last = at(size - 1);
+                if (ts[last] == t && Double.compare(v[last], value) == 0) return; // same point re-applied
+                if (t < ts[last]) t = ts[last];
+            }
+            ts[head] = t;
+            v[head] = value;
+            head = (head + 1) % ts.length;
+            if (size < ts.length) size++;
+            appended++;
+        }
+
+        /** Copy the newest n samples (oldest first); returns how many were copied. */
+        public synchronized int latest(int n, long[] tsOut, double[] vOut) {
+            int count = Math.min(Math.min(n, size), Math.min(tsOut.length, vOut.length));
+            int from = size - count;
+            for (int i = 0; i < count; i++) {
+                int idx = at(from + i);
+                tsOut[i] = ts[idx];
+                vOut[i] = v[idx];
+            }
+            return count;
+        }
+
+        /** Copy samples with from <= ts < to (oldest first, up to the arrays' length). */
+        public synchronized int range(long from, long to, long[] tsOut, double[] vOut) {
+            int limit = Math.min(tsOut.length, vOut.length);
+            int count = 0;
+            for (int i = lowerBound(from); i < size && count < limit; i++) {
+                int idx = at(i);
+                if (ts[idx] >= to) break;
+                tsOut[count] = ts[idx];
+                vOut[count] = v[idx];
+                count++;
+            }
+            return count;
+        }
+
+        /**
+         * Downsample [from, to) into minOut.length equal buckets of min/max. Empty buckets hold the
+         * previous value (NaN before the first known sample). Returns the samples visited.
+         */
+        public synchronized int downsample(long from, long to, double[] minOut, double[] maxOut) {
+            int buckets = Math.min(minOut.length, maxOut.length);
+            Arrays.fill(minOut, 0, buckets, Double.NaN);
+            Arrays.fill(maxOut, 0, buckets, Double.NaN);
+            if (buckets == 0 || to <= from) return 0;
+
+            double span = (double) (to - from);
+            int start = lowerBound(from);
+            double carry = start > 0 ? v[at(start - 1)] : Double.NaN;
+            int next = 0;  // first bucket not yet finalized
+            int visited = 0;
+            for (int i = start; i < size; i++) {
+                int idx = at(i);
+                if (ts[idx] >= to) break;
+                int b = (int) Math.min(buckets - 1, (long) ((ts[idx] - from) / span * buckets));
+                for (; next < b; next++) {
+                    if (Double.isNaN(minOut[next])) { minOut[next] = carry; maxOut[next] = carry; }
+                }
+                double x = v[idx];
+                if (Double.isNaN(minOut[b])) {
+                    minOut[b] = x;
+                    maxOut[b] = x;
+                } else {
+                    if (x < minOut[b]) minOut[b] = x;
+                    if (x > maxOut[b]) maxOut[b] = x;
+                }
+                carry = x;
+                visited++;
+            }
+            for (; next < buckets; next++) {
+                if (Double.isNaN(minOut[next])) { minOut[next] = carry; maxOut[next] = carry; }
+            }
+            return visited;
+        }
+
+        /** Physical slot of the i-th oldest sample. */
+        private int at(int i) {
+            int cap = ts.length;
+            int idx = head - size + i;
+            return idx < 0 ? idx + cap : idx % cap;
+        }
+
+        /** First logical index with ts >= t (binary search; samples are sorted). */
+        private int lowerBound(long t) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ts[at(mid)] < t) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package gauges.system.pipeline;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import gauges.system.Metrics;
+
+/**
+ * DatagramSource
+ *
+ * Push transport for a backend on the same machine: the backend sends a frame on every sensor
+ * update instead of the UI polling over HTTP.
+ * - UDP  : one snapshot/delta per datagram on 127.0.0.1:port
+ * - UNIX : stream socket at a filesystem path; frames are a 4-byte big-endian length + body
+ *
+ * Frames are received into one reused direct ByteBuffer and copied into one reused array for the
+ * sink, so steady-state ingest allocates nothing here. The codec is sniffed per frame (JSON object
+ * or CBOR map). Deltas need no special handling since IndexStore applies snapshots additively.
+ */
+public final class DatagramSource implements SnapshotSource {
+
+    public enum Kind { UDP, UNIX }
+
+    /** Largest accepted frame (the UDP payload limit). */
+    public static final int MAX_FRAME = 65_507;
+
+    private static final PipelineDebugLog PIPELINE_LOG = PipelineDebugLog.shared();
+
+    private static final Metrics.Counter   INGEST_FRAMES = Metrics.counter("ingest.frames");
+    private static final Metrics.Counter   INGEST_ERRORS = Metrics.counter("ingest.errors");
+    private static final Metrics.Histogram INGEST_BYTES  = Metrics.histogram("ingest.frame.bytes");
+
+    private final Kind kind;
+    private final int port;
+    private final Path socketPath;
+    private final SnapshotSink sink;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_FRAME);
+    private final byte[] frame = new byte[MAX_FRAME];
+
+    private volatile boolean running;
+    private volatile Thread worker;
+    private volatile Channel channel;
+
+    private DatagramSource(Kind kind, int port, Path socketPath, SnapshotSink sink) {
+        this.kind = kind;
+        this.port = port;
+        this.socketPath = socketPath;
+        this.sink = Objects.requireNonNull(sink, "sink");
+    }
+
+    /** Receive datagrams on the loopback interface. */
+    public static DatagramSource udp(int port, SnapshotSink sink) {
+        return new DatagramSource(Kind.UDP, port, null, sink);
+    }
+
+    /** Listen on a Unix domain socket (any stale socket file is replaced). */
+    public static DatagramSource unix(Path socketPath, SnapshotSink sink) {
+        return new DatagramSource(Kind.UNIX, 0, Objects.requireNonNull(socketPath, "socketPath"), sink);
+    }
+
+    public String describe() {
+        return kind == Kind.UDP ? "udp://127.0.0.1:" + port : "unix:" + socketPath;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        Thread t = new Thread(kind == Kind.UDP ? this::runUdp : this::runUnix, "DatagramSource-" + kind);
+        t.setDaemon(true);
+        t.setPriority(Thread.NORM_PRIORITY + 1);
+        worker = t;
+        t.start();
+        PIPELINE_LOG.info("[DatagramSource] start " + describe());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        PIPELINE_LOG.info("[DatagramSource] stop " + describe());
+        closeQuietly(channel);
+        Thread t = worker;
+        worker = null;
+        if (t != null) {
+            t.interrupt();
+            try {
+                t.join(1000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (socketPath != null) {
+            try { Files.deleteIfExists(socketPath); } catch (IOException ignore) { }
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // UDP
+    // ------------------------------------------------------------------------------------------------
+
+    private void runUdp() {
+        try (DatagramChannel ch = DatagramChannel.open(StandardProtocolFamily.INET)) {
+            channel = ch;
+            ch.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            while (running) {
+                buffer.clear();
+                ch.receive(buffer);
+                buffer.flip();
+                deliver(buffer.remaining());
+            }
+        } catch (ClosedChannelException closed) {
+            // stop()
+        } catch (IOException e) {
+            INGEST_ERRORS.inc();
+            System.err.println("[Ingest] UDP receiver on port " + port + " failed: " + e);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Unix domain socket
+    // ------------------------------------------------------------------------------------------------
+
+    private void runUnix() {
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            Files.deleteIfExists(socketPath);
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            channel = server;
+            while (running) {
+                // One publisher at a time; it reconnects if the UI restarts
+                try (SocketChannel client = server.accept()) {
+                    PIPELINE_LOG.info("[DatagramSource] publisher connected on " + socketPath);
+                    readFrames(client);
+                } catch (ClosedChannelException closed) {
+                    if (!running) break;
+                } catch (IOException e) {
+                    INGEST_ERRORS.inc();
+                    PIPELINE_LOG.warn("[DatagramSource] publisher disconnected: " + e);
+                }
+            }
+        } catch (ClosedChannelException closed) {
+            // stop()
+        } catch (IOException e) {
+            INGEST_ERRORS.inc();
+            System.err.println("[Ingest] Unix socket " + socketPath + " failed: " + e);
+        }
+    }
+
+    private void readFrames(SocketChannel client) throws IOException {
+        while (running) {
+            buffer.clear().limit(4);
+            if (!fill(client)) return; // clean close between frames
+            int len = buffer.getInt(0);
+            if (len <= 0 || len > MAX_FRAME) {
+                throw new IOException("bad frame length " + len);
+            }
+            buffer.clear().limit(len);
+            if (!fill(client)) throw new EOFException("truncated frame");
+            buffer.flip();
+            deliver(len);
+        }
+    }
+
+    /** Read until the buffer's limit; false on EOF before the first byte. */
+    private boolean fill(SocketChannel client) throws IOException {
+        boolean any = false;
+        while (buffer.hasRemaining()) {
+            if (client.read(buffer) < 0) {
+                if (any) throw new EOFException("connection closed mid-frame");
+                return false;
+            }
+            any = true;
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Delivery
+    // ------------------------------------------------------------------------------------------------
+
+    private void deliver(int len) {
+        if (len <= 0) return;
+        LatencyTracer.markReceived();
+        INGEST_FRAMES.inc();
+        INGEST_BYTES.record(len);
+        buffer.get(0, frame, 0, len);
+        try {
+            sink.accept(frame, 0, len, SnapshotCodec.sniff(frame, 0, len));
+        } catch (Throwable t) {
+            INGEST_ERRORS.inc();
+            PIPELINE_LOG.error("[DatagramSource] sink failed", t);
+        }
+    }
+
+    private static void closeQuietly(Channel ch) {
+        if (ch == null) return;
+        try { ch.close(); } catch (IOException ignore) { }
+    }
+}
@@ -0,0 +1,761 @@
+package gauges.system.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import gauges.system.Metrics;
+
+/**
+ * DerivedChannels
+ *
+ * Computed channels (boost = map - baro, afr = lambda * 14.7, rolling averages, min/max since
+ * reset, rates of change) evaluated inside every IndexStore apply and published as ordinary keys,
+ * so gauges bind to them like to any backend channel.
+ * - definitions : name → expression, from the "channels" object of configs/derived.json plus the
+ *                 optional "derived" object of the active mode file (the mode wins on clashes)
+ * - compile     : each expression is parsed once into a node tree; outputs that reference other
+ *                 outputs are ordered into a DAG (bad expressions and cycles are logged and left
+ *                 out, the rest still load)
+ * - incremental : every referenced key maps to the outputs depending on it, directly or through
+ *                 other outputs; an apply re-evaluates only those, in dependency order
+ *
+ * Expression syntax: numbers (suffix ms / s / min gives seconds), channel keys (dotted names, or
+ * `back-quoted` for anything else), + - * / % ^, parentheses and the functions
+ *   abs(x)  sqrt(x)  min(a, b, ...)  max(a, b, ...)  clamp(x, lo, hi)
+ *   avg(x, window)  mean over a time window        rate(x)  change per second
+ *   min(x)  max(x)  lowest / highest since reset()
+ * A missing input reads as NaN; the stateful functions skip NaN samples. avg / rate / min / max
+ * take a sample only in an apply that carried one of the keys their own argument reads, stamped
+ * with that key's ts, so an unrelated input of the same output does not add copies to a window or
+ * a zero-time step to a rate. An output's ts is the newest ts among the inputs that arrived.
+ */
+public final class DerivedChannels implements IndexStore.Deriver {
+
+    private static volatile DerivedChannels GLOBAL;
+
+    private static final Metrics.Histogram EVAL_NANOS = Metrics.histogram("derived.eval.nanos");
+    private static final Metrics.Counter   EVALUATED  = Metrics.counter("derived.evaluations");
+    private static final Metrics.Gauge     CHANNELS   = Metrics.gauge("derived.channels");
+
+    private final IndexStore store;
+    private Map<String, String> configDefs = Map.of();
+    private Map<String, String> modeDefs = Map.of();
+
+    // Compiled state (guarded by this)
+    private Program program = Program.EMPTY;
+    private Frame frame = new Frame(0);
+    private boolean[] dirty = new boolean[0];
+    private final Map<String, IndexStore.DataPoint> out = new LinkedHashMap<>();
+
+    public DerivedChannels(IndexStore store) {
+        this.store = Objects.requireNonNull(store, "store");
+    }
+
+    /** Create the global engine from a parsed derived.json tree and hook it into the store. */
+    public static DerivedChannels install(IndexStore store, Map<String, Object> config) {
+        DerivedChannels d = new DerivedChannels(store);
+        Object channels = config == null ? null : config.get("channels");
+        d.setConfigChannels(channels instanceof Map<?, ?> m ? m : Map.of());
+        store.addDeriver(d);
+        GLOBAL = d;
+        return d;
+    }
+
+    /** The installed engine, or null before boot wired it. */
+    public static DerivedChannels global() {
+        return GLOBAL;
+    }
+
+    /** Replace the channels from the global config file and recompile. */
+    public synchronized void setConfigChannels(Map<?, ?> channels) {
+        Map<String, String> defs = definitions(channels, "config");
+        if (defs.equals(configDefs)) return;
+        configDefs = defs;
+        recompile();
+    }
+
+    /** Replace the channels declared by the active mode ("derived" object) and recompile. */
+    public synchronized void setModeChannels(Map<?, ?> channels) {
+        Map<String, String> defs = definitions(channels, "mode");
+        if (defs.equals(modeDefs)) return; // same set: keep running averages and peaks
+        modeDefs = defs;
+        recompile();
+    }
+
+    /** Names of the compiled outputs, in evaluation order. */
+    public synchronized List<String> outputs() {
+        return List.of(program.outputs);
+    }
+
+    /** Restart min(x) / max(x) tracking of every output. */
+    public synchronized void reset() {
+        for (Node n : program.stateful) n.reset();
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Evaluation (called by IndexStore inside applySnapshot)
+    // ------------------------------------------------------------------------------------------------
+
+    @Override
+    public synchronized Map<String, IndexStore.DataPoint> derive(Map<String, IndexStore.DataPoint> applied) {
+        Program p = program;
+        if (p.outputs.length == 0) return null;
+        long t0 = System.nanoTime();
+
+        Frame f = frame;
+        f.epoch++;
+        boolean any = false;
+        if (p.slots.size() < applied.size()) {
+            for (Map.Entry<String, Integer> e : p.slots.entrySet()) {
+                IndexStore.DataPoint dp = applied.get(e.getKey());
+                if (dp == null) continue;
+                any |= take(p, f, e.getKey(), e.getValue(), dp);
+            }
+        } else {
+            for (Map.Entry<String, IndexStore.DataPoint> e : applied.entrySet()) {
+                Integer slot = p.slots.get(e.getKey());
+                IndexStore.DataPoint dp = e.getValue();
+                if (slot == null || dp == null) continue;
+                any |= take(p, f, e.getKey(), slot, dp);
+            }
+        }
+        if (!any) return null;
+
+        out.clear();
+        for (int i = 0; i < p.outputs.length; i++) {
+            if (!dirty[i]) continue;
+            dirty[i] = false;
+            long ts = f.changedTs(p.inputs[i]);   // dirty, so at least one input arrived
+            double x = p.exprs[i].eval(f);
+            f.set(p.outputSlot[i], x, ts);
+            out.put(p.outputs[i], new IndexStore.DataPoint(x, ts));
+        }
+        EVALUATED.add(out.size());
+        EVAL_NANOS.recordSince(t0);
+        return out;
+    }
+
+    /** Store an incoming value and mark its dependents; true if any output became dirty. */
+    private boolean take(Program p, Frame f, String key, int slot, IndexStore.DataPoint dp) {
+        f.set(slot, dp.v, dp.ts);
+        int[] deps = p.dependents.get(key);
+        if (deps == null) return false;
+        for (int d : deps) dirty[d] = true;
+        return deps.length > 0;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Compilation
+    // ------------------------------------------------------------------------------------------------
+
+    private static Map<String, String> definitions(Map<?, ?> raw, String origin) {
+        Map<String, String> defs = new LinkedHashMap<>();
+        if (raw == null) return defs;
+        for (Map.Entry<?, ?> e : raw.entrySet()) {
+            String name = String.valueOf(e.getKey()).trim();
+            if (name.isEmpty()) continue;
+            if (e.getValue() instanceof String expr && !expr.isBlank()) {
+                defs.put(name, expr);
+            } else {
+                System.out.println("[Derived] " + origin + " channel '" + name + "' skipped: expression must be a string");
+            }
+        }
+        return defs;
+    }
+
+    private void recompile() {
+        Map<String, String> defs = new LinkedHashMap<>(configDefs);
+        defs.putAll(modeDefs);
+
+        // Parse every expression on its own; one bad line does not take the others down
+        Map<String, Node> parsed = new LinkedHashMap<>();
+        Map<String, Set<String>> refs = new HashMap<>();
+        for (Map.Entry<String, String> e : defs.entrySet()) {
+            try {
+                Parser parser = new Parser(e.getValue());
+                parsed.put(e.getKey(), parser.parse());
+                refs.put(e.getKey(), parser.refs);
+            } catch (IllegalArgumentException ex) {
+                System.out.println("[Derived] channel '" + e.getKey() + "' skipped: " + ex.getMessage());
+            }
+        }
+
+        // Topological order over output → output references (Kahn); leftovers sit on a cycle
+        Map<String, List<String>> users = new HashMap<>();
+        Map<String, Integer> pending = new HashMap<>();
+        for (String name : parsed.keySet()) {
+            int n = 0;
+            for (String r : refs.get(name)) {
+                if (!parsed.containsKey(r) || r.equals(name)) continue;
+                users.computeIfAbsent(r, k -> new ArrayList<>()).add(name);
+                n++;
+            }
+            if (refs.get(name).contains(name)) n = Integer.MAX_VALUE; // refers to itself
+            pending.put(name, n);
+        }
+        List<String> order = new ArrayList<>();
+        ArrayDeque<String> ready = new ArrayDeque<>();
+        for (String name : parsed.keySet()) if (pending.get(name) == 0) ready.add(name);
+        while (!ready.isEmpty()) {
+            String name = ready.poll();
+            order.add(name);
+            for (String u : users.getOrDefault(name, List.of())) {
+                int left = pending.get(u);
+                if (left != Integer.MAX_VALUE && (pending.merge(u, -1, Integer::sum)) == 0) ready.add(u);
+            }
+        }
+        for (String name : parsed.keySet()) {
+            if (!order.contains(name)) {
+                System.out.println("[Derived] channel '" + name + "' skipped: circular reference");
+            }
+        }
+
+        // Slots for every key read or written, seeded from the store
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        for (String name : order) {
+            for (String r : refs.get(name)) slots.putIfAbsent(r, slots.size());
+            slots.putIfAbsent(name, slots.size());
+        }
+        Frame f = new Frame(slots.size());
+        for (Map.Entry<String, Integer> e : slots.entrySet()) f.values[e.getValue()] = store.getDouble(e.getKey());
+
+        Node[] exprs = new Node[order.size()];
+        int[][] inputs = new int[order.size()][];
+        int[] outputSlot = new int[order.size()];
+        Map<String, Integer> position = new HashMap<>();
+        List<Node> stateful = new ArrayList<>();
+        for (int i = 0; i < order.size(); i++) {
+            String name = order.get(i);
+            exprs[i] = parsed.get(name).bind(slots);
+            exprs[i].collectStateful(stateful);
+            inputs[i] = slotsOf(exprs[i]);
+            outputSlot[i] = slots.get(name);
+            position.put(name, i);
+        }
+
+        // key → outputs depending on it (transitively), ascending = evaluation order
+        Map<String, int[]> dependents = new HashMap<>();
+        for (String key : slots.keySet()) {
+            Set<Integer> hit = new LinkedHashSet<>();
+            ArrayDeque<String> walk = new ArrayDeque<>();
+            walk.add(key);
+            while (!walk.isEmpty()) {
+                String k = walk.poll();
+                for (String name : order) {
+                    if (refs.get(name).contains(k) && hit.add(position.get(name))) walk.add(name);
+                }
+            }
+            if (hit.isEmpty()) continue;
+            int[] idx = hit.stream().mapToInt(Integer::intValue).sorted().toArray();
+            dependents.put(key, idx);
+        }
+
+        program = new Program(order.toArray(new String[0]), exprs, inputs, outputSlot, Map.copyOf(slots),
+                Map.copyOf(dependents), stateful.toArray(new Node[0]));
+        frame = f;
+        dirty = new boolean[order.size()];
+        CHANNELS.set(order.size());
+        System.out.println("[Derived] " + order.size() + " channel(s) compiled"
+                + (order.isEmpty() ? "" : ": " + String.join(", ", order)));
+    }
+
+    /** One compiled definition set; swapped as a whole on recompile. */
+    private record Program(String[] outputs,
+                           Node[] exprs,
+                           int[][] inputs,
+                           int[] outputSlot,
+                           Map<String, Integer> slots,
+                           Map<String, int[]> dependents,
+                           Node[] stateful) {
+        static final Program EMPTY = new Program(new String[0], new Node[0], new int[0][], new int[0], Map.of(), Map.of(), new Node[0]);
+    }
+
+    /** Slot values plus, per slot, the apply it last arrived in and that sample's ts. */
+    private static final class Frame {
+        final double[] values;
+        final long[] ts;
+        final int[] stamp;
+        int epoch;          // current apply
+
+        Frame(int slots) {
+            values = new double[slots];
+            ts = new long[slots];
+            stamp = new int[slots];
+        }
+
+        void set(int slot, double v, long sampleTs) {
+            values[slot] = v;
+            ts[slot] = sampleTs;
+            stamp[slot] = epoch;
+        }
+
+        /** Newest ts among the slots that arrived in this apply, or Long.MIN_VALUE if none did. */
+        long changedTs(int[] slots) {
+            long newest = Long.MIN_VALUE;
+            for (int s : slots) if (stamp[s] == epoch && ts[s] > newest) newest = ts[s];
+            return newest;
+        }
+    }
+
+    private static int[] slotsOf(Node n) {
+        Set<Integer> into = new LinkedHashSet<>();
+        n.collectSlots(into);
+        return into.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Expression nodes
+    // ------------------------------------------------------------------------------------------------
+
+    /** Expression tree node; parsed with key names, then bound to slots before evaluation. */
+    private abstract static class Node {
+        abstract double eval(Frame f);
+
+        /** Resolve key names to slot indices (returns this for nodes without references). */
+        Node bind(Map<String, Integer> slots) {
+            return this;
+        }
+
+        void collectStateful(List<Node> into) { }
+
+        /** Slots this subtree reads (after bind). */
+        void collectSlots(Set<Integer> into) { }
+
+        void reset() { }
+    }
+
+    private static final class Const extends Node {
+        final double value;
+
+        Const(double value) {
+            this.value = value;
+        }
+
+        @Override double eval(Frame f) {
+            return value;
+        }
+    }
+
+    private static final class Ref extends Node {
+        final String key;
+        int slot = -1;
+
+        Ref(String key) {
+            this.key = key;
+        }
+
+        @Override double eval(Frame f) {
+            return f.values[slot];
+        }
+
+        @Override Node bind(Map<String, Integer> slots) {
+            slot = slots.get(key);
+            return this;
+        }
+
+        @Override void collectSlots(Set<Integer> into) {
+            into.add(slot);
+        }
+    }
+
+    private static final class Op extends Node {
+        final char op;
+        final Node a;
+        final Node b;
+
+        Op(char op, Node a, Node b) {
+            this.op = op;
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override double eval(Frame f) {
+            double x = a.eval(f);
+            if (op == 'n') return -x;
+            double y = b.eval(f);
+            return switch (op) {
+                case '+' -> x + y;
+                case '-' -> x - y;
+                case '*' -> x * y;
+                case '/' -> x / y;
+                case '%' -> x % y;
+                default  -> Math.pow(x, y);
+            };
+        }
+
+        @Override Node bind(Map<String, Integer> slots) {
+            a.bind(slots);
+            if (b != null) b.bind(slots);
+            return this;
+        }
+
+        @Override void collectStateful(List<Node> into) {
+            a.collectStateful(into);
+            if (b != null) b.collectStateful(into);
+        }
+
+        @Override void collectSlots(Set<Integer> into) {
+            a.collectSlots(into);
+            if (b != null) b.collectSlots(into);
+        }
+    }
+
+    /** Pure function of its arguments. */
+    private static final class Call extends Node {
+        final String fn;
+        final Node[] args;
+
+        Call(String fn, Node[] args) {
+            this.fn = fn;
+            this.args = args;
+        }
+
+        @Override double eval(Frame f) {
+            double x = args[0].eval(f);
+            switch (fn) {
+                case "abs":  return Math.abs(x);
+                case "sqrt": return Math.sqrt(x);
+                case "clamp": return Math.max(args[1].eval(f), Math.min(args[2].eval(f), x));
+                case "min":
+                    for (int i = 1; i < args.length; i++) x = Math.min(x, args[i].eval(f));
+                    return x;
+                default: // max
+                    for (int i = 1; i < args.length; i++) x = Math.max(x, args[i].eval(f));
+                    return x;
+            }
+        }
+
+        @Override Node bind(Map<String, Integer> slots) {
+            for (Node n : args) n.bind(slots);
+            return this;
+        }
+
+        @Override void collectStateful(List<Node> into) {
+            for (Node n : args) n.collectStateful(into);
+        }
+
+        @Override void collectSlots(Set<Integer> into) {
+            for (Node n : args) n.collectSlots(into);
+        }
+    }
+
+    /** min(x) / max(x) with one argument: extreme since the last reset(). */
+    private static final class Extreme extends Node {
+        final boolean max;
+        final Node arg;
+        int[] inputs;
+        double held = Double.NaN;
+
+        Extreme(boolean max, Node arg) {
+            this.max = max;
+            this.arg = arg;
+        }
+
+        @Override double eval(Frame f) {
+            if (f.changedTs(inputs) == Long.MIN_VALUE) return held;
+            double x = arg.eval(f);
+            if (!Double.isNaN(x) && (Double.isNaN(held) || (max ? x > held : x < held))) held = x;
+            return held;
+        }
+
+        @Override Node bind(Map<String, Integer> slots) {
+            arg.bind(slots);
+            inputs = slotsOf(arg);
+            return this;
+        }
+
+        @Override void collectSlots(Set<Integer> into) {
+            arg.collectSlots(into);
+        }
+
+        @Override void collectStateful(List<Node> into) {
+            arg.collectStateful(into);
+            into.add(this);
+        }
+
+        @Override void reset() {
+            held = Double.NaN;
+        }
+    }
+
+    /** avg(x, window): mean of the samples of the last window seconds (x's sample times). */
+    private static final class Average extends Node {
+        final Node arg;
+        final long windowMillis;
+        int[] inputs;
+        long[] ts = new long[64];
+        double[] v = new double[64];
+        int head;
+        int size;
+        double sum;
+
+        Average(Node arg, double windowSeconds) {
+            this.arg = arg;
+            this.windowMillis = Math.max(1L, (long) (windowSeconds * 1000.0));
+        }
+
+        @Override double eval(Frame f) {
+            long now = f.changedTs(inputs);
+            if (now == Long.MIN_VALUE) return size == 0 ? Double.NaN : sum / size;
+            double x = arg.eval(f);
+            if (!Double.isNaN(x)) {
+                if (size == ts.length) grow();
+                int slot = (head + size) % ts.length;
+                ts[slot] = now;
+                v[slot] = x;
+                size++;
+                sum += x;
+            }
+            while (size > 0 && now - ts[head] >= windowMillis && size > 1) {
+                sum -= v[head];
+                head = (head + 1) % ts.length;
+                size--;
+            }
+            if (size == 1) sum = v[head]; // drop accumulated rounding whenever the window drains
+            return size == 0 ? Double.NaN : sum / size;
+        }
+
+        private void grow() {
+            long[] nts = new long[ts.length * 2];
+            double[] nv = new double[v.length * 2];
+            for (int i = 0; i < size; i++) {
+                nts[i] = ts[(head + i) % ts.length];
+                nv[i] = v[(head + i) % v.length];
+            }
+            ts = nts;
+            v = nv;
+            head = 0;
+        }
+
+        @Override Node bind(Map<String, Integer> slots) {
+            arg.bind(slots);
+            inputs = slotsOf(arg);
+            return this;
+        }
+
+        @Override void collectSlots(Set<Integer> into) {
+            arg.collectSlots(into);
+        }
+
+        @Override void collectStateful(List<Node> into) {
+            arg.collectStateful(into);
+        }
+    }
+
+    /** rate(x): change per second between the last two samples with distinct timestamps. */
+    private static final class Rate extends Node {
+        final Node arg;
+        int[] inputs;
+        long prevTs = Long.MIN_VALUE;
+        double prev = Double.NaN;
+        double rate = Double.NaN;
+
+        Rate(Node arg) {
+            this.arg = arg;
+        }
+
+        @Override double eval(Frame f) {
+            long ts = f.changedTs(inputs);
+            if (ts == Long.MIN_VALUE) return rate;
+            double x = arg.eval(f);
+            if (Double.isNaN(x)) return rate;
+            if (prevTs != Long.MIN_VALUE && ts > prevTs) {
+                rate = (x - prev) * 1000.0 / (ts - prevTs);
+            }
+            if (ts != prevTs || Double.isNaN(prev)) {
+                prevTs = ts;
+                prev = x;
+            }
+            return rate;
+        }
+
+        @Override Node bind(Map<String, Integer> slots) {
+            arg.bind(slots);
+            inputs = slotsOf(arg);
+            return this;
+        }
+
+        @Override void collectSlots(Set<Integer> into) {
+            arg.collectSlots(into);
+        }
+
+        @Override void collectStateful(List<Node> into) {
+            arg.collectStateful(into);
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Parser (recursive descent)
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * expr := term (('+' | '-') term)*      term := unary (('*' | '/' | '%') unary)*
+     * unary := '-' unary | power            power := primary ('^' unary)?
+     * primary := number unit? | key | fn '(' expr (',' expr)* ')' | '(' expr ')'
+     */
+    private static final class Parser {
+        final String src;
+        final Set<String> refs = new LinkedHashSet<>();
+        int pos;
+
+        Parser(String src) {
+            this.src = src;
+        }
+
+        Node parse() {
+            Node n = expr();
+            skipSpace();
+            if (pos < src.length()) throw error("unexpected '" + src.charAt(pos) + "'");
+            return n;
+        }
+
+        private Node expr() {
+            Node n = term();
+            while (true) {
+                if (eat('+')) n = new Op('+', n, term());
+                else if (eat('-')) n = new Op('-', n, term());
+                else return n;
+            }
+        }
+
+        private Node term() {
+            Node n = unary();
+            while (true) {
+                if (eat('*')) n = new Op('*', n, unary());
+                else if (eat('/')) n = new Op('/', n, unary());
+                else if (eat('%')) n = new Op('%', n, unary());
+                else return n;
+            }
+        }
+
+        private Node unary() {
+            if (eat('-')) return new Op('n', unary(), null);
+            Node base = primary();
+            return eat('^') ? new Op('^', base, unary()) : base;
+        }
+
+        private Node primary() {
+            skipSpace();
+            if (pos >= src.length()) throw error("unexpected end");
+            char c = src.charAt(pos);
+            if (eat('(')) {
+                Node n = expr();
+                expect(')');
+                return n;
+            }
+            if (Character.isDigit(c) || c == '.') return number();
+            if (c == '`') {
+                int end = src.indexOf('`', pos + 1);
+                if (end < 0) throw error("unterminated `key`");
+                String key = KeyAliases.resolve(src.substring(pos + 1, end));
+                pos = end + 1;
+                refs.add(key);
+                return new Ref(key);
+            }
+            if (Character.isLetter(c) || c == '_') {
+                String name = identifier();
+                if (eat('(')) return call(name.toLowerCase(Locale.ROOT));
+                name = KeyAliases.resolve(name);
+                refs.add(name);
+                return new Ref(name);
+            }
+            throw error("unexpected '" + c + "'");
+        }
+
+        private Node call(String fn) {
+            List<Node> args = new ArrayList<>();
+            if (!eat(')')) {
+                do args.add(expr()); while (eat(','));
+                expect(')');
+            }
+            int n = args.size();
+            switch (fn) {
+                case "abs", "sqrt" -> arity(fn, n, 1, 1);
+                case "clamp" -> arity(fn, n, 3, 3);
+                case "min", "max" -> {
+                    arity(fn, n, 1, Integer.MAX_VALUE);
+                    if (n == 1) return new Extreme("max".equals(fn), args.get(0));
+                }
+                case "avg" -> {
+                    arity(fn, n, 2, 2);
+                    if (!(args.get(1) instanceof Const window) || !(window.value > 0)) {
+                        throw error("avg window must be a positive constant (e.g. 2s)");
+                    }
+                    return new Average(args.get(0), window.value);
+                }
+                case "rate" -> {
+                    arity(fn, n, 1, 1);
+                    return new Rate(args.get(0));
+                }
+                default -> throw error("unknown function " + fn + "()");
+            }
+            return new Call(fn, args.toArray(new Node[0]));
+        }
+
+        private Node number() {
+            int start = pos;
+            while (pos < src.length() && (Character.isDigit(src.charAt(pos)) || src.charAt(pos) == '.')) pos++;
+            if (pos < src.length() && (src.charAt(pos) == 'e' || src.charAt(pos) == 'E')
+                    && pos + 1 < src.length() && (Character.isDigit(src.charAt(pos + 1)) || src.charAt(pos + 1) == '-')) {
+                pos += 2;
+                while (pos < src.length() && Character.isDigit(src.charAt(pos))) pos++;
+            }
+            double value;
+            try {
+                value = Double.parseDouble(src.substring(start, pos));
+            } catch (NumberFormatException e) {
+                throw error("bad number '" + src.substring(start, pos) + "'");
+            }
+            // Duration suffix (seconds are the unit)
+            if (src.startsWith("ms", pos) && !identAt(pos + 2)) { pos += 2; value /= 1000.0; }
+            else if (src.startsWith("min", pos) && !identAt(pos + 3)) { pos += 3; value *= 60.0; }
+            else if (src.startsWith("s", pos) && !identAt(pos + 1)) { pos += 1; }
+            return new Const(value);
+        }
+
+        private String identifier() {
+            int start = pos;
+            while (identAt(pos)) pos++;
+            return src.substring(start, pos);
+        }
+
+        private boolean identAt(int i) {
+            if (i >= src.length()) return false;
+            char c = src.charAt(i);
+            return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+        }
+
+        private void arity(String fn, int n, int min, int max) {
+            if (n < min || n > max) throw error(fn + "() takes " + (min == max ? String.valueOf(min) : min + "+") + " argument(s)");
+        }
+
+        private boolean eat(char c) {
+            skipSpace();
+            if (pos < src.length() && src.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!eat(c)) throw error("expected '" + c + "'");
+        }
+
+        private void skipSpace() {
+            while (pos < src.length() && Character.isWhitespace(src.charAt(pos))) pos++;
+        }
+
+        private IllegalArgumentException error(String what) {
+            return new IllegalArgumentException(what + " at " + pos + " in \"" + src + "\"");
+        }
+    }
+}
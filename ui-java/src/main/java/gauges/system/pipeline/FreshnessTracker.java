@@ -0,0 +1,388 @@
+package gauges.system.pipeline;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import gauges.system.Metrics;
+
+/**
+ * FreshnessTracker
+ *
+ * Per-channel freshness, so a backend that stops updating a key shows up as stale instead of a
+ * frozen but plausible number.
+ * - refresh   : with a source sample time (DataPoint.sampled, e.g. {v, ts} from ?ts=1) a sample
+ *               counts when its ts moved; without one the ts is only the receive time, so a
+ *               sample counts when its value changed, and such a key is not watched until it has
+ *               changed once (a constant is never flagged, and neither is a frozen one: the
+ *               backend has to supply ts for that)
+ * - interval  : expected update interval per key, learned as an EWMA of refresh gaps (outages are
+ *               not learned) or fixed by freshness.expect.<key>
+ * - states    : FRESH → STALE after staleFactor × interval (at least minStaleMs) → DEAD after deadMs;
+ *               any refresh returns to FRESH
+ * - timer     : a hashed timer wheel (50 ms ticks) holds one entry per live channel; a sample only
+ *               stores its time, and the entry re-files itself when its slot comes round early, so
+ *               there is no per-sample scheduling and no per-frame scan
+ * - delivery  : transitions only, batched per tick / apply, on each listener's executor
+ * - source    : any applied source data (not the "diag" channels), or sourceAlive() from a transport whose backend answered "unchanged"
+ *               (HTTP 304), shows the source is up; when neither happened for deadMs the reconnect
+ *               hook (the active transport's reconnect()) runs, and again every deadMs after
+ */
+public final class FreshnessTracker implements IndexStore.Tap {
+
+    /** Channel freshness; UNKNOWN for keys never seen. */
+    public enum State { UNKNOWN, FRESH, STALE, DEAD }
+
+    /** One transition of a channel. */
+    public record Change(String key, State state) { }
+
+    /** Receives transitions on the executor given to addListener. */
+    @FunctionalInterface
+    public interface Listener {
+        void onFreshness(List<Change> changes);
+    }
+
+    private static final Metrics.Histogram TICK_NANOS  = Metrics.histogram("freshness.tick.nanos");
+    private static final Metrics.Counter   TRANSITIONS = Metrics.counter("freshness.transitions");
+    private static final Metrics.Gauge     STALE       = Metrics.gauge("freshness.stale");
+    private static final Metrics.Gauge     DEAD        = Metrics.gauge("freshness.dead");
+    private static final Metrics.Counter   RECONNECTS  = Metrics.counter("freshness.reconnects");
+
+    private static final long TICK_NANOS_WHEEL = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int WHEEL_SLOTS = 128;                  // 6.4 s per revolution
+    private static final double EWMA_ALPHA = 0.2;
+
+    private static volatile FreshnessTracker GLOBAL;
+
+    private record Subscription(Listener listener, Executor executor) { }
+
+    private static final class Channel {
+        final String key;
+        final double fixedIntervalNanos;     // > 0 when configured
+        volatile long lastNanos;             // last refresh (ingest thread writes)
+        long lastTs = Long.MIN_VALUE;        // ingest thread only
+        double lastV;                        // ingest thread only, for keys without a sample time
+        String lastStatus;
+        volatile double intervalNanos;       // learned gap; ingest thread writes
+        volatile State state = State.FRESH;  // written under the tracker lock
+
+        // Wheel bookkeeping (tracker lock)
+        Channel next;
+        boolean queued;
+        int rounds;
+
+        Channel(String key, double fixedIntervalNanos) {
+            this.key = key;
+            this.fixedIntervalNanos = fixedIntervalNanos;
+        }
+    }
+
+    private final double staleFactor;
+    private final long minStaleNanos;
+    private final long deadNanos;
+    private final Map<String, Long> expectMillis;
+    private final ConcurrentHashMap<String, Channel> channels = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<Subscription> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService timer;
+    private volatile Runnable reconnect;
+
+    // Guarded by this
+    private final Channel[] wheel = new Channel[WHEEL_SLOTS];
+    private final Map<String, Channel> unhealthy = new LinkedHashMap<>();
+    private List<Change> pending = new ArrayList<>();
+    private long wheelNanos;                 // time of the next slot to process
+    private int cursor;
+    private int staleCount, deadCount;
+
+    // Source silence
+    private volatile long lastAnyNanos;
+    private long nextReconnectNanos;         // timer thread only
+
+    public FreshnessTracker(double staleFactor, long minStaleMillis, long deadMillis, Map<String, Long> expectMillis) {
+        this.staleFactor = Math.max(1.0, staleFactor);
+        this.minStaleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, minStaleMillis));
+        this.deadNanos = Math.max(this.minStaleNanos * 2, TimeUnit.MILLISECONDS.toNanos(deadMillis));
+        this.expectMillis = Map.copyOf(expectMillis);
+        long now = System.nanoTime();
+        this.wheelNanos = now;
+        this.lastAnyNanos = now;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "FreshnessTracker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Build the global tracker, tap it into the store and start the wheel. */
+    public static FreshnessTracker install(IndexStore store, double staleFactor, long minStaleMillis, long deadMillis,
+                                           Map<String, Long> expectMillis) {
+        FreshnessTracker f = new FreshnessTracker(staleFactor, minStaleMillis, deadMillis, expectMillis);
+        store.addTap(f);
+        f.start();
+        GLOBAL = f;
+        System.out.println("[Freshness] stale after " + staleFactor + "x interval (min " + minStaleMillis
+                + " ms), dead after " + TimeUnit.NANOSECONDS.toMillis(f.deadNanos) + " ms, "
+                + expectMillis.size() + " fixed interval(s)");
+        return f;
+    }
+
+    /** The installed tracker, or null before boot wired it. */
+    public static FreshnessTracker global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Called by transports when the backend answered but nothing changed (e.g. HTTP 304). Only the
+     * source counts as alive; the channels are not refreshed, since a frozen backend answers the same.
+     */
+    public static void sourceAlive() {
+        FreshnessTracker f = GLOBAL;
+        if (f != null) f.lastAnyNanos = System.nanoTime();
+    }
+
+    /** Run when the source has been silent for deadMs (e.g. the transport's reconnect()). */
+    public void setReconnect(Runnable hook) {
+        this.reconnect = hook;
+    }
+
+    public void start() {
+        timer.scheduleAtFixedRate(this::safeTick, TICK_NANOS_WHEEL, TICK_NANOS_WHEEL, TimeUnit.NANOSECONDS);
+    }
+
+    public void stop() {
+        timer.shutdownNow();
+    }
+
+    /** Current state of key (UNKNOWN if never seen). */
+    public State state(String key) {
+        Channel c = key == null ? null : channels.get(key);
+        return c == null ? State.UNKNOWN : c.state;
+    }
+
+    /** Learned (or configured) update interval of key in ms, NaN if unknown. */
+    public double intervalMillis(String key) {
+        Channel c = key == null ? null : channels.get(key);
+        if (c == null) return Double.NaN;
+        double n = c.fixedIntervalNanos > 0 ? c.fixedIntervalNanos : c.intervalNanos;
+        return n > 0 ? n / 1e6 : Double.NaN;
+    }
+
+    /**
+     * Subscribe to transitions, delivered through executor. Channels that are currently stale or
+     * dead are sent first, so a gauge mounted mid-outage starts greyed.
+     */
+    public void addListener(Listener listener, Executor executor) {
+        Subscription s = new Subscription(Objects.requireNonNull(listener, "listener"),
+                Objects.requireNonNull(executor, "executor"));
+        List<Change> current = new ArrayList<>();
+        synchronized (this) {
+            listeners.add(s);
+            for (Channel c : unhealthy.values()) current.add(new Change(c.key, c.state));
+        }
+        if (!current.isEmpty()) executor.execute(() -> listener.onFreshness(current));
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.removeIf(s -> s.listener == listener);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Refresh (ingest thread)
+    // ------------------------------------------------------------------------------------------------
+
+    @Override
+    public void onApply(Map<String, IndexStore.DataPoint> applied, long version) {
+        long now = System.nanoTime();
+        for (Map.Entry<String, IndexStore.DataPoint> e : applied.entrySet()) {
+            IndexStore.DataPoint dp = e.getValue();
+            if (dp == null || LatencyTracer.DIAG_TYPE.equals(dp.type)) continue;   // not from the source
+            lastAnyNanos = now;
+            Channel c = channels.get(e.getKey());
+            if (c == null) {
+                create(e.getKey(), dp, now);
+                continue;
+            }
+            if (!isNews(c, dp)) continue;
+            refresh(c, now);
+        }
+        dispatch();
+    }
+
+    /** Same sample again (source ts) or same value again (receive-time ts): not a refresh. */
+    private static boolean isNews(Channel c, IndexStore.DataPoint dp) {
+        boolean news = dp.sampled ? dp.ts != c.lastTs
+                : Double.compare(dp.v, c.lastV) != 0 || !Objects.equals(dp.status, c.lastStatus);
+        c.lastTs = dp.ts;
+        c.lastV = dp.v;
+        c.lastStatus = dp.status;
+        return news;
+    }
+
+    /** Keys with a sample time are watched at once; the others once their value first changes. */
+    private void create(String key, IndexStore.DataPoint dp, long now) {
+        Long fixed = expectMillis.get(key);
+        Channel c = new Channel(key, fixed == null ? 0 : TimeUnit.MILLISECONDS.toNanos(fixed));
+        c.lastNanos = now;
+        c.lastTs = dp.ts;
+        c.lastV = dp.v;
+        c.lastStatus = dp.status;
+        channels.put(key, c);
+        if (dp.sampled) {
+            synchronized (this) {
+                file(c, now + staleDelay(c));
+            }
+        }
+    }
+
+    private void refresh(Channel c, long now) {
+        long gap = now - c.lastNanos;
+        // Learn only from gaps of a watched, healthy channel (not the wait for a key's first change)
+        if (c.state == State.FRESH && c.queued && gap > 0 && c.fixedIntervalNanos <= 0) {
+            double iv = c.intervalNanos;
+            c.intervalNanos = iv <= 0 ? gap : iv + EWMA_ALPHA * (gap - iv);
+        }
+        c.lastNanos = now;
+        // Healthy channels already sit in the wheel: nothing else to do per sample
+        if (c.state != State.FRESH || !c.queued) {
+            synchronized (this) {
+                if (c.state != State.FRESH) transition(c, State.FRESH);
+                if (!c.queued) file(c, now + staleDelay(c));
+            }
+        }
+    }
+
+    private long staleDelay(Channel c) {
+        double iv = c.fixedIntervalNanos > 0 ? c.fixedIntervalNanos : c.intervalNanos;
+        long d = iv > 0 ? (long) (iv * staleFactor) : minStaleNanos;
+        return Math.min(Math.max(d, minStaleNanos), deadNanos / 2);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Timer wheel (timer thread)
+    // ------------------------------------------------------------------------------------------------
+
+    private void safeTick() {
+        try {
+            tick(System.nanoTime());
+        } catch (Throwable t) {
+            System.out.println("[Freshness] tick failed: " + t);
+        }
+    }
+
+    void tick(long now) {
+        long t0 = System.nanoTime();
+        synchronized (this) {
+            // Catch up on every slot whose time has come (the timer thread may have been late)
+            while (wheelNanos <= now) {
+                int slot = cursor;
+                Channel c = wheel[slot];
+                wheel[slot] = null;
+                cursor = (cursor + 1) % WHEEL_SLOTS;
+                wheelNanos += TICK_NANOS_WHEEL;
+                while (c != null) {
+                    Channel next = c.next;
+                    c.next = null;
+                    c.queued = false;
+                    if (c.rounds > 0) {
+                        c.rounds--;
+                        insert(c, slot);
+                    } else {
+                        expire(c, now);
+                    }
+                    c = next;
+                }
+            }
+        }
+        TICK_NANOS.recordSince(t0);
+        dispatch();
+        checkSource(now);
+    }
+
+    /** Slot reached: either the channel was refreshed meanwhile (re-file) or it moves on a state. */
+    private void expire(Channel c, long now) {
+        long idle = now - c.lastNanos;
+        long staleAt = c.lastNanos + staleDelay(c);
+        if (idle >= deadNanos) {
+            if (c.state != State.DEAD) transition(c, State.DEAD);
+            return;                                     // out of the wheel until the next refresh
+        }
+        if (now >= staleAt) {
+            if (c.state != State.STALE) transition(c, State.STALE);
+            file(c, c.lastNanos + deadNanos);
+        } else {
+            file(c, staleAt);
+        }
+    }
+
+    /** Put c in the first slot due at or after deadline (lock held; cursor is the next slot due). */
+    private void file(Channel c, long deadline) {
+        long ticks = Math.max(0, (deadline - wheelNanos + TICK_NANOS_WHEEL - 1) / TICK_NANOS_WHEEL);
+        c.rounds = (int) (ticks / WHEEL_SLOTS);
+        insert(c, (int) ((cursor + ticks) % WHEEL_SLOTS));
+    }
+
+    private void insert(Channel c, int slot) {
+        c.next = wheel[slot];
+        wheel[slot] = c;
+        c.queued = true;
+    }
+
+    private void transition(Channel c, State to) {
+        State from = c.state;
+        c.state = to;
+        if (from == State.STALE) staleCount--;
+        if (from == State.DEAD) deadCount--;
+        if (to == State.STALE) staleCount++;
+        if (to == State.DEAD) deadCount++;
+        if (to == State.FRESH) unhealthy.remove(c.key);
+        else unhealthy.put(c.key, c);
+        pending.add(new Change(c.key, to));
+    }
+
+    private void dispatch() {
+        List<Change> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+            batch = pending;
+            pending = new ArrayList<>();
+            STALE.set(staleCount);
+            DEAD.set(deadCount);
+        }
+        TRANSITIONS.add(batch.size());
+        for (Subscription s : listeners) {
+            try {
+                s.executor.execute(() -> s.listener.onFreshness(batch));
+            } catch (Throwable t) {
+                System.out.println("[Freshness] listener dispatch failed: " + t);
+            }
+        }
+    }
+
+    /** Whole-source silence: ask the transport to reconnect, then keep asking every deadMs. */
+    private void checkSource(long now) {
+        Runnable hook = reconnect;
+        if (hook == null || channels.isEmpty()) return;
+        if (now - lastAnyNanos < deadNanos) {
+            nextReconnectNanos = 0;
+            return;
+        }
+        if (nextReconnectNanos != 0 && now < nextReconnectNanos) return;
+        nextReconnectNanos = now + deadNanos;
+        RECONNECTS.inc();
+        System.out.println("[Freshness] no data for " + TimeUnit.NANOSECONDS.toMillis(now - lastAnyNanos)
+                + " ms, asking the source to reconnect");
+        try {
+            hook.run();
+        } catch (Throwable t) {
+            System.out.println("[Freshness] reconnect failed: " + t);
+        }
+    }
+}
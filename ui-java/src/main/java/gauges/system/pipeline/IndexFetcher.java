@@ -5,8 +5,10 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -15,48 +17,124 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
 import java.util.function.Consumer;
 
 import gauges.system.Logger;
+import gauges.system.Metrics;
 
 /**
  * IndexFetcher
  *
- * Polls a JSON index from a backend endpoint at a fixed period and forwards the body to a consumer.
+ * Polls a snapshot from a backend endpoint at a fixed period and forwards the body to a consumer.
+ * The Accept header asks for the preferred SnapshotCodec; the response Content-Type decides how
+ * the body is decoded (JSON when the backend does not speak the binary format).
+ * Requests go out with sendAsync over a persistent client (HTTP/2 via h2c upgrade when the
+ * backend supports it, HTTP/1.1 keep-alive otherwise), with up to maxInFlight outstanding, so
+ * a backend slower than the poll period still yields one snapshot per period.
+ * - each in-flight request owns a pooled body buffer; bodies are handed to the sink as a view,
+ *   so a steady-state tick makes no byte[]/String copies of its own
+ * - responses are handled in order: one that completes after a newer request's response (or
+ *   with a lower X-Snapshot-Seq) is dropped, so late data never overwrites newer data
+ * Unchanged snapshots are not handed on at all:
+ * - ETag from the backend → sent back as If-None-Match; a 304 skips decode and apply
+ * - X-Snapshot-Seq header equal to the last applied one → skipped
+ * - neither header → a CRC32C of the body equal to the last one → skipped
+ * reconnect() (asked for by FreshnessTracker when data stops) swaps the client and forgets the
+ * validators so a restarted backend is picked up at once.
  * Clean version with minimal logging.
  */
-public final class IndexFetcher {
+public final class IndexFetcher implements SnapshotSource {
 
     private final URI endpoint;
     private final Duration period;
     private final Duration timeout;
-    private final Consumer<String> onSnapshot;
+    private final SnapshotCodec preferred;
+    private final SnapshotSink sink;
+    private final int maxInFlight;
 
-    private final HttpClient client;
+    private volatile HttpClient client;
+    private final HttpRequest request;
+    private final ConcurrentLinkedQueue<PooledBody> buffers = new ConcurrentLinkedQueue<>();
     private final ScheduledExecutorService scheduler;
 
     private volatile boolean running;
     private volatile boolean stopping;
     private volatile ScheduledFuture<?> task;
-    private final AtomicBoolean inFlight = new AtomicBoolean(false);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private long issued;                 // scheduler thread only
     private volatile long tickCount = 0L;
 
+    // Ordering and validators of the last response handled (guarded by handleLock)
+    private final Object handleLock = new Object();
+    private long lastHandled;
+    private long lastSeqNumber = Long.MIN_VALUE;
+    private volatile String etag;
+    private String lastSeq;
+    private long lastHash = -1L;
+    private int lastLength = -1;
+    private final CRC32C crc = new CRC32C();
+
     private static final PipelineDebugLog PIPELINE_LOG = PipelineDebugLog.shared();
 
+    private static final Metrics.Histogram FETCH_LATENCY = Metrics.histogram("fetch.latency.nanos");
+    private static final Metrics.Histogram FETCH_BYTES   = Metrics.histogram("fetch.body.bytes");
+    private static final Metrics.Counter   FETCH_OK      = Metrics.counter("fetch.ok");
+    private static final Metrics.Counter   FETCH_ERRORS  = Metrics.counter("fetch.errors");
+    private static final Metrics.Counter   FETCH_SKIPPED = Metrics.counter("fetch.skipped.inflight");
+    private static final Metrics.Gauge     FETCH_BUFFER  = Metrics.gauge("fetch.buffer.bytes");
+    private static final Metrics.Counter   FETCH_NOT_MODIFIED = Metrics.counter("fetch.not_modified");
+    private static final Metrics.Counter   FETCH_UNCHANGED    = Metrics.counter("fetch.unchanged");
+    private static final Metrics.Counter   FETCH_STALE        = Metrics.counter("fetch.dropped.stale");
+    private static final Metrics.Gauge     FETCH_INFLIGHT     = Metrics.gauge("fetch.inflight");
+
+    private static final int INITIAL_BUFFER = 16 * 1024;
+
+    /** Text consumer: always requests JSON and hands over the decoded body string. */
     public IndexFetcher(URI endpoint, Duration period, Duration timeout, Consumer<String> onSnapshot) {
+        this(endpoint, period, timeout, SnapshotCodec.JSON, textSink(onSnapshot));
+    }
+
+    /**
+     * Binary consumer: asks for the preferred codec (JSON stays acceptable as a fallback) and
+     * passes the raw body plus the codec the server actually answered with. One request in flight.
+     */
+    public IndexFetcher(URI endpoint, Duration period, Duration timeout, SnapshotCodec preferred, SnapshotSink sink) {
+        this(endpoint, period, timeout, preferred, sink, 1);
+    }
+
+    /** As above, with up to maxInFlight overlapping requests when the backend is slow. */
+    public IndexFetcher(URI endpoint, Duration period, Duration timeout, SnapshotCodec preferred, SnapshotSink sink,
+                        int maxInFlight) {
         this.endpoint   = Objects.requireNonNull(endpoint, "endpoint");
         this.period     = Objects.requireNonNull(period, "period");
         this.timeout    = Objects.requireNonNull(timeout, "timeout");
-        this.onSnapshot = Objects.requireNonNull(onSnapshot, "onSnapshot");
+        this.preferred  = Objects.requireNonNull(preferred, "preferred");
+        this.sink       = Objects.requireNonNull(sink, "sink");
+        this.maxInFlight = Math.max(1, maxInFlight);
 
-        this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+        for (int i = 0; i < this.maxInFlight; i++) buffers.add(new PooledBody());
+
+        this.client = newClient(timeout);
+        this.request = HttpRequest.newBuilder(endpoint)
+                .GET()
+                .timeout(timeout)
+                .header("Accept", preferred.acceptHeader())
+                .build();
         this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
             Thread t = new Thread(r, "IndexFetcher");
             t.setDaemon(true);
@@ -64,14 +142,17 @@ public final class IndexFetcher {
         });
     }
 
+    @Override
     public synchronized void start() {
         if (running) return;
         stopping = false;
         running  = true;
-        PIPELINE_LOG.info("[IndexFetcher] start endpoint=" + endpoint + " period=" + period + " timeout=" + timeout);
+        PIPELINE_LOG.info("[IndexFetcher] start endpoint=" + endpoint + " period=" + period + " timeout=" + timeout
+                + " maxInFlight=" + maxInFlight);
         task = scheduler.scheduleAtFixedRate(this::safeFetchOnce, 0L, period.toMillis(), TimeUnit.MILLISECONDS);
     }
 
+    @Override
     public synchronized void stop() {
         if (!running && !stopping) return;
         stopping = true;
@@ -89,52 +170,225 @@ public final class IndexFetcher {
         }
     }
 
+    /**
+     * Drop the connection and the remembered validators, then poll right away. Used when data
+     * stopped arriving: a backend restart resets X-Snapshot-Seq, whose lower numbers would
+     * otherwise be dropped as late responses, and a half-open keep-alive connection would keep
+     * timing out.
+     */
+    @Override
+    public void reconnect() {
+        if (!running) return;
+        PIPELINE_LOG.info("[IndexFetcher] reconnecting to " + endpoint);
+        HttpClient old = client;
+        client = newClient(timeout);
+        old.shutdownNow();
+        etag = null;
+        synchronized (handleLock) {
+            lastSeqNumber = Long.MIN_VALUE;
+            lastSeq = null;
+            lastHash = -1L;
+            lastLength = -1;
+        }
+        try {
+            scheduler.execute(this::safeFetchOnce);
+        } catch (Throwable ignore) { }
+    }
+
+    private static HttpClient newClient(Duration timeout) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    private static SnapshotSink textSink(Consumer<String> onSnapshot) {
+        Objects.requireNonNull(onSnapshot, "onSnapshot");
+        return (body, offset, length, codec) -> onSnapshot.accept(new String(body, offset, length, StandardCharsets.UTF_8));
+    }
+
     private void safeFetchOnce() {
         if (!running) return;
-        if (!inFlight.compareAndSet(false, true)) return;
+        PooledBody body = buffers.poll();
+        if (body == null) {
+            FETCH_SKIPPED.inc();
+            return;
+        }
         try {
-            fetchOnce();
+            fetchAsync(body);
         } catch (Throwable t) {
             // ignore unexpected exceptions quietly
+            buffers.offer(body);
             PIPELINE_LOG.error("[IndexFetcher] unexpected error", t);
-        } finally {
-            inFlight.set(false);
         }
     }
 
-    private void fetchOnce() {
-        if (!running) return;
+    private void fetchAsync(PooledBody body) {
+        long seq = ++issued;
+        FETCH_INFLIGHT.set(inFlight.incrementAndGet());
+
+        String tag = etag;
+        HttpRequest req = tag == null ? request
+                : HttpRequest.newBuilder(request, (name, value) -> true).header("If-None-Match", tag).build();
+        long t0 = System.nanoTime();
+        // Error bodies are never looked at, so only 2xx responses are collected
+        client.sendAsync(req, info ->
+                        info.statusCode() >= 200 && info.statusCode() < 300
+                                ? body.reset(info.headers().firstValueAsLong("Content-Length").orElse(-1L))
+                                : HttpResponse.BodySubscribers.replacing(0))
+                .whenComplete((resp, error) -> {
+                    FETCH_LATENCY.recordSince(t0);
+                    try {
+                        if (running) handle(seq, body, resp, error);
+                    } catch (Throwable t) {
+                        PIPELINE_LOG.error("[IndexFetcher] failure while handling response", t);
+                    } finally {
+                        FETCH_INFLIGHT.set(inFlight.decrementAndGet());
+                        buffers.offer(body);
+                    }
+                });
+    }
 
-        HttpRequest req = HttpRequest.newBuilder(endpoint)
-                .GET()
-                .timeout(timeout)
-                .header("Accept", "application/json")
-                .build();
+    private void handle(long seq, PooledBody body, HttpResponse<Integer> resp, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            FETCH_ERRORS.inc();
+            if (cause instanceof IOException) {
+                PIPELINE_LOG.warn("[IndexFetcher] IO error " + cause);
+            } else {
+                PIPELINE_LOG.error("[IndexFetcher] failure while fetching", cause);
+            }
+            return;
+        }
 
-        try {
-            HttpResponse<byte[]> resp = client.send(req, HttpResponse.BodyHandlers.ofByteArray());
-            int code = resp.statusCode();
-            byte[] body = resp.body();
-            int len = (body == null ? 0 : body.length);
+        int code = resp.statusCode();
+        int len = resp.body() == null ? 0 : resp.body();
+
+        synchronized (handleLock) {
+            if (seq < lastHandled || olderThanApplied(resp.headers())) {
+                FETCH_STALE.inc();
+                return;
+            }
+            lastHandled = seq;
+
+            // Unchanged snapshots are not applied, but they do show the backend is still answering
+            if (code == 304) {
+                FETCH_NOT_MODIFIED.inc();
+                FreshnessTracker.sourceAlive();
+                return;
+            }
+            if (code >= 200 && code < 300 && len > 0 && unchanged(resp.headers(), body, len)) {
+                FETCH_UNCHANGED.inc();
+                FreshnessTracker.sourceAlive();
+                return;
+            }
 
             if (code >= 200 && code < 300 && len > 0) {
-                String text = new String(body, StandardCharsets.UTF_8);
+                FETCH_OK.inc();
+                FETCH_BYTES.record(len);
+                SnapshotCodec codec = SnapshotCodec.fromContentType(resp.headers().firstValue("Content-Type").orElse(null));
                 long tick = ++tickCount;
-                PIPELINE_LOG.info("[IndexFetcher][tick=" + tick + "][code=" + code + "][bytes=" + len + "] body=" + text);
+                if (PIPELINE_LOG.isEnabled()) {
+                    PIPELINE_LOG.info("[IndexFetcher][tick=" + tick + "][code=" + code + "][bytes=" + len + "][" + codec + "] body="
+                            + (codec == SnapshotCodec.JSON ? new String(body.array, 0, len, StandardCharsets.UTF_8) : "<binary>"));
+                }
+                LatencyTracer.markReceived();
                 try {
-                    onSnapshot.accept(text);
+                    sink.accept(body.array, 0, len, codec);
                 } catch (Throwable ignored) { }
             } else {
+                FETCH_ERRORS.inc();
                 PIPELINE_LOG.warn("[IndexFetcher] response ignored code=" + code + " bytes=" + len);
             }
+        }
+    }
 
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-            PIPELINE_LOG.warn("[IndexFetcher] interrupted during fetch");
-        } catch (IOException ioe) {
-            PIPELINE_LOG.warn("[IndexFetcher] IO error " + ioe);
-        } catch (Throwable t) {
-            PIPELINE_LOG.error("[IndexFetcher] failure while fetching", t);
+    /** A numeric X-Snapshot-Seq below the newest one already handled means a late response. */
+    private boolean olderThanApplied(HttpHeaders headers) {
+        String seq = headers.firstValue("X-Snapshot-Seq").orElse(null);
+        if (seq == null) return false;
+        try {
+            long n = Long.parseLong(seq.trim());
+            if (n < lastSeqNumber) return true;
+            lastSeqNumber = n;
+        } catch (NumberFormatException ignore) { }
+        return false;
+    }
+
+    /**
+     * True when the response carries the same snapshot as the last one handed on; otherwise
+     * remembers this response's validators.
+     */
+    private boolean unchanged(HttpHeaders headers, PooledBody body, int len) {
+        etag = headers.firstValue("ETag").orElse(null);
+        String seq = headers.firstValue("X-Snapshot-Seq").orElse(null);
+        if (seq != null) {
+            boolean same = seq.equals(lastSeq);
+            lastSeq = seq;
+            return same;
+        }
+        if (etag != null) {
+            return false; // a server with ETags answers 304 for repeats
+        }
+        crc.reset();
+        crc.update(body.array, 0, len);
+        long hash = crc.getValue();
+        boolean same = hash == lastHash && len == lastLength;
+        lastHash = hash;
+        lastLength = len;
+        return same;
+    }
+
+    /**
+     * BodySubscriber that appends the response chunks into one array kept across requests,
+     * growing it only when a body outgrows every earlier one. Completes with the body length.
+     */
+    private static final class PooledBody implements HttpResponse.BodySubscriber<Integer> {
+        private byte[] array = new byte[INITIAL_BUFFER];
+        private int length;
+        private CompletableFuture<Integer> result;
+
+        PooledBody reset(long contentLength) {
+            length = 0;
+            result = new CompletableFuture<>();
+            if (contentLength > array.length) ensure((int) Math.min(contentLength, Integer.MAX_VALUE - 8));
+            return this;
+        }
+
+        @Override
+        public CompletionStage<Integer> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            for (ByteBuffer b : items) {
+                int n = b.remaining();
+                ensure(length + n);
+                b.get(array, length, n);
+                length += n;
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(length);
+        }
+
+        private void ensure(int capacity) {
+            if (capacity <= array.length) return;
+            array = Arrays.copyOf(array, Math.max(capacity, array.length * 2));
+            FETCH_BUFFER.set(array.length);
         }
     }
 
@@ -163,6 +417,11 @@ final class PipelineDebugLog {
         return SHARED;
     }
 
+    /** False when logging is off, so callers can skip building expensive messages. */
+    boolean isEnabled() {
+        return shouldLog();
+    }
+
     void info(String message) {
         log("INFO", message, null);
     }
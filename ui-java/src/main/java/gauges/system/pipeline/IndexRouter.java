@@ -1,5 +1,8 @@
 package gauges.system.pipeline;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 
 import gauges.system.Logger;
@@ -11,8 +14,12 @@ import gauges.system.Logger;
  * - Global singleton via install()/global()
  * - isReady() becomes true once the store has applied at least one snapshot
  * - Raw access (getRaw) and typed getters (getDouble/getInt/getBoolean/getString)
+ * - subscribe(keys, delivery, listener) for bindings that react to changes instead of polling
+ * - freshness(key) / isStale(key): FRESH, STALE or DEAD per FreshnessTracker (UNKNOWN when off)
  *
- * Keys are used as-is (e.g., "current.value"). If you need aliasing, add it in resolveKey().
+ * Keys go through KeyAliases (configs/aliases.json, e.g. "current.value" → "current"), resolved once
+ * per name and cached. Keys of the form "source@agg" (e.g. "rpm@max5s") are windowed aggregates
+ * computed by WindowAggregates. Namespace reads ("engine.") go to IndexStore.snapshot(prefix).
  */
 public final class IndexRouter {
 
@@ -95,36 +102,56 @@ public final class IndexRouter {
     public String getString(String key) {
         String k = resolveKey(key);
         IndexStore.DataPoint dp = store.get(k);
-        if (dp == null) {
-            String value = "";
-            logAccess("getString", k, value + " (missing)");
-            return value;
-        }
-        if ("text".equals(dp.type)) {
-            String value = dp.status == null ? "" : dp.status;
-            logAccess("getString", k, value + " (type=text)");
-            return value;
-        }
-        if (Double.isNaN(dp.v)) {
-            String value = "";
-            logAccess("getString", k, value + " (NaN)");
-            return value;
-        }
-        String value = String.valueOf(dp.v);
-        logAccess("getString", k, value + " (type=" + dp.type + ")");
+        String value = asString(dp);
+        logAccess("getString", k, value + (dp == null ? " (missing)" : " (type=" + dp.type + ")"));
         return value;
     }
 
+    /** A DataPoint as getString reads it: the status of "text" points, "" when missing or NaN. */
+    public static String asString(IndexStore.DataPoint dp) {
+        if (dp == null) return "";
+        if ("text".equals(dp.type)) return dp.status == null ? "" : dp.status;
+        return Double.isNaN(dp.v) ? "" : String.valueOf(dp.v);
+    }
+
+    /** Freshness of key's value (UNKNOWN when the tracker is off or the key was never seen). */
+    public FreshnessTracker.State freshness(String key) {
+        FreshnessTracker f = FreshnessTracker.global();
+        return f == null ? FreshnessTracker.State.UNKNOWN : f.state(resolveKey(key));
+    }
+
+    /** True when key's value stopped updating (stale or dead). */
+    public boolean isStale(String key) {
+        FreshnessTracker.State s = freshness(key);
+        return s == FreshnessTracker.State.STALE || s == FreshnessTracker.State.DEAD;
+    }
+
+    /** Subscribe to changes of keys (resolved as the getters do, so aggregates start computing). */
+    public KeySubscriptions.Subscription subscribe(Collection<String> keys, KeySubscriptions.Delivery delivery,
+                                                   KeySubscriptions.Listener listener) {
+        List<String> resolved = new ArrayList<>(keys.size());
+        for (String k : keys) resolved.add(resolveKey(k));
+        return store.subscribe(resolved, delivery, listener);
+    }
+
     // --------------------------------------------------------------------------------------------
     // Helpers
     // --------------------------------------------------------------------------------------------
 
-    /** Simple pass-through for now; place aliasing rules here if you need them later. */
+    /** Canonical key for name (aliases applied), as bindings should store it. */
+    public static String resolve(String key) {
+        return resolveKey(key);
+    }
+
+    /** Alias lookup (cached); aggregate keys ("rpm@max5s") start being computed on their first read. */
     private static String resolveKey(String key) {
         if (key == null) return "";
-        // Example aliasing (disabled by default):
-        // if (key.endsWith(".value")) return key.substring(0, key.length() - ".value".length());
-        return key;
+        String k = KeyAliases.resolve(key);
+        if (k.indexOf('@') > 0) {
+            WindowAggregates agg = WindowAggregates.global();
+            if (agg != null) agg.request(k);
+        }
+        return k;
     }
 
     private static void log(String msg) {
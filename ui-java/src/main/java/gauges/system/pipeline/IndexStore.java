@@ -1,10 +1,19 @@
 package gauges.system.pipeline;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
@@ -12,6 +21,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import gauges.system.Logger;
+import gauges.system.Metrics;
 
 /**
  * IndexStore
@@ -19,7 +29,15 @@ import gauges.system.Logger;
  * Thread-safe store for the live snapshot coming from the backend.
  * - applySnapshot(Map<String, DataPoint>) replaces/updates values
  * - applySnapshot(String) parses JSON text directly (using Jackson) and adapts it to DataPoints
+ * - applySnapshot(byte[], off, len, codec) stream-decodes JSON or CBOR bodies from transports
+ * - subscribe(key | keys, delivery, listener) / subscribePrefix(...) report which selected keys
+ *   changed, inline or coalesced onto the FX thread / an executor (see KeySubscriptions)
  * - setOnChange(Consumer<String>) notifies with the last-updated key (or "*" for bulk)
+ * - addDeriver(Deriver) computes extra keys from each batch inside the same apply (DerivedChannels,
+ *   WindowAggregates); later derivers also see what earlier ones produced
+ * - addTap(Tap) sees every applied batch on the ingest thread (e.g. ChannelHistory)
+ * - keys(prefix) / snapshot(prefix) read one namespace ("engine.", "wheels.fl.") through a trie of
+ *   dot-separated key segments instead of scanning the map (see KeyNamespace)
  * - version() increments on every snapshot apply
  *
  * Debug: prints the FULL storage index every time it gets updated (using Logger if available).
@@ -29,14 +47,55 @@ public final class IndexStore {
     private final ConcurrentHashMap<String, DataPoint> data = new ConcurrentHashMap<>();
     private final AtomicLong ver = new AtomicLong(0L);
 
+    // Prefix index over every key ever stored
+    private final KeyNamespace namespace = new KeyNamespace();
+
     // Optional listener (e.g., for UI invalidation). Called after apply.
     private volatile Consumer<String> onChange;
 
+    // Consumers of every applied batch, called before onChange
+    private final CopyOnWriteArrayList<Tap> taps = new CopyOnWriteArrayList<>();
+
+    /**
+     * Sees each applied batch (the incoming map, only valid during the call) on the thread that
+     * applied it. Must be quick: it runs inside the ingest path.
+     */
+    @FunctionalInterface
+    public interface Tap {
+        void onApply(Map<String, DataPoint> applied, long version);
+    }
+
+    /**
+     * Computes additional keys from each applied batch (already in the store when it runs). Each
+     * stage runs once per apply and sees a read-only view of the incoming batch plus what earlier
+     * stages derived (e.g. a window over a derived channel). The returned map, only read during
+     * the apply, is stored under the same version and shown to the taps as a second batch; null
+     * or empty when nothing was derived.
+     */
+    @FunctionalInterface
+    public interface Deriver {
+        Map<String, DataPoint> derive(Map<String, DataPoint> applied);
+    }
+
+    private final CopyOnWriteArrayList<Deriver> derivers = new CopyOnWriteArrayList<>();
+
+    // One apply at a time (see applySnapshot)
+    private final Object applyLock = new Object();
+
+    // Per-key change subscriptions, published after the taps
+    private final KeySubscriptions subscriptions = new KeySubscriptions();
+
     private static final PipelineDebugLog PIPELINE_LOG = PipelineDebugLog.shared();
     private static final ObjectMapper JSON = new ObjectMapper();
     private static final TypeReference<Map<String, Object>> MAP_OF_OBJECT =
             new TypeReference<Map<String, Object>>() { };
 
+    private static final Metrics.Histogram PARSE_NANOS    = Metrics.histogram("store.parse.nanos");
+    private static final Metrics.Histogram APPLY_NANOS    = Metrics.histogram("store.apply.nanos");
+    private static final Metrics.Counter   PARSE_ERRORS   = Metrics.counter("store.parse.errors");
+    private static final Metrics.Gauge     SNAPSHOT_KEYS  = Metrics.gauge("store.snapshot.keys");
+    private static final Metrics.Gauge     STORE_SIZE     = Metrics.gauge("store.size");
+
     public IndexStore() {
         if (debugLoggingEnabled()) {
             log("[IndexStore] constructed");
@@ -55,16 +114,18 @@ public final class IndexStore {
             return;
         }
 
-        String trimmed = jsonText.trim();
-        if (trimmed.isEmpty()) {
+        // Jackson skips surrounding whitespace itself; isBlank() avoids a trimmed copy
+        if (jsonText.isBlank()) {
             PIPELINE_LOG.warn("[IndexStore] applySnapshot(String) ignored empty snapshot");
             return;
         }
 
+        long t0 = System.nanoTime();
         Map<String, Object> raw;
         try {
-            raw = JSON.readValue(trimmed, MAP_OF_OBJECT);
+            raw = JSON.readValue(jsonText, MAP_OF_OBJECT);
         } catch (Exception parseError) {
+            PARSE_ERRORS.inc();
             PIPELINE_LOG.error("[IndexStore] failed to parse snapshot JSON", parseError);
             return;
         }
@@ -89,11 +150,78 @@ public final class IndexStore {
             PIPELINE_LOG.warn("[IndexStore] no usable datapoints after adapting snapshot");
             return;
         }
+        PARSE_NANOS.recordSince(t0);
 
         PIPELINE_LOG.info("[IndexStore] applying parsed snapshot entries=" + adapted.size());
         applySnapshot(adapted);
     }
 
+    /**
+     * Binary-safe entry point for transports: decode body[offset, offset+length) with the given
+     * codec (streaming, no intermediate JSON tree) and apply it. Matches SnapshotSink.
+     */
+    public void applySnapshot(byte[] body, int offset, int length, SnapshotCodec codec) {
+        if (body == null || length <= 0) {
+            PIPELINE_LOG.warn("[IndexStore] applySnapshot(bytes) ignored empty body");
+            return;
+        }
+
+        long t0 = System.nanoTime();
+        Map<String, DataPoint> adapted;
+        try {
+            adapted = codec.decode(body, offset, length);
+        } catch (Exception parseError) {
+            PARSE_ERRORS.inc();
+            PIPELINE_LOG.error("[IndexStore] failed to decode " + codec + " snapshot", parseError);
+            return;
+        }
+
+        if (adapted.isEmpty()) {
+            PIPELINE_LOG.warn("[IndexStore] no usable datapoints after decoding " + codec + " snapshot");
+            return;
+        }
+        PARSE_NANOS.recordSince(t0);
+
+        PIPELINE_LOG.info("[IndexStore] applying decoded " + codec + " snapshot entries=" + adapted.size());
+        applySnapshot(adapted);
+    }
+
+    /** Add a consumer of every applied batch. */
+    public void addTap(Tap tap) {
+        taps.add(Objects.requireNonNull(tap, "tap"));
+    }
+
+    public void removeTap(Tap tap) {
+        taps.remove(tap);
+    }
+
+    /** Append a computed-channel stage; stages run in the order they were added. */
+    public void addDeriver(Deriver d) {
+        derivers.add(Objects.requireNonNull(d, "deriver"));
+    }
+
+    public void removeDeriver(Deriver d) {
+        derivers.remove(d);
+    }
+
+    /** Be told when key changes (its own value or, for aggregates/derived keys, a recompute). */
+    public KeySubscriptions.Subscription subscribe(String key, KeySubscriptions.Delivery delivery,
+                                                   KeySubscriptions.Listener listener) {
+        return subscriptions.subscribe(key, delivery, listener);
+    }
+
+    /** Be told which of keys changed; one callback per apply (inline) or per drain (coalesced). */
+    public KeySubscriptions.Subscription subscribe(Collection<String> keys, KeySubscriptions.Delivery delivery,
+                                                   KeySubscriptions.Listener listener) {
+        return subscriptions.subscribe(keys, delivery, listener);
+    }
+
+    /** Be told which keys starting with prefix changed ("" = every key). */
+    public KeySubscriptions.Subscription subscribePrefix(String prefix, KeySubscriptions.Delivery delivery,
+                                                         KeySubscriptions.Listener listener) {
+        return subscriptions.subscribePrefix(prefix, delivery, listener);
+    }
+
     /** Optional: set a callback invoked after each update (key of last-updated or \"*\"). */
     public void setOnChange(Consumer<String> listener) {
         this.onChange = listener;
@@ -109,13 +237,38 @@ public final class IndexStore {
         return sortedCopy(data);
     }
 
+    /** Keys starting with prefix ("" = all), grouped by namespace; only the matching subtree is visited. */
+    public List<String> keys(String prefix) {
+        return namespace.keys(Objects.requireNonNull(prefix, "prefix"));
+    }
+
+    /** Read-only copy of the keys starting with prefix, e.g. snapshot("wheels.fl."). */
+    public Map<String, DataPoint> snapshot(String prefix) {
+        LinkedHashMap<String, DataPoint> out = new LinkedHashMap<>();
+        namespace.forEach(Objects.requireNonNull(prefix, "prefix"), k -> {
+            DataPoint dp = data.get(k);
+            if (dp != null) out.put(k, dp);
+        });
+        return out;
+    }
+
     /**
      * Apply a snapshot map. Replaces existing keys with new values and inserts new keys.
      * Keys not present in the incoming snapshot are retained (additive). If you prefer a
      * strict replace (where missing keys are removed), flip the 'strictReplace' flag below.
+     * Applies are serialized: derivers, taps, version stamps and subscribers always see one
+     * writer, whichever threads call in (IngestApply normally, transports and the latency
+     * diagnostics when the ingest queue is off).
      */
     public void applySnapshot(Map<String, DataPoint> incoming) {
         Objects.requireNonNull(incoming, "incoming");
+        synchronized (applyLock) {
+            applyLocked(incoming);
+        }
+    }
+
+    private void applyLocked(Map<String, DataPoint> incoming) {
+        long t0 = System.nanoTime();
 
         // Change this to 'true' if you want missing keys removed on every apply.
         boolean strictReplace = false;
@@ -129,11 +282,32 @@ public final class IndexStore {
             String k = String.valueOf(e.getKey());
             DataPoint v = e.getValue();
             if (v == null) continue;
-            data.put(k, v);
+            if (data.put(k, v) == null) namespace.add(k);
             lastKey = k;
         }
 
+        Map<String, DataPoint> derived = null;
+        if (!derivers.isEmpty()) {
+            StageInput input = new StageInput(incoming);
+            for (Deriver d : derivers) {
+                try {
+                    derived = merge(derived, d.derive(input));
+                    input.derived = derived;
+                } catch (Throwable t) {
+                    PIPELINE_LOG.error("[IndexStore] deriver failed", t);
+                }
+            }
+        }
+        if (derived != null) {
+            for (Map.Entry<String, DataPoint> e : derived.entrySet()) {
+                if (data.put(e.getKey(), e.getValue()) == null) namespace.add(e.getKey());
+            }
+        }
+
         long vnow = ver.incrementAndGet();
+        LatencyTracer.markApplied(vnow);
+        SNAPSHOT_KEYS.set(incoming.size());
+        STORE_SIZE.set(data.size());
 
         if (debugLoggingEnabled()) {
             // --- Debug: print the FULL storage index (sorted) every time it’s updated ---
@@ -147,10 +321,100 @@ public final class IndexStore {
             }
         }
 
+        for (Tap tap : taps) {
+            try {
+                tap.onApply(incoming, vnow);
+                if (derived != null && !derived.isEmpty()) tap.onApply(derived, vnow);
+            } catch (Throwable t) {
+                PIPELINE_LOG.error("[IndexStore] tap failed", t);
+            }
+        }
+
+        if (!subscriptions.isEmpty()) subscriptions.publish(incoming, derived, vnow);
+
         Consumer<String> cb = onChange;
         if (cb != null) {
             try { cb.accept(lastKey); } catch (Throwable ignore) {}
         }
+        APPLY_NANOS.recordSince(t0);
+    }
+
+    /** Read-only incoming batch plus the outputs derived so far in this apply (a derived key shadows an incoming one). */
+    private static final class StageInput extends AbstractMap<String, DataPoint> {
+        final Map<String, DataPoint> incoming;
+        Map<String, DataPoint> derived;
+
+        StageInput(Map<String, DataPoint> incoming) {
+            this.incoming = Collections.unmodifiableMap(incoming);
+        }
+
+        @Override
+        public DataPoint get(Object key) {
+            DataPoint dp = derived == null ? null : derived.get(key);
+            return dp != null ? dp : incoming.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return (derived != null && derived.containsKey(key)) || incoming.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            if (derived == null) return incoming.size();
+            int n = incoming.size();
+            for (String k : derived.keySet()) if (!incoming.containsKey(k)) n++;
+            return n;
+        }
+
+        @Override
+        public Set<Entry<String, DataPoint>> entrySet() {
+            Map<String, DataPoint> d = derived == null ? Map.of() : Collections.unmodifiableMap(derived);
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, DataPoint>> iterator() {
+                    return new Iterator<>() {
+                        final Iterator<Entry<String, DataPoint>> first = incoming.entrySet().iterator();
+                        final Iterator<Entry<String, DataPoint>> second = d.entrySet().iterator();
+                        Entry<String, DataPoint> next = advance();
+
+                        private Entry<String, DataPoint> advance() {
+                            while (first.hasNext()) {
+                                Entry<String, DataPoint> e = first.next();
+                                if (!d.containsKey(e.getKey())) return e;
+                            }
+                            return second.hasNext() ? second.next() : null;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next != null;
+                        }
+
+                        @Override
+                        public Entry<String, DataPoint> next() {
+                            if (next == null) throw new NoSuchElementException();
+                            Entry<String, DataPoint> e = next;
+                            next = advance();
+                            return e;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return StageInput.this.size();
+                }
+            };
+        }
+    }
+
+    /** Copy a deriver's output (only valid until its next call) into the apply's derived batch. */
+    private static Map<String, DataPoint> merge(Map<String, DataPoint> into, Map<String, DataPoint> out) {
+        if (out == null || out.isEmpty()) return into;
+        if (into == null) into = new LinkedHashMap<>();
+        into.putAll(out);
+        return into;
     }
 
     /** Get a DataPoint by key (null if missing). */
@@ -211,6 +475,7 @@ public final class IndexStore {
         public final long ts;       // timestamp (millis)
         public final String type;   // optional type/kind
         public final String status; // optional status
+        public final boolean sampled; // ts is the source's sample time, not the time it was received
 
         // Constructors commonly seen across variants
         public DataPoint(double v, long ts) {
@@ -220,10 +485,14 @@ public final class IndexStore {
             this(v, ts, type, null);
         }
         public DataPoint(double v, long ts, String type, String status) {
+            this(v, ts, type, status, false);
+        }
+        public DataPoint(double v, long ts, String type, String status, boolean sampled) {
             this.v = v;
             this.ts = ts;
             this.type = type;
             this.status = status;
+            this.sampled = sampled;
         }
 
         /** Loose factory: try to adapt a variety of incoming shapes. */
@@ -245,9 +514,10 @@ public final class IndexStore {
                 Object status = first(m.get("status"), m.get("s"));
 
                 double v = (vObj instanceof Number) ? ((Number) vObj).doubleValue() : parseDoubleOrNaN(vObj);
-                long ts  = (tsObj instanceof Number) ? ((Number) tsObj).longValue() : System.currentTimeMillis();
+                boolean sampled = tsObj instanceof Number;
+                long ts  = sampled ? ((Number) tsObj).longValue() : System.currentTimeMillis();
                 return new DataPoint(v, ts, type == null ? null : String.valueOf(type),
-                        status == null ? null : String.valueOf(status));
+                        status == null ? null : String.valueOf(status), sampled);
             }
 
             // String fallback – keep it as a text-type datapoint
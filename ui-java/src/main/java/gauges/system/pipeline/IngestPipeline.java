@@ -0,0 +1,239 @@
+package gauges.system.pipeline;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import gauges.system.Metrics;
+
+/**
+ * IngestPipeline
+ *
+ * Decouples transports from IndexStore so a slow apply (debug logging, taps, listeners) never
+ * stretches the poll or receive loop. Three stages, each on its own thread:
+ * - receive : the transport thread copies the raw body into a bounded single-producer /
+ *             single-consumer ring of reused buffers and returns at once; when the ring is full
+ *             the oldest queued body is dropped and counted, so the newest one always gets in
+ * - decode  : "IngestDecode" claims the oldest body (copying it out of the ring), decodes it
+ *             through SnapshotCodec and merges it into the pending batch, latest value per key wins
+ * - apply   : "IngestApply" swaps the pending batch out and applies it; whatever arrived during
+ *             an apply is conflated into the next one
+ * Overload therefore drops intermediate samples of a key instead of queueing them: the apply
+ * always carries the newest value of every key, and latency stays at about one apply.
+ *
+ * Sources that already deliver decoded batches (SharedMemorySource) use offer(Map) and join at
+ * the conflation stage. The ring accepts one producer at a time (IndexFetcher calls it under its
+ * handle lock). Both sides advance head with a CAS: the decoder to claim a body, the producer to
+ * drop one; whoever loses the race leaves the slot to the other. LatencyTracer receive stamps
+ * travel with the data; a conflated batch keeps the oldest one.
+ */
+public final class IngestPipeline implements SnapshotSink {
+
+    private static final PipelineDebugLog PIPELINE_LOG = PipelineDebugLog.shared();
+
+    private static final Metrics.Gauge     QUEUE_DEPTH   = Metrics.gauge("ingest.queue.depth");
+    private static final Metrics.Counter   QUEUE_DROPPED = Metrics.counter("ingest.queue.dropped");
+    private static final Metrics.Counter   CONFLATED     = Metrics.counter("ingest.conflated");
+    private static final Metrics.Histogram DECODE_NANOS  = Metrics.histogram("ingest.decode.nanos");
+    private static final Metrics.Counter   DECODE_ERRORS = Metrics.counter("ingest.decode.errors");
+    private static final Metrics.Histogram BATCH_KEYS    = Metrics.histogram("ingest.apply.batch.keys");
+
+    private static final int INITIAL_BUFFER = 16 * 1024;
+
+    /** One raw body in the ring; the buffer is kept and grown only when a body outgrows it. */
+    private static final class Slot {
+        byte[] buf = new byte[INITIAL_BUFFER];
+        int length;
+        SnapshotCodec codec;
+        final long[] received = new long[2];   // LatencyTracer stamp (nanos, millis); 0 = none
+    }
+
+    private final IndexStore store;
+    private final Slot[] ring;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();   // oldest queued body (CAS by decoder and producer)
+    private final AtomicLong tail = new AtomicLong();   // next slot to fill (producer writes)
+    private byte[] claimed = new byte[INITIAL_BUFFER];  // decoder's copy of the body it claimed
+
+    // Conflation stage, guarded by lock
+    private final Object lock = new Object();
+    private LinkedHashMap<String, IndexStore.DataPoint> pending = new LinkedHashMap<>();
+    private LinkedHashMap<String, IndexStore.DataPoint> applying = new LinkedHashMap<>();
+    private final long[] pendingReceived = new long[2];
+
+    private volatile boolean running;
+    private volatile Thread decoder;
+    private volatile Thread applier;
+
+    /** capacity: raw bodies the ring holds (rounded up to a power of two). */
+    public IngestPipeline(IndexStore store, int capacity) {
+        this.store = Objects.requireNonNull(store, "store");
+        int n = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        ring = new Slot[n];
+        for (int i = 0; i < n; i++) ring[i] = new Slot();
+        mask = n - 1;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        decoder = thread(this::decodeLoop, "IngestDecode");
+        applier = thread(this::applyLoop, "IngestApply");
+        PIPELINE_LOG.info("[IngestPipeline] start capacity=" + ring.length);
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        for (Thread t : new Thread[] { decoder, applier }) {
+            if (t == null) continue;
+            LockSupport.unpark(t);
+            try {
+                t.join(1000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        decoder = null;
+        applier = null;
+    }
+
+    public String describe() {
+        return "ring=" + ring.length + " (latest-wins conflation)";
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Receive (transport thread)
+    // ------------------------------------------------------------------------------------------------
+
+    /** SnapshotSink: copy the body into the ring and return; the oldest queued body makes room when full. */
+    @Override
+    public void accept(byte[] body, int offset, int length, SnapshotCodec codec) {
+        if (body == null || length <= 0) return;
+        long t = tail.get();
+        for (long h; t - (h = head.get()) >= ring.length; ) {
+            // Full: drop the stalest body. A failed CAS means the decoder just claimed it, which frees the slot too
+            if (head.compareAndSet(h, h + 1)) QUEUE_DROPPED.inc();
+        }
+        Slot s = ring[(int) (t & mask)];
+        if (s.buf.length < length) s.buf = new byte[Math.max(length, s.buf.length * 2)];
+        System.arraycopy(body, offset, s.buf, 0, length);
+        s.length = length;
+        s.codec = codec;
+        if (!LatencyTracer.takeReceived(s.received)) s.received[0] = 0L;
+        tail.lazySet(t + 1);                             // publish the slot to the decoder
+        QUEUE_DEPTH.set(t + 1 - head.get());
+        Thread d = decoder;
+        if (d != null) LockSupport.unpark(d);
+    }
+
+    /**
+     * Already-decoded batch (only read during the call): merged straight into the pending batch.
+     * Safe from any thread (SharedMemorySource, LatencyTracer diagnostics).
+     */
+    public void offer(Map<String, IndexStore.DataPoint> batch) {
+        if (batch == null || batch.isEmpty()) return;
+        long[] stamp = new long[2];
+        if (!LatencyTracer.takeReceived(stamp)) stamp[0] = 0L;
+        merge(batch, stamp[0], stamp[1]);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Decode
+    // ------------------------------------------------------------------------------------------------
+
+    private void decodeLoop() {
+        while (running) {
+            long h = head.get();
+            if (h == tail.get()) {
+                LockSupport.park(this);
+                continue;
+            }
+            // Copy the body out, then claim it. The producer only rewrites slot h after moving head
+            // past it, so a successful CAS proves the copy is intact; a failed one means it was dropped.
+            Slot s = ring[(int) (h & mask)];
+            byte[] src = s.buf;
+            int length = Math.min(s.length, src.length);   // torn only if dropped, and then the CAS fails
+            if (claimed.length < length) claimed = new byte[Math.max(length, claimed.length * 2)];
+            System.arraycopy(src, 0, claimed, 0, length);
+            SnapshotCodec codec = s.codec;
+            long r0 = s.received[0], r1 = s.received[1];
+            if (!head.compareAndSet(h, h + 1)) continue;
+
+            long t0 = System.nanoTime();
+            Map<String, IndexStore.DataPoint> decoded = null;
+            try {
+                decoded = codec.decode(claimed, 0, length);
+            } catch (Exception e) {
+                DECODE_ERRORS.inc();
+                PIPELINE_LOG.error("[IngestPipeline] failed to decode " + codec + " snapshot", e);
+            }
+            DECODE_NANOS.recordSince(t0);
+            if (decoded != null && !decoded.isEmpty()) merge(decoded, r0, r1);
+        }
+    }
+
+    private void merge(Map<String, IndexStore.DataPoint> batch, long receivedNanos, long receivedMillis) {
+        int replaced = 0;
+        synchronized (lock) {
+            for (Map.Entry<String, IndexStore.DataPoint> e : batch.entrySet()) {
+                if (e.getValue() == null) continue;
+                if (pending.put(e.getKey(), e.getValue()) != null) replaced++;
+            }
+            // Keep the oldest receive stamp: latency is measured for the data that waited longest
+            if (receivedNanos != 0L && (pendingReceived[0] == 0L || receivedNanos < pendingReceived[0])) {
+                pendingReceived[0] = receivedNanos;
+                pendingReceived[1] = receivedMillis;
+            }
+        }
+        if (replaced > 0) CONFLATED.add(replaced);
+        Thread a = applier;
+        if (a != null) LockSupport.unpark(a);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Apply
+    // ------------------------------------------------------------------------------------------------
+
+    private void applyLoop() {
+        while (running) {
+            long receivedNanos, receivedMillis;
+            LinkedHashMap<String, IndexStore.DataPoint> batch;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    batch = null;
+                    receivedNanos = receivedMillis = 0L;
+                } else {
+                    batch = pending;
+                    pending = applying;
+                    applying = batch;
+                    receivedNanos = pendingReceived[0];
+                    receivedMillis = pendingReceived[1];
+                    pendingReceived[0] = 0L;
+                }
+            }
+            if (batch == null) {
+                LockSupport.park(this);
+                continue;
+            }
+            BATCH_KEYS.record(batch.size());
+            try {
+                LatencyTracer.markReceived(receivedNanos, receivedMillis);
+                store.applySnapshot(batch);
+            } catch (Throwable t) {
+                PIPELINE_LOG.error("[IngestPipeline] apply failed", t);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static Thread thread(Runnable body, String name) {
+        Thread t = new Thread(body, name);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+}
@@ -0,0 +1,103 @@
+package gauges.system.pipeline;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * KeyAliases
+ *
+ * Alternate channel names from configs/aliases.json, resolved when something binds to a key
+ * (gauge bindings, derived-channel expressions, alarm rules) rather than on every read.
+ * - "aliases":  exact names, e.g. "current.value": "current" or "rpm": "engine.rpm"
+ * - "prefixes": whole namespaces, e.g. "obd.": "engine." (longest prefix wins)
+ * - aggregate keys resolve their source part: "rpm@max5s" → "engine.rpm@max5s"
+ *
+ * Chains are followed to the canonical name (a few steps at most, so a cycle cannot hang) which
+ * makes resolving twice harmless. Each result is cached, so the lookup on hot paths is one map
+ * read. Unknown keys pass through unchanged.
+ */
+public final class KeyAliases {
+
+    private static final int MAX_STEPS = 8;
+
+    private static volatile KeyAliases GLOBAL = new KeyAliases(Map.of(), Map.of());
+
+    private final Map<String, String> exact;
+    private final String[] fromPrefixes;     // longest first
+    private final String[] toPrefixes;
+    private final ConcurrentHashMap<String, String> resolved = new ConcurrentHashMap<>();
+
+    public KeyAliases(Map<String, String> exact, Map<String, String> prefixes) {
+        this.exact = Map.copyOf(exact);
+        List<Map.Entry<String, String>> p = new ArrayList<>(prefixes.entrySet());
+        p.sort(Comparator.comparingInt((Map.Entry<String, String> e) -> e.getKey().length()).reversed());
+        fromPrefixes = new String[p.size()];
+        toPrefixes = new String[p.size()];
+        for (int i = 0; i < p.size(); i++) {
+            fromPrefixes[i] = p.get(i).getKey();
+            toPrefixes[i] = p.get(i).getValue();
+        }
+    }
+
+    /** Build the global table from a parsed aliases.json tree. */
+    public static KeyAliases install(Map<String, Object> config) {
+        KeyAliases a = new KeyAliases(strings(config, "aliases"), strings(config, "prefixes"));
+        GLOBAL = a;
+        System.out.println("[Aliases] " + a.exact.size() + " alias(es), " + a.fromPrefixes.length + " prefix rule(s)");
+        return a;
+    }
+
+    /** The installed table (empty until boot installs one). */
+    public static KeyAliases global() {
+        return GLOBAL;
+    }
+
+    /** Canonical key for name through the global table. */
+    public static String resolve(String name) {
+        return GLOBAL.map(name);
+    }
+
+    /** Canonical key for name (cached). */
+    public String map(String name) {
+        if (name == null) return "";
+        String k = resolved.get(name);
+        if (k != null) return k;
+        int at = name.indexOf('@');
+        k = at > 0 ? compute(name.substring(0, at)) + name.substring(at) : compute(name);
+        resolved.put(name, k);
+        return k;
+    }
+
+    private String compute(String name) {
+        for (int i = 0; i < MAX_STEPS; i++) {
+            String next = step(name);
+            if (next.equals(name)) break;
+            name = next;
+        }
+        return name;
+    }
+
+    private String step(String name) {
+        String k = exact.get(name);
+        if (k != null) return k;
+        for (int i = 0; i < fromPrefixes.length; i++) {
+            if (name.startsWith(fromPrefixes[i])) return toPrefixes[i] + name.substring(fromPrefixes[i].length());
+        }
+        return name;
+    }
+
+    private static Map<String, String> strings(Map<String, Object> config, String field) {
+        Map<String, String> out = new HashMap<>();
+        Object o = config == null ? null : config.get(field);
+        if (o instanceof Map<?, ?> m) {
+            m.forEach((k, v) -> {
+                if (k != null && v != null) out.put(String.valueOf(k).trim(), String.valueOf(v).trim());
+            });
+        }
+        return out;
+    }
+}
@@ -0,0 +1,73 @@
+package gauges.system.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+/**
+ * KeyNamespace
+ *
+ * Trie over the dot-separated segments of every key IndexStore has seen ("engine.rpm",
+ * "wheels.fl.speed"), so prefix queries visit only the matching subtree instead of scanning the
+ * whole map. Prefixes keep plain String.startsWith semantics: "wheels.fl." selects that group,
+ * "engine" selects "engine", "engine.*" and "engine2.*" alike.
+ * - add(key) is called by the store the first time a key is written (keys are never removed)
+ * - forEach(prefix, consumer) / keys(prefix) walk the matching subtrees, grouped by namespace
+ *
+ * Reads are lock-free and may run concurrently with add.
+ */
+final class KeyNamespace {
+
+    private static final class Node {
+        final ConcurrentSkipListMap<String, Node> children = new ConcurrentSkipListMap<>();
+        volatile String key;                 // non-null when a key ends at this node
+    }
+
+    private final Node root = new Node();
+
+    /** Register a key; cheap when already present. */
+    void add(String key) {
+        Node n = root;
+        int start = 0;
+        while (true) {
+            int dot = key.indexOf('.', start);
+            String seg = dot < 0 ? key.substring(start) : key.substring(start, dot);
+            n = n.children.computeIfAbsent(seg, s -> new Node());
+            if (dot < 0) break;
+            start = dot + 1;
+        }
+        n.key = key;
+    }
+
+    /** Visit every known key starting with prefix ("" = all). */
+    void forEach(String prefix, Consumer<String> out) {
+        Node n = root;
+        int start = 0;
+        // Whole segments of the prefix must match exactly...
+        for (int dot; (dot = prefix.indexOf('.', start)) >= 0; start = dot + 1) {
+            n = n.children.get(prefix.substring(start, dot));
+            if (n == null) return;
+        }
+        // ...the trailing partial segment matches child segments it starts
+        String partial = prefix.substring(start);
+        for (Map.Entry<String, Node> e : n.children.tailMap(partial).entrySet()) {
+            if (!e.getKey().startsWith(partial)) break;
+            subtree(e.getValue(), out);
+        }
+    }
+
+    /** Known keys starting with prefix, grouped by namespace. */
+    List<String> keys(String prefix) {
+        List<String> out = new ArrayList<>();
+        forEach(prefix, out::add);
+        return out;
+    }
+
+    private static void subtree(Node n, Consumer<String> out) {
+        String k = n.key;
+        if (k != null) out.accept(k);
+        for (Node c : n.children.values()) subtree(c, out);
+    }
+}
@@ -0,0 +1,457 @@
+package gauges.system.pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import gauges.system.Metrics;
+import javafx.application.Platform;
+
+/**
+ * KeySubscriptions
+ *
+ * Per-key change notification behind IndexStore.subscribe(...). A subscription selects one key, a
+ * set of keys or a key prefix, and is told which of its keys changed in each applied batch
+ * (derived and aggregate keys included).
+ * - Delivery.inline(): called on the ingest thread inside the apply (must be quick)
+ * - Delivery.fx(): coalesced onto the FX thread; all FX subscribers share one runLater per pulse
+ * - Delivery.on(executor): coalesced onto that executor, one task in flight per subscription
+ *
+ * Routing is one map read per key: each key's subscribers (exact and prefix matches) are resolved
+ * the first time it is published and cached until the subscriptions change, so prefix
+ * subscriptions cost nothing extra per sample.
+ *
+ * Coalesced subscribers accumulate changed keys (deduplicated) until their task runs, so a slow
+ * consumer sees fewer, larger batches rather than a backlog. Key buffers are reused, so steady
+ * state publishing does not allocate.
+ */
+public final class KeySubscriptions {
+
+    private static final PipelineDebugLog PIPELINE_LOG = PipelineDebugLog.shared();
+
+    private static final Metrics.Histogram PUBLISH_NANOS = Metrics.histogram("subscriptions.publish.nanos");
+    private static final Metrics.Counter   DELIVERIES    = Metrics.counter("subscriptions.deliveries");
+    private static final Metrics.Gauge     ACTIVE        = Metrics.gauge("subscriptions.active");
+
+    private static final Sub[] NONE = new Sub[0];
+
+    /** Receives the keys that changed; the Changes object is only valid during the call. */
+    @FunctionalInterface
+    public interface Listener {
+        void onChanged(Changes changes);
+    }
+
+    /** Handle returned by subscribe; close() stops delivery (pending coalesced keys are dropped). */
+    public interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /** Where and how notifications run. */
+    public static final class Delivery {
+        private static final Delivery INLINE = new Delivery(null);
+        private static volatile Delivery fx;
+
+        private final Executor executor;
+
+        private Delivery(Executor executor) {
+            this.executor = executor;
+        }
+
+        /** On the thread that applied the batch, once per apply. */
+        public static Delivery inline() {
+            return INLINE;
+        }
+
+        /** On the FX thread, coalesced: at most one runLater in flight for all FX subscribers. */
+        public static Delivery fx() {
+            Delivery d = fx;
+            if (d == null) {
+                synchronized (Delivery.class) {
+                    if (fx == null) fx = new Delivery(new Coalescer(Platform::runLater));
+                    d = fx;
+                }
+            }
+            return d;
+        }
+
+        /** On the given executor, coalesced per subscription. */
+        public static Delivery on(Executor executor) {
+            return new Delivery(Objects.requireNonNull(executor, "executor"));
+        }
+    }
+
+    /**
+     * Changed keys of one delivery, in first-seen order and without duplicates, plus the store
+     * version of the newest batch they came from and, per key, of the batch that last changed it
+     * (coalesced deliveries span several applies). Read it during the call only; it is reused.
+     */
+    public static final class Changes {
+        private String[] keys = new String[16];
+        private long[] versions = new long[16];
+        private int[] slots = new int[32];    // open addressing: index + 1 into keys, 0 = empty
+        private int size;
+        private long version;
+
+        public int size() { return size; }
+
+        public String key(int i) {
+            if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i);
+            return keys[i];
+        }
+
+        public long version() { return version; }
+
+        /** Store version of the apply that last changed key(i). */
+        public long version(int i) {
+            if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i);
+            return versions[i];
+        }
+
+        public boolean contains(String key) {
+            int mask = slots.length - 1;
+            for (int s = mix(key.hashCode()) & mask; slots[s] != 0; s = (s + 1) & mask) {
+                if (keys[slots[s] - 1].equals(key)) return true;
+            }
+            return false;
+        }
+
+        void add(String key, long v) {
+            version = v;
+            int mask = slots.length - 1;
+            int s = mix(key.hashCode()) & mask;
+            for (; slots[s] != 0; s = (s + 1) & mask) {
+                if (keys[slots[s] - 1].equals(key)) {
+                    versions[slots[s] - 1] = v;
+                    return;
+                }
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                versions = Arrays.copyOf(versions, size * 2);
+            }
+            versions[size] = v;
+            keys[size++] = key;
+            slots[s] = size;
+            if (size * 2 > slots.length) rehash();
+        }
+
+        void clear() {
+            if (size == 0) return;
+            Arrays.fill(keys, 0, size, null);
+            Arrays.fill(slots, 0);
+            size = 0;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int i = 0; i < size; i++) {
+                int s = mix(keys[i].hashCode()) & mask;
+                while (slots[s] != 0) s = (s + 1) & mask;
+                slots[s] = i + 1;
+            }
+        }
+
+        private static int mix(int h) {
+            return h ^ (h >>> 16);
+        }
+    }
+
+    // Copy-on-write routing tables, swapped under this
+    private volatile Map<String, Sub[]> exact = Map.of();
+    private volatile Sub[] prefixed = NONE;
+    private volatile int count;
+
+    // Publish state, guarded by this; routes caches key → subscribers and is cleared on (un)subscribe
+    private final Map<String, Sub[]> routes = new HashMap<>();
+    private Sub[] touched = new Sub[8];
+    private int touchedCount;
+    private int epoch;
+
+    /** Subscribe to one key. */
+    public Subscription subscribe(String key, Delivery delivery, Listener listener) {
+        return subscribe(List.of(Objects.requireNonNull(key, "key")), delivery, listener);
+    }
+
+    /** Subscribe to a set of keys; one callback covers all of them. */
+    public Subscription subscribe(Collection<String> keys, Delivery delivery, Listener listener) {
+        Set<String> set = new LinkedHashSet<>(Objects.requireNonNull(keys, "keys"));
+        set.remove(null);
+        Sub sub = new Sub(this, set, null, delivery, listener);
+        synchronized (this) {
+            Map<String, Sub[]> next = new HashMap<>(exact);
+            for (String k : set) next.put(k, append(next.getOrDefault(k, NONE), sub));
+            exact = next;
+            routes.clear();
+            count++;
+        }
+        ACTIVE.set(count);
+        return sub;
+    }
+
+    /** Subscribe to every key starting with prefix ("" = all keys). */
+    public Subscription subscribePrefix(String prefix, Delivery delivery, Listener listener) {
+        Sub sub = new Sub(this, Set.of(), Objects.requireNonNull(prefix, "prefix"), delivery, listener);
+        synchronized (this) {
+            prefixed = append(prefixed, sub);
+            routes.clear();
+            count++;
+        }
+        ACTIVE.set(count);
+        return sub;
+    }
+
+    /** True when nobody is subscribed (lets IndexStore skip the publish entirely). */
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    /** Route an applied batch (and its derived keys) to the subscriptions that select them. */
+    void publish(Map<String, IndexStore.DataPoint> incoming, Map<String, IndexStore.DataPoint> derived, long version) {
+        if (count == 0) return;
+        long t0 = System.nanoTime();
+        synchronized (this) {
+            if (++epoch == 0) epoch = 1;
+            Map<String, Sub[]> ex = exact;
+            Sub[] pre = prefixed;
+            route(incoming, ex, pre, version);
+            if (derived != null) route(derived, ex, pre, version);
+            for (int i = 0; i < touchedCount; i++) {
+                touched[i].flush();
+                touched[i] = null;
+            }
+            touchedCount = 0;
+        }
+        PUBLISH_NANOS.recordSince(t0);
+    }
+
+    private void route(Map<String, IndexStore.DataPoint> batch, Map<String, Sub[]> ex, Sub[] pre, long version) {
+        for (Map.Entry<String, IndexStore.DataPoint> e : batch.entrySet()) {
+            if (e.getValue() == null) continue;
+            String key = e.getKey();
+            Sub[] subs = routes.get(key);
+            if (subs == null) {
+                subs = match(key, ex, pre);
+                routes.put(key, subs);
+            }
+            for (Sub s : subs) offer(s, key, version);
+        }
+    }
+
+    /** Exact and prefix subscribers of key, computed once per key until subscriptions change. */
+    private static Sub[] match(String key, Map<String, Sub[]> ex, Sub[] pre) {
+        Sub[] out = ex.getOrDefault(key, NONE);
+        for (Sub s : pre) {
+            if (key.startsWith(s.prefix)) out = append(out, s);
+        }
+        return out;
+    }
+
+    private void offer(Sub s, String key, long version) {
+        s.add(key, version);
+        if (s.stamp != epoch) {
+            s.stamp = epoch;
+            if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+            touched[touchedCount++] = s;
+        }
+    }
+
+    private synchronized void remove(Sub sub) {
+        if (sub.prefix != null) {
+            Sub[] next = without(prefixed, sub);
+            if (next == prefixed) return;
+            prefixed = next;
+        } else {
+            Map<String, Sub[]> next = new HashMap<>(exact);
+            boolean found = false;
+            for (String k : sub.keys) {
+                Sub[] cur = next.get(k);
+                if (cur == null) continue;
+                Sub[] less = without(cur, sub);
+                if (less == cur) continue;
+                found = true;
+                if (less.length == 0) next.remove(k); else next.put(k, less);
+            }
+            if (!found) return;
+            exact = next;
+        }
+        routes.clear();
+        count--;
+        ACTIVE.set(count);
+    }
+
+    private static Sub[] append(Sub[] arr, Sub s) {
+        Sub[] out = Arrays.copyOf(arr, arr.length + 1);
+        out[arr.length] = s;
+        return out;
+    }
+
+    private static Sub[] without(Sub[] arr, Sub s) {
+        for (int i = 0; i < arr.length; i++) {
+            if (arr[i] != s) continue;
+            Sub[] out = new Sub[arr.length - 1];
+            System.arraycopy(arr, 0, out, 0, i);
+            System.arraycopy(arr, i + 1, out, i, arr.length - i - 1);
+            return out;
+        }
+        return arr;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Subscription state
+    // ------------------------------------------------------------------------------------------------
+
+    private static final class Sub implements Subscription {
+        private final KeySubscriptions owner;
+        private final Set<String> keys;
+        private final String prefix;
+        private final Executor executor;
+        private final Listener listener;
+        private final Runnable drain = this::drain;
+
+        int stamp;                          // publish epoch that last touched this (owner lock)
+        private Changes pending = new Changes();
+        private Changes delivering = new Changes();
+        private boolean scheduled;          // coalesced: a drain task is queued or running
+        private volatile boolean closed;
+
+        Sub(KeySubscriptions owner, Set<String> keys, String prefix, Delivery delivery, Listener listener) {
+            this.owner = owner;
+            this.keys = keys;
+            this.prefix = prefix;
+            this.executor = Objects.requireNonNull(delivery, "delivery").executor;
+            this.listener = Objects.requireNonNull(listener, "listener");
+        }
+
+        /** Called by publish (owner lock held). */
+        void add(String key, long version) {
+            if (executor == null) {
+                pending.add(key, version);
+                return;
+            }
+            synchronized (this) {
+                pending.add(key, version);
+            }
+        }
+
+        /** End of a batch: deliver now (inline) or make sure a drain is queued (coalesced). */
+        void flush() {
+            if (executor == null) {
+                try {
+                    if (!closed) deliver(pending);
+                } finally {
+                    pending.clear();
+                }
+                return;
+            }
+            synchronized (this) {
+                if (scheduled) return;
+                scheduled = true;
+            }
+            try {
+                executor.execute(drain);
+            } catch (Throwable t) {
+                synchronized (this) { scheduled = false; }
+                PIPELINE_LOG.error("[KeySubscriptions] delivery rejected", t);
+            }
+        }
+
+        /** Coalesced delivery: swap buffers, deliver, repeat until nothing arrived meanwhile. */
+        private void drain() {
+            while (true) {
+                synchronized (this) {
+                    if (closed || pending.size() == 0) {
+                        pending.clear();
+                        scheduled = false;
+                        return;
+                    }
+                    Changes t = pending;
+                    pending = delivering;
+                    delivering = t;
+                }
+                try {
+                    deliver(delivering);
+                } finally {
+                    delivering.clear();
+                }
+            }
+        }
+
+        private void deliver(Changes changes) {
+            DELIVERIES.inc();
+            try {
+                listener.onChanged(changes);
+            } catch (Throwable t) {
+                PIPELINE_LOG.error("[KeySubscriptions] listener failed", t);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            owner.remove(this);
+        }
+    }
+
+    /**
+     * Funnels drain tasks into one task on the target (e.g. one Platform.runLater for every FX
+     * subscriber that has changes), re-posted only after the previous one ran.
+     */
+    private static final class Coalescer implements Executor {
+        private final Executor target;
+        private final Runnable runAll = this::runAll;
+        private List<Runnable> queued = new ArrayList<>();
+        private List<Runnable> running = new ArrayList<>();
+        private boolean posted;
+
+        Coalescer(Executor target) {
+            this.target = target;
+        }
+
+        @Override
+        public void execute(Runnable r) {
+            boolean post;
+            synchronized (this) {
+                queued.add(r);
+                post = !posted;
+                posted = true;
+            }
+            if (!post) return;
+            try {
+                target.execute(runAll);
+            } catch (Throwable t) {
+                // Not posted after all: the next execute posts again and delivers what is queued
+                synchronized (this) {
+                    posted = false;
+                }
+                PIPELINE_LOG.error("[KeySubscriptions] coalesced post rejected", t);
+            }
+        }
+
+        private void runAll() {
+            List<Runnable> batch;
+            synchronized (this) {
+                batch = queued;
+                queued = running;
+                running = batch;
+                posted = false;
+            }
+            for (Runnable r : batch) {
+                try {
+                    r.run();
+                } catch (Throwable t) {
+                    PIPELINE_LOG.error("[KeySubscriptions] coalesced delivery failed", t);
+                }
+            }
+            batch.clear();
+        }
+    }
+}
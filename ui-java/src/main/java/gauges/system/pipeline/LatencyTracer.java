@@ -0,0 +1,231 @@
+package gauges.system.pipeline;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import gauges.system.Metrics;
+
+/**
+ * LatencyTracer
+ *
+ * Sensor-to-pixel latency tracing across the pipeline stages:
+ *   backend sample (DataPoint.ts) → HTTP receive (IndexFetcher) → IndexStore apply
+ *   → binding dispatch (FX pulse) → gauge redraw returned
+ *
+ * - Ingest side: markReceived() on the receiving thread, then IndexStore calls markApplied()
+ *   at the end of the same apply; the pair is kept as the stamp of that store version (a small
+ *   ring of recent versions).
+ * - UI side: each binding owns a Probe for its key and records dispatch/draw times against the
+ *   stamp of the version that carried the key (KeySubscriptions.Changes.version(i)); per-key
+ *   histograms go to the Metrics registry as latency.<key>.{sample_to_receive,apply_to_dispatch,
+ *   dispatch_to_draw,sample_to_pixel}.nanos.
+ * - Diagnostics: once per second the last sample-to-pixel value of every probe is published
+ *   as "diag.latency.<key>" (ms), plus "diag.latency.max", so any gauge can bind to it. They go
+ *   through the active ingest sink (setDiagnosticSink, the IngestPipeline) when there is one,
+ *   otherwise straight to the store, whose applies are serialized; they are typed "diag" so
+ *   recorder and freshness taps skip them.
+ *
+ * The sample stage is only meaningful when the backend sends per-value timestamps
+ * ({v, ts} objects, see latency.backend_ts); otherwise DataPoint.ts is the parse time.
+ */
+public final class LatencyTracer {
+
+    /** Prefix of the diagnostic channels published into the store. */
+    public static final String DIAG_PREFIX = "diag.latency.";
+
+    private static final Metrics.Histogram RECEIVE_TO_APPLY = Metrics.histogram("latency.receive_to_apply.nanos");
+
+    /** DataPoint.type of the diagnostic channels. */
+    public static final String DIAG_TYPE = "diag";
+
+    /** Times of one applied snapshot. */
+    private record Stamp(long version, long receivedNanos, long receivedWallMillis, long appliedNanos) { }
+
+    /** Recent apply stamps indexed by version; a coalesced FX pulse lags only a few applies. */
+    private static final int STAMP_RING = 256;
+    private static final AtomicReferenceArray<Stamp> STAMPS = new AtomicReferenceArray<>(STAMP_RING);
+
+    private static volatile boolean enabled = true;
+    private static volatile IndexStore store;
+    private static volatile Consumer<Map<String, IndexStore.DataPoint>> diagnosticSink;
+    private static volatile ScheduledExecutorService publisher;
+
+    /** Receive time of the snapshot being applied on this thread: [nanoTime, wall millis]. */
+    private static final ThreadLocal<long[]> PENDING = ThreadLocal.withInitial(() -> new long[2]);
+
+    private static final Map<String, Probe> PROBES = new ConcurrentHashMap<>();
+
+    /**
+     * Attach to the store and start the 1 Hz diagnostic publisher. Idempotent.
+     * With enabled=false every hook becomes a no-op.
+     */
+    public static synchronized void install(IndexStore target, boolean enable) {
+        enabled = enable;
+        store = target;
+        if (!enable || publisher != null) return;
+        publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "LatencyTracer-Publish");
+            t.setDaemon(true);
+            return t;
+        });
+        publisher.scheduleAtFixedRate(LatencyTracer::publish, 1, 1, TimeUnit.SECONDS);
+        System.out.println("[Latency] tracing enabled; diagnostic channels under " + DIAG_PREFIX + "*");
+    }
+
+    /** Where the diagnostic channels go (the active ingest sink); the store (serialized) when unset. */
+    public static void setDiagnosticSink(Consumer<Map<String, IndexStore.DataPoint>> sink) {
+        diagnosticSink = sink;
+    }
+
+    /** Stop the diagnostic publisher (probes keep recording). */
+    public static synchronized void stop() {
+        ScheduledExecutorService p = publisher;
+        publisher = null;
+        if (p != null) p.shutdownNow();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Ingest hooks
+    // ------------------------------------------------------------------------------------------------
+
+    /** Called by a transport right after a snapshot body has been received. */
+    public static void markReceived() {
+        if (!enabled) return;
+        long[] p = PENDING.get();
+        p[0] = System.nanoTime();
+        p[1] = System.currentTimeMillis();
+    }
+
+    /**
+     * Hand-off between pipeline threads: move this thread's pending receive stamp into
+     * into[0..1] (nanos, epoch millis) and clear it. False when nothing is pending.
+     */
+    static boolean takeReceived(long[] into) {
+        if (!enabled) return false;
+        long[] p = PENDING.get();
+        if (p[0] == 0L) return false;
+        into[0] = p[0];
+        into[1] = p[1];
+        p[0] = 0L;
+        return true;
+    }
+
+    /** Re-arm a receive stamp taken on another thread, before this thread applies the snapshot. */
+    static void markReceived(long nanos, long millis) {
+        if (!enabled || nanos == 0L) return;
+        long[] p = PENDING.get();
+        p[0] = nanos;
+        p[1] = millis;
+    }
+
+    /** Called by IndexStore after a snapshot has been applied (same thread as markReceived). */
+    static void markApplied(long version) {
+        if (!enabled) return;
+        long[] p = PENDING.get();
+        if (p[0] == 0L) return; // not a received snapshot (e.g. diagnostics publish)
+        long now = System.nanoTime();
+        RECEIVE_TO_APPLY.record(now - p[0]);
+        STAMPS.set((int) (version & (STAMP_RING - 1)), new Stamp(version, p[0], p[1], now));
+        p[0] = 0L;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Probes
+    // ------------------------------------------------------------------------------------------------
+
+    /** Probe for one bound key (shared by every binding of that key). */
+    public static Probe probe(String key) {
+        return PROBES.computeIfAbsent(key, Probe::new);
+    }
+
+    /** Per-key latency recorder, written from the FX thread. */
+    public static final class Probe {
+        private final String key;
+        private final boolean diagnostic;
+        private final Metrics.Histogram sampleToReceive;
+        private final Metrics.Histogram applyToDispatch;
+        private final Metrics.Histogram dispatchToDraw;
+        private final Metrics.Histogram sampleToPixel;
+        private volatile double lastMillis = Double.NaN;
+
+        private Probe(String key) {
+            this.key = key;
+            this.diagnostic = key.startsWith(DIAG_PREFIX);
+            String base = "latency." + key + ".";
+            this.sampleToReceive = Metrics.histogram(base + "sample_to_receive.nanos");
+            this.applyToDispatch = Metrics.histogram(base + "apply_to_dispatch.nanos");
+            this.dispatchToDraw = Metrics.histogram(base + "dispatch_to_draw.nanos");
+            this.sampleToPixel = Metrics.histogram(base + "sample_to_pixel.nanos");
+        }
+
+        /**
+         * Record one dispatch of the value applied at store version: sampleTs is the ts of the
+         * DataPoint dispatched (0 = none), dispatchNanos when the binding started invoking the
+         * gauge, drawnNanos when the setter (and its redraw) returned. Skipped when that version
+         * was not a received snapshot or has left the ring.
+         */
+        public void record(long version, long sampleTs, long dispatchNanos, long drawnNanos) {
+            if (!enabled || diagnostic || version <= 0L) return;
+            Stamp s = STAMPS.get((int) (version & (STAMP_RING - 1)));
+            if (s == null || s.version() != version) return;
+
+            long sampleNanos = 0L;
+            if (sampleTs > 0) {
+                long ms = s.receivedWallMillis() - sampleTs;
+                if (ms >= 0 && ms < 3_600_000L) {
+                    sampleNanos = ms * 1_000_000L;
+                    sampleToReceive.record(sampleNanos);
+                }
+            }
+            applyToDispatch.record(dispatchNanos - s.appliedNanos());
+            dispatchToDraw.record(drawnNanos - dispatchNanos);
+            long total = sampleNanos + (drawnNanos - s.receivedNanos());
+            sampleToPixel.record(total);
+            lastMillis = total / 1e6;
+        }
+
+        public double lastMillis() {
+            return lastMillis;
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Diagnostics
+    // ------------------------------------------------------------------------------------------------
+
+    private static void publish() {
+        IndexStore st = store;
+        if (st == null || PROBES.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        Map<String, IndexStore.DataPoint> out = new LinkedHashMap<>();
+        double max = Double.NaN;
+        for (Probe p : PROBES.values()) {
+            if (p.diagnostic) continue;
+            double ms = p.lastMillis();
+            if (Double.isNaN(ms)) continue;
+            out.put(DIAG_PREFIX + p.key, new IndexStore.DataPoint(ms, now, DIAG_TYPE));
+            if (Double.isNaN(max) || ms > max) max = ms;
+        }
+        if (out.isEmpty()) return;
+        out.put(DIAG_PREFIX + "max", new IndexStore.DataPoint(max, now, DIAG_TYPE));
+        Consumer<Map<String, IndexStore.DataPoint>> sink = diagnosticSink;
+        try {
+            if (sink != null) sink.accept(out);
+            else st.applySnapshot(out);
+        } catch (Throwable t) {
+            System.out.println("[Latency] diagnostic publish failed: " + t);
+        }
+    }
+
+    private LatencyTracer() {}
+}
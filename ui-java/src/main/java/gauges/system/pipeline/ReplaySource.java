@@ -0,0 +1,476 @@
+package gauges.system.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import gauges.system.Metrics;
+
+/**
+ * ReplaySource
+ *
+ * Plays SessionRecorder files (*.grec) back into the store, in place of a live transport.
+ * - input   : one recording or a directory of them (oldest first); files are memory-mapped and
+ *             indexed once (chunk offsets, base timestamps, key tables), so seek() is a lookup
+ * - pacing  : speed 1 keeps the recorded timing, > 1 plays faster, <= 0 plays as fast as the
+ *             consumer accepts (a throughput benchmark for store → bindings → render);
+ *             gaps longer than GAP_CAP_MS (between drives) are shortened
+ * - batches : samples sharing a timestamp are delivered together, in time order
+ *
+ * Delivered DataPoints carry the wall-clock time of delivery, so freshness, history and latency
+ * tracing treat a replay like a live feed. A pass ends with a "[Replay]" throughput line.
+ */
+public final class ReplaySource implements SnapshotSource {
+
+    private static final long GAP_CAP_MS = 2_000L;
+    private static final long NO_SEEK = Long.MIN_VALUE;
+
+    private static final PipelineDebugLog PIPELINE_LOG = PipelineDebugLog.shared();
+
+    private static final Metrics.Counter SAMPLES  = Metrics.counter("ingest.replay.samples");
+    private static final Metrics.Counter BATCHES  = Metrics.counter("ingest.replay.batches");
+    private static final Metrics.Gauge   POSITION = Metrics.gauge("ingest.replay.position.seconds");
+    private static final Metrics.Gauge   LAG      = Metrics.gauge("ingest.replay.lag.ms");
+
+    private final Path path;
+    private final double speed;
+    private final boolean loop;
+    private final Consumer<Map<String, IndexStore.DataPoint>> sink;
+
+    // Index (built by the worker before the first pass)
+    private final List<Recording> recordings = new ArrayList<>();
+    private final List<ChunkRef> chunks = new ArrayList<>();
+    private long firstTs;
+
+    // Decode scratch (worker thread only)
+    private final Inflater inflater = new Inflater();
+    private byte[] raw = new byte[64 * 1024];
+    private int pos;
+    private int[] keyIdx = new int[4096];
+    private long[] ts = new long[4096];
+    private double[] v = new double[4096];
+    private long[] order = new long[4096];
+    private final Map<String, IndexStore.DataPoint> batch = new LinkedHashMap<>();
+
+    // Pacing
+    private long originTs;
+    private long originNanos;
+    private long prevTs;
+
+    private volatile long seekRequest;
+    private volatile boolean running;
+    private volatile Thread worker;
+
+    /**
+     * @param path  a .grec file or a directory of them
+     * @param speed playback rate (1 = recorded timing); <= 0 plays as fast as possible
+     * @param loop  start over after the last chunk
+     * @param sink  receives each batch (reused map: consume it during the call)
+     */
+    public ReplaySource(Path path, double speed, boolean loop, Consumer<Map<String, IndexStore.DataPoint>> sink) {
+        this.path = Objects.requireNonNull(path, "path");
+        this.speed = speed;
+        this.loop = loop;
+        this.sink = Objects.requireNonNull(sink, "sink");
+        this.seekRequest = NO_SEEK;
+    }
+
+    /** Parse an ingest.replay.speed value: a factor ("1", "4", "0.5") or "max". */
+    public static double parseSpeed(String s) {
+        if (s == null || s.isBlank() || "max".equalsIgnoreCase(s.trim())) return 0.0;
+        try {
+            return Double.parseDouble(s.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("[Replay] bad speed '" + s + "', using 1x");
+            return 1.0;
+        }
+    }
+
+    public String describe() {
+        return "replay:" + path + " @" + (speed > 0 ? speed + "x" : "max");
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        Thread t = new Thread(this::run, "ReplaySource");
+        t.setDaemon(true);
+        worker = t;
+        t.start();
+        PIPELINE_LOG.info("[ReplaySource] start " + describe());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        PIPELINE_LOG.info("[ReplaySource] stop " + describe());
+        Thread t = worker;
+        worker = null;
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join(1000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Jump to the given offset (seconds from the start of the recording); takes effect at once. */
+    public void seek(double seconds) {
+        seekRequest = (long) (Math.max(0.0, seconds) * 1000.0);
+        Thread t = worker;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    /** Wait for a non-looping replay to finish; true if it did within the timeout. */
+    public boolean awaitCompletion(long timeoutMillis) throws InterruptedException {
+        Thread t = worker;
+        if (t == null) return true;
+        t.join(Math.max(1L, timeoutMillis));
+        return !t.isAlive();
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Playback
+    // ------------------------------------------------------------------------------------------------
+
+    private void run() {
+        try {
+            index();
+        } catch (IOException e) {
+            System.err.println("[Replay] cannot open " + path + ": " + e);
+            running = false;
+            return;
+        }
+        if (chunks.isEmpty()) {
+            System.err.println("[Replay] no recorded chunks under " + path);
+            running = false;
+            return;
+        }
+        try {
+            do {
+                playPass();
+            } while (running && loop);
+        } finally {
+            running = false;
+            inflater.end();
+        }
+    }
+
+    private void playPass() {
+        long samples0 = SAMPLES.get(), batches0 = BATCHES.get();
+        long t0 = System.nanoTime();
+        originTs = Long.MIN_VALUE;
+        prevTs = Long.MIN_VALUE;
+
+        int ci = 0;
+        long fromTs = Long.MIN_VALUE;
+        while (running && ci < chunks.size()) {
+            long seek = seekRequest;
+            if (seek != NO_SEEK) {
+                seekRequest = NO_SEEK;
+                fromTs = firstTs + seek;
+                ci = chunkAt(fromTs);
+                originTs = Long.MIN_VALUE;
+                prevTs = Long.MIN_VALUE;
+            }
+            try {
+                if (!playChunk(chunks.get(ci), fromTs)) continue; // seek or stop mid-chunk
+            } catch (DataFormatException | RuntimeException e) {
+                System.err.println("[Replay] skipping damaged chunk in " + chunks.get(ci).rec.file.getFileName() + ": " + e);
+            }
+            fromTs = Long.MIN_VALUE;
+            ci++;
+        }
+
+        double secs = (System.nanoTime() - t0) / 1e9;
+        long samples = SAMPLES.get() - samples0, batches = BATCHES.get() - batches0;
+        System.out.println(String.format(Locale.ROOT,
+                "[Replay] pass done: %d samples in %d batches over %.2fs (%.0f samples/s, %.0f batches/s)",
+                samples, batches, secs, samples / Math.max(1e-9, secs), batches / Math.max(1e-9, secs)));
+    }
+
+    /** Play one chunk from fromTs on; false if a seek or stop interrupted it. */
+    private boolean playChunk(ChunkRef c, long fromTs) throws DataFormatException {
+        int n = decode(c);
+        String[] names = c.rec.names;
+        int i = 0;
+        while (i < n) {
+            long t = ts[(int) order[i]];
+            if (t < fromTs) {
+                i++;
+                continue;
+            }
+            if (!waitUntil(t)) return false;
+
+            long now = System.currentTimeMillis();
+            while (i < n) {
+                int s = (int) order[i];
+                if (ts[s] != t) break;
+                String key = keyIdx[s] < names.length ? names[keyIdx[s]] : null;
+                if (key != null) batch.put(key, new IndexStore.DataPoint(v[s], now));
+                i++;
+            }
+            if (batch.isEmpty()) continue;
+            LatencyTracer.markReceived();
+            SAMPLES.add(batch.size());
+            BATCHES.inc();
+            POSITION.set((t - firstTs) / 1000.0);
+            try {
+                sink.accept(batch);
+            } catch (Throwable e) {
+                PIPELINE_LOG.error("[ReplaySource] sink failed", e);
+            }
+            batch.clear();
+        }
+        return true;
+    }
+
+    /** Sleep until recorded time t is due at the configured speed; false on seek or stop. */
+    private boolean waitUntil(long t) {
+        if (!running || seekRequest != NO_SEEK) return false;
+        if (speed <= 0) return true;
+        if (originTs == Long.MIN_VALUE) {
+            originTs = t;
+            originNanos = System.nanoTime();
+        } else if (t - prevTs > GAP_CAP_MS) {
+            originTs += (t - prevTs) - GAP_CAP_MS;
+        }
+        prevTs = Math.max(prevTs, t);
+        long due = originNanos + (long) ((t - originTs) * 1_000_000.0 / speed);
+        long wait;
+        while ((wait = due - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (!running || seekRequest != NO_SEEK) return false;
+        }
+        LAG.set(-wait / 1e6);
+        return true;
+    }
+
+    /** Index of the last chunk starting at or before t (0 if t precedes them all). */
+    private int chunkAt(long t) {
+        int found = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            if (chunks.get(i).baseTs > t) break;
+            found = i;
+        }
+        return found;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Decoding (format: see SessionRecorder)
+    // ------------------------------------------------------------------------------------------------
+
+    /** Inflate and decode a chunk into ts/keyIdx/v; order[] lists the samples by time. */
+    private int decode(ChunkRef c) throws DataFormatException {
+        int fill = inflate(c, c.rawLen);
+        pos = 0;
+        long newKeys = varint(fill);
+        for (long k = 0; k < newKeys; k++) {
+            varint(fill);
+            int len = (int) varint(fill);
+            pos += len;
+        }
+        pos += 8; // baseTs (kept in the index)
+        long columns = varint(fill);
+        int n = 0;
+        for (long col = 0; col < columns; col++) {
+            int id = (int) varint(fill);
+            int count = (int) varint(fill);
+            ensureSamples(n + count);
+            long prev = c.baseTs;
+            for (int k = 0; k < count; k++) {
+                long z = varint(fill);
+                prev += (z >>> 1) ^ -(z & 1L);
+                ts[n + k] = prev;
+                keyIdx[n + k] = id;
+            }
+            long prevBits = 0L;
+            for (int k = 0; k < count; k++) {
+                long bits = varint(fill) ^ prevBits;
+                v[n + k] = Double.longBitsToDouble(bits);
+                prevBits = bits;
+            }
+            n += count;
+        }
+        // Sort by (time, position) without boxing: delta from the chunk base in the high half
+        for (int i = 0; i < n; i++) {
+            long d = Math.max(0L, Math.min(Integer.MAX_VALUE, ts[i] - c.baseTs));
+            order[i] = (d << 32) | i;
+        }
+        Arrays.sort(order, 0, n);
+        for (int i = 0; i < n; i++) order[i] &= 0xFFFF_FFFFL;
+        return n;
+    }
+
+    private int inflate(ChunkRef c, int want) throws DataFormatException {
+        if (raw.length < want) raw = new byte[Math.max(want, raw.length * 2)];
+        inflater.reset();
+        inflater.setInput(c.rec.map.slice(c.offset + 12, c.zLen));
+        int fill = 0;
+        while (fill < want && !inflater.finished()) {
+            int got = inflater.inflate(raw, fill, want - fill);
+            if (got == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+            fill += got;
+        }
+        return fill;
+    }
+
+    private long varint(int limit) {
+        long value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos >= limit) throw new IllegalStateException("truncated chunk");
+            byte b = raw[pos++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalStateException("bad varint");
+    }
+
+    private void ensureSamples(int n) {
+        if (n <= ts.length) return;
+        int cap = Math.max(n, ts.length * 2);
+        keyIdx = Arrays.copyOf(keyIdx, cap);
+        ts = Arrays.copyOf(ts, cap);
+        v = Arrays.copyOf(v, cap);
+        order = Arrays.copyOf(order, cap);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Index
+    // ------------------------------------------------------------------------------------------------
+
+    private void index() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (Files.isDirectory(path)) {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(path, "*" + SessionRecorder.SUFFIX)) {
+                for (Path f : ds) files.add(f);
+            }
+            files.sort((a, b) -> {
+                try {
+                    int c = Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+                    return c != 0 ? c : a.compareTo(b);
+                } catch (IOException e) {
+                    return a.compareTo(b);
+                }
+            });
+        } else {
+            files.add(path);
+        }
+
+        long t0 = System.nanoTime();
+        for (Path f : files) indexFile(f);
+        if (!chunks.isEmpty()) firstTs = chunks.get(0).baseTs;
+        System.out.println(String.format(Locale.ROOT, "[Replay] indexed %d chunks in %d file(s) in %.1fms",
+                chunks.size(), recordings.size(), (System.nanoTime() - t0) / 1e6));
+    }
+
+    private void indexFile(Path f) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel ch = FileChannel.open(f, StandardOpenOption.READ)) {
+            map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        int size = map.capacity();
+        if (size < 8 || map.getInt(0) != SessionRecorder.FILE_MAGIC || map.getInt(4) != SessionRecorder.VERSION) {
+            System.err.println("[Replay] " + f.getFileName() + " is not a version-" + SessionRecorder.VERSION + " recording; skipped");
+            return;
+        }
+        Recording rec = new Recording(f, map);
+        int off = 8;
+        while (off + 12 <= size) {
+            if (map.getInt(off) != SessionRecorder.CHUNK_MAGIC) {
+                System.err.println("[Replay] " + f.getFileName() + ": bad chunk header at " + off + ", ignoring the rest");
+                break;
+            }
+            int rawLen = map.getInt(off + 4);
+            int zLen = map.getInt(off + 8);
+            if (rawLen < 0 || zLen < 0 || off + 12L + zLen > size) break; // truncated tail (recorder killed mid-write)
+            ChunkRef c = new ChunkRef(rec, off, rawLen, zLen);
+            try {
+                // Key table and base timestamp sit at the front: inflate only that much if it suffices
+                int fill = inflate(c, Math.min(rawLen, 4096));
+                if (!readHeader(c, fill)) readHeader(c, inflate(c, rawLen));
+                chunks.add(c);
+            } catch (DataFormatException | RuntimeException e) {
+                System.err.println("[Replay] " + f.getFileName() + ": damaged chunk at " + off + " skipped: " + e);
+            }
+            off += 12 + zLen;
+        }
+        recordings.add(rec);
+    }
+
+    /** Read newly defined keys and the base timestamp from raw[0..fill); false if fill is too short. */
+    private boolean readHeader(ChunkRef c, int fill) {
+        pos = 0;
+        try {
+            long newKeys = varint(fill);
+            for (long k = 0; k < newKeys; k++) {
+                int id = (int) varint(fill);
+                int len = (int) varint(fill);
+                if (pos + len > fill) return false;
+                c.rec.define(id, new String(raw, pos, len, StandardCharsets.UTF_8));
+                pos += len;
+            }
+            if (pos + 8 > fill) return false;
+            long base = 0L;
+            for (int b = 0; b < 8; b++) base |= (raw[pos++] & 0xFFL) << (8 * b);
+            c.baseTs = base;
+            return true;
+        } catch (IllegalStateException truncated) {
+            return false;
+        }
+    }
+
+    /** One mapped recording and its key table (ids are per file). */
+    private static final class Recording {
+        final Path file;
+        final MappedByteBuffer map;
+        String[] names = new String[64];
+
+        Recording(Path file, MappedByteBuffer map) {
+            this.file = file;
+            this.map = map;
+        }
+
+        void define(int id, String name) {
+            if (id >= names.length) names = Arrays.copyOf(names, Math.max(id + 1, names.length * 2));
+            names[id] = name;
+        }
+    }
+
+    private static final class ChunkRef {
+        final Recording rec;
+        final int offset;
+        final int rawLen;
+        final int zLen;
+        long baseTs;
+
+        ChunkRef(Recording rec, int offset, int rawLen, int zLen) {
+            this.rec = rec;
+            this.offset = offset;
+            this.rawLen = rawLen;
+            this.zLen = zLen;
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package gauges.system.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import gauges.system.Metrics;
+
+/**
+ * SessionRecorder
+ *
+ * Records every applied sample to disk for post-drive analysis (an IndexStore.Tap).
+ * - ingest side : samples are appended to per-key primitive columns of the current chunk;
+ *                 every chunkMillis the chunk is handed to a bounded queue (dropped and counted
+ *                 if the writer falls behind, never blocking ingest); the writer's idle poll
+ *                 hands off a chunk that is due when no apply comes along to do it
+ * - writer side : one background thread encodes a chunk column by column (zigzag-varint
+ *                 timestamp deltas, XOR-with-previous value bits as varints), deflates it and
+ *                 appends it through a FileChannel
+ * - rolling     : a new file after maxFileBytes; oldest files deleted beyond maxTotalBytes
+ *
+ * File format (*.grec, each file self-contained):
+ *   "GREC" u32 version
+ *   chunk*: "CHNK" u32 rawLength u32 deflatedLength deflated payload
+ *   payload: varint newKeys { varint id, varint len, utf8 } ; i64 baseTs ; varint columns
+ *            { varint id, varint count, zigzag-varint ts deltas (first from baseTs),
+ *              varint (valueBits XOR previousBits, previous starts at 0) }
+ * Chunk and accumulator buffers are pooled, so steady-state recording allocates nothing.
+ */
+public final class SessionRecorder implements IndexStore.Tap {
+
+    static final int FILE_MAGIC = 0x43455247;   // "GREC" little-endian
+    static final int CHUNK_MAGIC = 0x4B4E4843;  // "CHNK" little-endian
+    static final int VERSION = 1;
+    static final String SUFFIX = ".grec";
+
+    private static final int POOLED_CHUNKS = 4;
+    private static final int MAX_CHUNK_SAMPLES = 1 << 16;
+
+    private static final DateTimeFormatter NAME_TS = DateTimeFormatter.ofPattern("uuuuMMdd-HHmmss");
+
+    private static final Metrics.Counter   SAMPLES   = Metrics.counter("recorder.samples");
+    private static final Metrics.Counter   CHUNKS    = Metrics.counter("recorder.chunks");
+    private static final Metrics.Counter   DROPPED   = Metrics.counter("recorder.dropped.chunks");
+    private static final Metrics.Counter   DROPPED_SAMPLES = Metrics.counter("recorder.dropped.samples");
+    private static final Metrics.Counter   WRITTEN   = Metrics.counter("recorder.bytes.written");
+    private static final Metrics.Histogram ENCODE    = Metrics.histogram("recorder.encode.nanos");
+    private static final Metrics.Gauge     QUEUE     = Metrics.gauge("recorder.queue.depth");
+
+    private final Path dir;
+    private final long chunkNanos;
+    private final long maxFileBytes;
+    private final long maxTotalBytes;
+
+    // Ingest side (guarded by this)
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private Chunk current;
+    private long chunkStart;
+
+    private final BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(POOLED_CHUNKS);
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(POOLED_CHUNKS);
+
+    // Writer side (writer thread only)
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] raw = new byte[64 * 1024];
+    private byte[] packed = new byte[64 * 1024];
+    private final ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+    private final BitSet defined = new BitSet();
+    private FileChannel out;
+    private Path outPath;
+    private long outBytes;
+    private int fileSeq;
+
+    private volatile boolean running;
+    private volatile Thread writer;
+
+    public SessionRecorder(Path dir, long chunkMillis, long maxFileBytes, long maxTotalBytes) {
+        this.dir = Objects.requireNonNull(dir, "dir");
+        this.chunkNanos = Math.max(50L, chunkMillis) * 1_000_000L;
+        this.maxFileBytes = Math.max(64 * 1024L, maxFileBytes);
+        this.maxTotalBytes = Math.max(this.maxFileBytes, maxTotalBytes);
+        for (int i = 0; i < POOLED_CHUNKS; i++) free.add(new Chunk());
+    }
+
+    /** Create a recorder, start its writer and tap it into the store. */
+    public static SessionRecorder install(IndexStore store, Path dir, long chunkMillis, long maxFileBytes,
+                                          long maxTotalBytes) {
+        SessionRecorder r = new SessionRecorder(dir, chunkMillis, maxFileBytes, maxTotalBytes);
+        r.start();
+        store.addTap(r);
+        return r;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        Thread t = new Thread(this::writeLoop, "SessionRecorder-Writer");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        writer = t;
+        t.start();
+        System.out.println("[Recorder] recording to " + dir.toAbsolutePath() + " (file cap "
+                + maxFileBytes / (1024 * 1024) + " MB, total cap " + maxTotalBytes / (1024 * 1024) + " MB)");
+    }
+
+    /** Flush the open chunk, let the writer drain and close the file. */
+    public void stop() {
+        synchronized (this) {
+            if (!running) return;
+            handOff();
+            running = false;
+        }
+        // No interrupt: it would close the FileChannel mid-write; the writer polls and sees !running
+        Thread t = writer;
+        writer = null;
+        if (t != null) {
+            try {
+                t.join(2000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Ingest side
+    // ------------------------------------------------------------------------------------------------
+
+    @Override
+    public synchronized void onApply(Map<String, IndexStore.DataPoint> applied, long version) {
+        if (!running) return;
+        long now = System.nanoTime();
+        if (current == null) {
+            current = free.poll();
+            if (current == null) {
+                // Writer far behind: skip until a chunk frees up
+                DROPPED_SAMPLES.add(recordable(applied));
+                return;
+            }
+            chunkStart = now;
+        }
+        int recorded = 0;
+        for (Map.Entry<String, IndexStore.DataPoint> e : applied.entrySet()) {
+            IndexStore.DataPoint dp = e.getValue();
+            if (!recordable(dp)) continue;
+            current.add(idOf(e.getKey()), dp.ts, dp.v);
+            recorded++;
+        }
+        SAMPLES.add(recorded);
+        if (now - chunkStart >= chunkNanos || current.samples >= MAX_CHUNK_SAMPLES) {
+            handOff();
+        }
+    }
+
+    /** Hand off the open chunk once chunkMillis have passed (writer thread, while ingest is quiet). */
+    private synchronized void flushIfDue() {
+        if (current != null && System.nanoTime() - chunkStart >= chunkNanos) handOff();
+    }
+
+    private static boolean recordable(IndexStore.DataPoint dp) {
+        return dp != null && !LatencyTracer.DIAG_TYPE.equals(dp.type);   // not our own diagnostics
+    }
+
+    private static int recordable(Map<String, IndexStore.DataPoint> applied) {
+        int n = 0;
+        for (IndexStore.DataPoint dp : applied.values()) if (recordable(dp)) n++;
+        return n;
+    }
+
+    private int idOf(String key) {
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = names.size();
+            ids.put(key, id);
+            names.add(key);
+        }
+        return id;
+    }
+
+    private synchronized String nameOf(int id) {
+        return names.get(id);
+    }
+
+    private void handOff() {
+        Chunk c = current;
+        current = null;
+        if (c == null || c.samples == 0) {
+            if (c != null) free.offer(c);
+            return;
+        }
+        if (!full.offer(c)) {
+            DROPPED.inc();
+            DROPPED_SAMPLES.add(c.samples);
+            c.clear();
+            free.offer(c);
+        }
+        QUEUE.set(full.size());
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Writer side
+    // ------------------------------------------------------------------------------------------------
+
+    private void writeLoop() {
+        try {
+            while (running || !full.isEmpty()) {
+                if (running) flushIfDue();
+                Chunk c;
+                try {
+                    c = full.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+                if (c == null) continue;
+                try {
+                    write(c);
+                } catch (IOException e) {
+                    System.err.println("[Recorder] write failed: " + e);
+                    closeFile();
+                } finally {
+                    c.clear();
+                    free.offer(c);
+                    QUEUE.set(full.size());
+                }
+            }
+        } finally {
+            closeFile();
+        }
+    }
+
+    private void write(Chunk c) throws IOException {
+        long t0 = System.nanoTime();
+        if (out == null || outBytes >= maxFileBytes) rollFile();
+
+        // Payload
+        int p = 0;
+        int newKeys = 0;
+        for (int i = 0; i < c.active.size(); i++) if (!defined.get(c.active.get(i).id)) newKeys++;
+        p = putVarint(p, newKeys);
+        for (int i = 0; i < c.active.size(); i++) {
+            int id = c.active.get(i).id;
+            if (defined.get(id)) continue;
+            byte[] name = nameOf(id).getBytes(StandardCharsets.UTF_8);
+            p = putVarint(p, id);
+            p = putVarint(p, name.length);
+            ensureRaw(p + name.length);
+            System.arraycopy(name, 0, raw, p, name.length);
+            p += name.length;
+            defined.set(id);
+        }
+        long baseTs = c.minTs;
+        ensureRaw(p + 8);
+        for (int b = 0; b < 8; b++) raw[p++] = (byte) (baseTs >>> (8 * b));
+        p = putVarint(p, c.active.size());
+        for (int i = 0; i < c.active.size(); i++) {
+            Column col = c.active.get(i);
+            p = putVarint(p, col.id);
+            p = putVarint(p, col.n);
+            long prevTs = baseTs;
+            for (int k = 0; k < col.n; k++) {
+                long d = col.ts[k] - prevTs;
+                p = putVarint(p, (d << 1) ^ (d >> 63));
+                prevTs = col.ts[k];
+            }
+            long prevBits = 0L;
+            for (int k = 0; k < col.n; k++) {
+                long bits = Double.doubleToRawLongBits(col.v[k]);
+                p = putVarint(p, bits ^ prevBits);
+                prevBits = bits;
+            }
+        }
+
+        // Deflate
+        deflater.reset();
+        deflater.setInput(raw, 0, p);
+        deflater.finish();
+        int z = 0;
+        while (!deflater.finished()) {
+            if (z == packed.length) packed = Arrays.copyOf(packed, packed.length * 2);
+            z += deflater.deflate(packed, z, packed.length - z);
+        }
+
+        header.clear();
+        header.putInt(CHUNK_MAGIC).putInt(p).putInt(z).flip();
+        writeFully(header);
+        writeFully(ByteBuffer.wrap(packed, 0, z));
+        outBytes += 12 + z;
+        WRITTEN.add(12 + z);
+        CHUNKS.inc();
+        ENCODE.recordSince(t0);
+    }
+
+    private void rollFile() throws IOException {
+        closeFile();
+        Files.createDirectories(dir);
+        String name = "session-" + NAME_TS.format(LocalDateTime.now()) + "-" + (fileSeq++) + SUFFIX;
+        outPath = dir.resolve(name);
+        out = FileChannel.open(outPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        defined.clear();
+        header.clear();
+        header.putInt(FILE_MAGIC).putInt(VERSION).flip();
+        writeFully(header);
+        outBytes = 8;
+        enforceTotalCap();
+    }
+
+    /** Delete the oldest finished recordings until the directory fits maxTotalBytes. */
+    private void enforceTotalCap() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path f : ds) files.add(f);
+        } catch (IOException e) {
+            return;
+        }
+        files.sort((a, b) -> {
+            try {
+                return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+            } catch (IOException e) {
+                return a.compareTo(b);
+            }
+        });
+        long total = 0;
+        for (Path f : files) {
+            try { total += Files.size(f); } catch (IOException ignore) { }
+        }
+        for (Path f : files) {
+            if (total + maxFileBytes <= maxTotalBytes || f.equals(outPath)) break;
+            try {
+                long size = Files.size(f);
+                Files.delete(f);
+                total -= size;
+                System.out.println("[Recorder] deleted old recording " + f.getFileName());
+            } catch (IOException ignore) { }
+        }
+    }
+
+    private void closeFile() {
+        FileChannel ch = out;
+        out = null;
+        if (ch == null) return;
+        try {
+            ch.force(false);
+            ch.close();
+        } catch (IOException ignore) { }
+    }
+
+    private void writeFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) out.write(buf);
+    }
+
+    private int putVarint(int p, long value) {
+        ensureRaw(p + 10);
+        while ((value & ~0x7FL) != 0L) {
+            raw[p++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        raw[p++] = (byte) value;
+        return p;
+    }
+
+    private void ensureRaw(int capacity) {
+        if (capacity > raw.length) raw = Arrays.copyOf(raw, Math.max(capacity, raw.length * 2));
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Chunk accumulation
+    // ------------------------------------------------------------------------------------------------
+
+    /** One chunk's samples as per-key columns; reused after the writer is done with it. */
+    private static final class Chunk {
+        private Column[] byId = new Column[64];
+        private final List<Column> active = new ArrayList<>();
+        private int samples;
+        private long minTs = Long.MAX_VALUE;
+
+        void add(int id, long ts, double v) {
+            if (id >= byId.length) byId = Arrays.copyOf(byId, Math.max(id + 1, byId.length * 2));
+            Column col = byId[id];
+            if (col == null) col = byId[id] = new Column(id);
+            if (col.n == 0) active.add(col);
+            col.add(ts, v);
+            samples++;
+            if (ts < minTs) minTs = ts;
+        }
+
+        void clear() {
+            for (int i = 0; i < active.size(); i++) active.get(i).n = 0;
+            active.clear();
+            samples = 0;
+            minTs = Long.MAX_VALUE;
+        }
+    }
+
+    private static final class Column {
+        final int id;
+        long[] ts = new long[64];
+        double[] v = new double[64];
+        int n;
+
+        Column(int id) {
+            this.id = id;
+        }
+
+        void add(long t, double value) {
+            if (n == ts.length) {
+                ts = Arrays.copyOf(ts, n * 2);
+                v = Arrays.copyOf(v, n * 2);
+            }
+            ts[n] = t;
+            v[n] = value;
+            n++;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package gauges.system.pipeline;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import gauges.system.Metrics;
+
+/**
+ * SharedMemorySource
+ *
+ * Reads channel values straight out of a memory-mapped file (e.g. /dev/shm/gauges.ring) that the
+ * backend writes in place (backend-py/shm_writer.py). No serialization and no syscall per update.
+ *
+ * Layout (little-endian, 64-byte header followed by slot_count 64-byte slots):
+ *   header  0: magic u32 "GSHM"   4: layout u32 (2)   8: slot_count u32   12: slot_size u32 (64)
+ *          16: global_seq u64 (bumped after every slot write)   24: instance u64 (writer start)
+ *   slot    0: seq u64 (seqlock: odd while being written)   8: value f64   16: ts_millis i64 (0 = no sample time)
+ *          24: key_len u8   25: key bytes (UTF-8, up to 35)   60: crc32 u32 of bytes 8 .. 25+key_len
+ *
+ * The reader thread watches global_seq (short spin, then parks for idleMicros) and only visits
+ * slots whose seq moved; a slot is accepted when its seq is even and unchanged across the read
+ * and the copied value, ts and key match the slot's CRC32. The writer is Python, whose stores
+ * carry no release ordering, so on a weakly ordered CPU (the Pi's ARM) an even seq alone does
+ * not prove the fields are visible; the checksum catches what the seqlock cannot.
+ * Changed slots go to the consumer as one batch, in slot order.
+ */
+public final class SharedMemorySource implements SnapshotSource {
+
+    static final int MAGIC = 0x4D485347; // "GSHM" read little-endian
+    static final int LAYOUT = 2;
+    static final int HEADER_SIZE = 64;
+    static final int SLOT_SIZE = 64;
+    static final int KEY_MAX = SLOT_SIZE - 29;
+
+    private static final int OFF_SLOT_COUNT = 8;
+    private static final int OFF_SLOT_SIZE = 12;
+    private static final int OFF_GLOBAL_SEQ = 16;
+    private static final int OFF_INSTANCE = 24;
+
+    private static final int SLOT_SEQ = 0;
+    private static final int SLOT_VALUE = 8;
+    private static final int SLOT_TS = 16;
+    private static final int SLOT_KEY_LEN = 24;
+    private static final int SLOT_KEY = 25;
+    private static final int SLOT_CRC = 60;
+
+    private static final int SPINS = 64;
+
+    private static final VarHandle LONG =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle COPY_LONG =
+            MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final PipelineDebugLog PIPELINE_LOG = PipelineDebugLog.shared();
+
+    private static final Metrics.Counter SHM_UPDATES = Metrics.counter("ingest.shm.updates");
+    private static final Metrics.Counter SHM_RETRIES = Metrics.counter("ingest.shm.retries");
+    private static final Metrics.Counter SHM_CHECKSUM = Metrics.counter("ingest.shm.checksum_mismatch");
+
+    private final Path file;
+    private final long idleNanos;
+    private final Consumer<Map<String, IndexStore.DataPoint>> sink;
+
+    private final Map<String, IndexStore.DataPoint> batch = new LinkedHashMap<>();
+    private final byte[] slotCopy = new byte[SLOT_CRC - SLOT_VALUE];   // value, ts, key_len, key
+    private final CRC32 crc = new CRC32();
+
+    private MappedByteBuffer map;
+    private int slotCount;
+    private long instance;
+    private long lastGlobal;
+    private long[] lastSeq = new long[0];
+    private String[] keys = new String[0];
+
+    private volatile boolean running;
+    private volatile boolean remap;
+    private volatile Thread worker;
+
+    public SharedMemorySource(Path file, long idleMicros, Consumer<Map<String, IndexStore.DataPoint>> sink) {
+        this.file = Objects.requireNonNull(file, "file");
+        this.idleNanos = Math.max(1L, idleMicros) * 1_000L;
+        this.sink = Objects.requireNonNull(sink, "sink");
+    }
+
+    public String describe() {
+        return "shm:" + file;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        Thread t = new Thread(this::run, "SharedMemorySource");
+        t.setDaemon(true);
+        t.setPriority(Thread.NORM_PRIORITY + 1);
+        worker = t;
+        t.start();
+        PIPELINE_LOG.info("[SharedMemorySource] start " + describe());
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        PIPELINE_LOG.info("[SharedMemorySource] stop " + describe());
+        Thread t = worker;
+        worker = null;
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join(1000);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Map the file again on the next pass: a writer that died and was restarted before it bumped
+     * global_seq in the old (now unlinked) mapping is otherwise never noticed.
+     */
+    @Override
+    public void reconnect() {
+        remap = true;
+        Thread t = worker;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Reader loop
+    // ------------------------------------------------------------------------------------------------
+
+    private void run() {
+        int idle = 0;
+        while (running) {
+            if (remap) {
+                remap = false;
+                PIPELINE_LOG.info("[SharedMemorySource] remapping " + file + " on request");
+                map = null;
+            }
+            if (map == null && !tryMap()) {
+                LockSupport.parkNanos(500_000_000L); // backend not up yet
+                continue;
+            }
+            long global = (long) LONG.getAcquire(map, OFF_GLOBAL_SEQ);
+            if (global == lastGlobal) {
+                if (++idle < SPINS) Thread.onSpinWait();
+                else LockSupport.parkNanos(idleNanos);
+                continue;
+            }
+            idle = 0;
+            if (map.getLong(OFF_INSTANCE) != instance) {
+                // Writer restarted and re-created the file: remap on the next pass
+                PIPELINE_LOG.info("[SharedMemorySource] writer restarted, remapping " + file);
+                map = null;
+                continue;
+            }
+            if (scan()) lastGlobal = global;
+        }
+    }
+
+    /** Collect every slot whose seq moved; false if some slot was mid-write (scan again). */
+    private boolean scan() {
+        boolean complete = true;
+        for (int i = 0; i < slotCount; i++) {
+            int base = HEADER_SIZE + i * SLOT_SIZE;
+            long s1 = (long) LONG.getAcquire(map, base + SLOT_SEQ);
+            if (s1 == lastSeq[i]) continue;
+            if ((s1 & 1L) != 0L) {
+                complete = false;
+                continue;
+            }
+            // Copy the fields once, then check the copy against the slot's checksum
+            int len = map.get(base + SLOT_KEY_LEN) & 0xFF;
+            int n = SLOT_KEY - SLOT_VALUE + Math.min(len, KEY_MAX);
+            map.get(base + SLOT_VALUE, slotCopy, 0, n);
+            int sum = map.getInt(base + SLOT_CRC);
+            VarHandle.acquireFence();
+            long s2 = (long) LONG.getAcquire(map, base + SLOT_SEQ);
+            if (s1 != s2) {
+                SHM_RETRIES.inc();
+                complete = false;
+                continue;
+            }
+            crc.reset();
+            crc.update(slotCopy, 0, n);
+            if ((int) crc.getValue() != sum || len == 0 || len > KEY_MAX) {
+                SHM_CHECKSUM.inc();
+                complete = false;
+                continue;
+            }
+            lastSeq[i] = s1;
+            double v = Double.longBitsToDouble((long) COPY_LONG.get(slotCopy, 0));
+            long ts = (long) COPY_LONG.get(slotCopy, SLOT_TS - SLOT_VALUE);
+            String key = keys[i];
+            if (key == null) key = new String(slotCopy, SLOT_KEY - SLOT_VALUE, len, StandardCharsets.UTF_8);
+            keys[i] = key;
+            // ts 0: the writer had no sample time for this key, so it is stamped on receipt
+            batch.put(key, ts != 0L ? new IndexStore.DataPoint(v, ts, null, null, true)
+                                    : new IndexStore.DataPoint(v, System.currentTimeMillis()));
+        }
+        if (!batch.isEmpty()) {
+            LatencyTracer.markReceived();
+            SHM_UPDATES.add(batch.size());
+            try {
+                sink.accept(batch);
+            } catch (Throwable t) {
+                PIPELINE_LOG.error("[SharedMemorySource] sink failed", t);
+            }
+            batch.clear();
+        }
+        return complete;
+    }
+
+    private boolean tryMap() {
+        if (!Files.isRegularFile(file)) return false;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_SIZE) return false;
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            m.order(ByteOrder.LITTLE_ENDIAN);
+            if (m.getInt(0) != MAGIC || m.getInt(4) != LAYOUT || m.getInt(OFF_SLOT_SIZE) != SLOT_SIZE) {
+                System.err.println("[Ingest] " + file + " is not a layout-" + LAYOUT + " gauge ring; ignoring");
+                return false;
+            }
+            int count = m.getInt(OFF_SLOT_COUNT);
+            if (count <= 0 || HEADER_SIZE + (long) count * SLOT_SIZE > ch.size()) return false;
+
+            map = m;
+            slotCount = count;
+            instance = m.getLong(OFF_INSTANCE);
+            lastGlobal = -1L;
+            lastSeq = new long[count];
+            keys = new String[count];
+            System.out.println("[Ingest] mapped " + file + " (" + count + " slots)");
+            return true;
+        } catch (IOException e) {
+            PIPELINE_LOG.warn("[SharedMemorySource] cannot map " + file + ": " + e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package gauges.system.pipeline;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * SnapshotCodec
+ *
+ * Wire formats for snapshot bodies and their negotiation.
+ * - JSON : application/json (the original text format)
+ * - CBOR : application/cbor (same key → number / {v,ts,type,status} shape, binary encoded)
+ *
+ * decode() streams tokens straight into DataPoints (no intermediate Map<String,Object> tree),
+ * with the same shape rules as DataPoint.fromUnknown.
+ */
+public enum SnapshotCodec {
+
+    JSON("application/json", new JsonFactory()),
+    CBOR("application/cbor", new CBORFactory());
+
+    private final String mediaType;
+    private final JsonFactory factory;
+    private final ObjectMapper mapper;
+
+    SnapshotCodec(String mediaType, JsonFactory factory) {
+        this.mediaType = mediaType;
+        this.factory = factory;
+        this.mapper = new ObjectMapper(factory);
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    /** Accept header preferring this codec with JSON as the fallback. */
+    public String acceptHeader() {
+        return this == JSON ? JSON.mediaType : mediaType + ", " + JSON.mediaType + ";q=0.5";
+    }
+
+    /** Parse a property value such as "json" or "cbor" (unknown values fall back to JSON). */
+    public static SnapshotCodec fromName(String name) {
+        if (name == null) return JSON;
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.out.println("[Pipeline] unknown snapshot format '" + name + "', using JSON");
+            return JSON;
+        }
+    }
+
+    /** Codec matching a response Content-Type (JSON when absent or unrecognized). */
+    public static SnapshotCodec fromContentType(String contentType) {
+        if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith(CBOR.mediaType)) return CBOR;
+        return JSON;
+    }
+
+    /**
+     * Codec of a body without a Content-Type (pushed frames): a CBOR map header (major type 5)
+     * means CBOR, anything else is treated as JSON.
+     */
+    public static SnapshotCodec sniff(byte[] body, int offset, int length) {
+        if (length > 0 && (body[offset] & 0xE0) == 0xA0) return CBOR;
+        return JSON;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Decoding
+    // ------------------------------------------------------------------------------------------------
+
+    /**
+     * Decode a snapshot body into DataPoints (insertion order = wire order).
+     *
+     * @throws IOException if the body is not a well-formed top-level object.
+     */
+    public Map<String, IndexStore.DataPoint> decode(byte[] body, int offset, int length) throws IOException {
+        try (JsonParser p = factory.createParser(body, offset, length)) {
+            return decode(p);
+        }
+    }
+
+    private Map<String, IndexStore.DataPoint> decode(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("snapshot is not an object");
+        }
+        long now = System.currentTimeMillis();
+        Map<String, IndexStore.DataPoint> out = new LinkedHashMap<>();
+        JsonToken t;
+        while ((t = p.nextToken()) == JsonToken.FIELD_NAME) {
+            String key = p.currentName();
+            JsonToken v = p.nextToken();
+            IndexStore.DataPoint dp = switch (v) {
+                case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> new IndexStore.DataPoint(p.getDoubleValue(), now);
+                case START_OBJECT -> readObject(p, now);
+                case VALUE_NULL -> null;
+                case VALUE_STRING -> new IndexStore.DataPoint(Double.NaN, now, "text", p.getText());
+                default -> IndexStore.DataPoint.fromUnknown(mapper.readValue(p, Object.class));
+            };
+            if (dp != null) out.put(key, dp);
+        }
+        if (t != JsonToken.END_OBJECT) {
+            throw new IOException("truncated snapshot");
+        }
+        return out;
+    }
+
+    /** {v|value|val, ts|t|time, type|kind|k, status|s}; unknown fields are skipped. */
+    private static IndexStore.DataPoint readObject(JsonParser p, long now) throws IOException {
+        double v = Double.NaN;
+        long ts = now;
+        String type = null;
+        String status = null;
+        boolean hasV = false, hasTs = false, hasType = false, hasStatus = false;
+
+        JsonToken t;
+        while ((t = p.nextToken()) == JsonToken.FIELD_NAME) {
+            String f = p.currentName();
+            JsonToken vt = p.nextToken();
+            switch (f) {
+                case "v", "value", "val" -> {
+                    if (!hasV && vt != JsonToken.VALUE_NULL) { v = number(p, vt); hasV = true; }
+                }
+                case "ts", "t", "time" -> {
+                    if (!hasTs && vt.isNumeric()) { ts = p.getLongValue(); hasTs = true; }
+                }
+                case "type", "kind", "k" -> {
+                    if (!hasType && vt != JsonToken.VALUE_NULL) { type = scalarText(p, vt); hasType = true; }
+                }
+                case "status", "s" -> {
+                    if (!hasStatus && vt != JsonToken.VALUE_NULL) { status = scalarText(p, vt); hasStatus = true; }
+                }
+                default -> p.skipChildren();
+            }
+        }
+        if (t != JsonToken.END_OBJECT) {
+            throw new IOException("truncated datapoint");
+        }
+        return new IndexStore.DataPoint(v, ts, type, status, hasTs);
+    }
+
+    private static double number(JsonParser p, JsonToken t) throws IOException {
+        if (t.isNumeric()) return p.getDoubleValue();
+        if (t == JsonToken.VALUE_STRING) {
+            try { return Double.parseDouble(p.getText()); } catch (NumberFormatException ignore) { return Double.NaN; }
+        }
+        p.skipChildren();
+        return Double.NaN;
+    }
+
+    private static String scalarText(JsonParser p, JsonToken t) throws IOException {
+        if (t.isScalarValue()) return p.getText();
+        p.skipChildren();
+        return null;
+    }
+}
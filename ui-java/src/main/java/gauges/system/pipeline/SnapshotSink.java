@@ -0,0 +1,15 @@
+package gauges.system.pipeline;
+
+/**
+ * SnapshotSink
+ *
+ * Receives raw snapshot bodies from a transport together with the codec they are encoded in.
+ * IndexStore::applySnapshot applies on the calling thread; IngestPipeline queues the body and
+ * decodes/applies it on its own threads.
+ */
+@FunctionalInterface
+public interface SnapshotSink {
+
+    /** body[offset, offset+length) is only valid for the duration of the call. */
+    void accept(byte[] body, int offset, int length, SnapshotCodec codec);
+}
@@ -0,0 +1,23 @@
+package gauges.system.pipeline;
+
+/**
+ * SnapshotSource
+ *
+ * A transport that delivers snapshot (or delta) bodies into a SnapshotSink.
+ * - IndexFetcher   : HTTP polling at a fixed period
+ * - DatagramSource : pushed frames over localhost UDP or a Unix domain socket
+ * - SharedMemorySource : channel slots read in place from a memory-mapped ring file
+ *
+ * - ReplaySource   : recorded sessions played back
+ *
+ * Both start()/stop() are idempotent. reconnect() is called when no data arrived for a while
+ * (see FreshnessTracker); transports that can re-establish their link do so, others ignore it.
+ */
+public interface SnapshotSource {
+
+    void start();
+
+    void stop();
+
+    default void reconnect() { }
+}
@@ -0,0 +1,714 @@
+package gauges.system.pipeline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import gauges.system.Metrics;
+
+/**
+ * WindowAggregates
+ *
+ * Streaming per-channel aggregations published back into the store as "<key>@<agg><window>" keys,
+ * so a binding to "rpm@max5s" reads one shared value however many gauges show it.
+ * - min / max   : sliding window via monotonic deques over primitive arrays (O(1) amortized)
+ * - avg/std/var : sliding sums over a sample ring, or Welford since reset
+ * - pNN         : approximate quantile from a log-bucketed sketch (1% relative error, supports
+ *                 removal, so the same structure serves sliding windows and since-reset)
+ *
+ * Spec: key@fn[_][window] with fn = min | max | avg | mean | std | var | pNN, window = a number
+ * with ms / s / min, or nothing / "lap" for "since reset()". Examples: rpm@max5s, rpm@avg_500ms,
+ * rpm@p95_30s, rpm@p95lap, rpm@max (peak hold).
+ *
+ * Aggregates are created on first request (IndexRouter asks for any key containing '@') and
+ * update when their source key is applied; windows slide on sample timestamps. Between samples a
+ * 50 ms timer slides them on wall time (the source's last ts plus the wall time since it arrived)
+ * and republishes the aggregates whose contents changed, so rpm@max5s lets go of an old peak even
+ * when rpm stops updating. The republished batch goes through setSink (the ingest queue when there
+ * is one); derive() answers it with the current value, so a batch that raced a newer sample never
+ * overwrites it. Rings are capped at MAX_SAMPLES per aggregate, beyond which the oldest samples
+ * leave the window early.
+ */
+public final class WindowAggregates implements IndexStore.Deriver {
+
+    static final int MAX_SAMPLES = 1 << 16;
+
+    private static final String[] FUNCTIONS = { "mean", "min", "max", "avg", "std", "var", "p" };
+
+    private static final long TICK_MILLIS = 50;
+
+    private static volatile WindowAggregates GLOBAL;
+
+    private static final Metrics.Gauge     ACTIVE     = Metrics.gauge("aggregates.active");
+    private static final Metrics.Histogram EVAL_NANOS = Metrics.histogram("aggregates.eval.nanos");
+
+    private final IndexStore store;
+
+    /** spec → validity, so repeated lookups from bindings cost one map get. */
+    private final ConcurrentHashMap<String, Boolean> requested = new ConcurrentHashMap<>();
+
+    // Guarded by this
+    private final Map<String, List<Aggregate>> bySource = new LinkedHashMap<>();
+    private final Map<String, IndexStore.DataPoint> out = new LinkedHashMap<>();
+    private final Map<String, Aggregate> bySpec = new HashMap<>();
+    private final Set<String> republished = new HashSet<>();   // sent by the timer, not yet applied
+
+    private volatile Consumer<Map<String, IndexStore.DataPoint>> sink;
+    private ScheduledExecutorService timer;
+
+    public WindowAggregates(IndexStore store) {
+        this.store = Objects.requireNonNull(store, "store");
+        this.sink = store::applySnapshot;
+    }
+
+    /** Create the global service and chain it into the store (after any other deriver). */
+    public static WindowAggregates install(IndexStore store) {
+        WindowAggregates w = new WindowAggregates(store);
+        store.addDeriver(w);
+        w.start();
+        GLOBAL = w;
+        return w;
+    }
+
+    /** Where timer republishes go (the ingest queue when enabled); the store by default. */
+    public void setSink(Consumer<Map<String, IndexStore.DataPoint>> sink) {
+        this.sink = Objects.requireNonNull(sink, "sink");
+    }
+
+    /** Start the timer that slides windows between samples. */
+    public synchronized void start() {
+        if (timer != null) return;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "WindowAggregates");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.scheduleAtFixedRate(this::safeTick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (timer != null) timer.shutdownNow();
+        timer = null;
+    }
+
+    /** The installed service, or null before boot wired it. */
+    public static WindowAggregates global() {
+        return GLOBAL;
+    }
+
+    /** True if the key looks like an aggregate spec ("source@agg"). */
+    public static boolean isSpec(String key) {
+        int at = key == null ? -1 : key.lastIndexOf('@');
+        return at > 0 && at < key.length() - 1;
+    }
+
+    /**
+     * Start computing the given spec (no-op if already known). Returns false for a malformed
+     * spec, which is reported once.
+     */
+    public boolean request(String spec) {
+        Boolean known = requested.get(spec);
+        if (known != null) return known;
+        return create(spec);
+    }
+
+    /** Restart every since-reset aggregate (peak hold, lap mean, lap percentiles). */
+    public synchronized void reset() {
+        for (List<Aggregate> list : bySource.values()) {
+            for (Aggregate a : list) if (a.windowMillis == 0) a.reset();
+        }
+    }
+
+    private synchronized boolean create(String spec) {
+        Boolean known = requested.get(spec);
+        if (known != null) return known;
+        Aggregate a;
+        try {
+            a = parse(spec);
+        } catch (IllegalArgumentException e) {
+            System.out.println("[Aggregates] ignoring '" + spec + "': " + e.getMessage());
+            requested.put(spec, Boolean.FALSE);
+            return false;
+        }
+        bySource.computeIfAbsent(a.source, k -> new ArrayList<>()).add(a);
+        bySpec.put(spec, a);
+        IndexStore.DataPoint current = store.get(a.source);
+        if (current != null && !Double.isNaN(current.v)) {
+            a.add(current.ts, current.v);
+            a.sampled(current.ts, System.currentTimeMillis());
+        }
+        requested.put(spec, Boolean.TRUE);
+        ACTIVE.set(requested.size());
+        System.out.println("[Aggregates] computing " + spec);
+        return true;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Evaluation (called by IndexStore inside applySnapshot)
+    // ------------------------------------------------------------------------------------------------
+
+    @Override
+    public synchronized Map<String, IndexStore.DataPoint> derive(Map<String, IndexStore.DataPoint> applied) {
+        if (bySource.isEmpty()) return null;
+        long t0 = System.nanoTime();
+        out.clear();
+        if (bySource.size() < applied.size()) {
+            for (Map.Entry<String, List<Aggregate>> e : bySource.entrySet()) {
+                IndexStore.DataPoint dp = applied.get(e.getKey());
+                if (dp != null) update(e.getValue(), dp);
+            }
+        } else {
+            for (Map.Entry<String, IndexStore.DataPoint> e : applied.entrySet()) {
+                List<Aggregate> list = bySource.get(e.getKey());
+                if (list != null && e.getValue() != null) update(list, e.getValue());
+            }
+        }
+        if (!republished.isEmpty()) {
+            // A timer batch: answer with the current value (a newer sample may have moved it since)
+            for (var it = republished.iterator(); it.hasNext(); ) {
+                String spec = it.next();
+                if (!applied.containsKey(spec)) continue;
+                it.remove();
+                Aggregate a = bySpec.get(spec);
+                if (!out.containsKey(spec) && a.hasValue()) out.put(spec, new IndexStore.DataPoint(a.value(), a.outTs));
+            }
+        }
+        if (out.isEmpty()) return null;
+        EVAL_NANOS.recordSince(t0);
+        return out;
+    }
+
+    private void update(List<Aggregate> list, IndexStore.DataPoint dp) {
+        if (Double.isNaN(dp.v)) return;
+        long wall = System.currentTimeMillis();
+        for (int i = 0; i < list.size(); i++) {
+            Aggregate a = list.get(i);
+            a.sampled(dp.ts, wall);
+            out.put(a.spec, new IndexStore.DataPoint(a.add(dp.ts, dp.v), dp.ts));
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Wall-clock sliding (timer thread)
+    // ------------------------------------------------------------------------------------------------
+
+    private void safeTick() {
+        try {
+            Map<String, IndexStore.DataPoint> batch = tick(System.currentTimeMillis());
+            if (batch != null) sink.accept(batch);
+        } catch (Throwable t) {
+            System.out.println("[Aggregates] tick failed: " + t);
+        }
+    }
+
+    /** Slide every window to its source's estimated now; returns the aggregates that changed. */
+    synchronized Map<String, IndexStore.DataPoint> tick(long wallMillis) {
+        Map<String, IndexStore.DataPoint> batch = null;
+        for (List<Aggregate> list : bySource.values()) {
+            for (int i = 0; i < list.size(); i++) {
+                Aggregate a = list.get(i);
+                if (a.windowMillis == 0 || !a.hasValue()) continue;
+                long now = a.lastTs + Math.max(0L, wallMillis - a.lastWall);
+                if (!a.advance(now)) continue;
+                a.outTs = now;
+                if (batch == null) batch = new LinkedHashMap<>();
+                batch.put(a.spec, new IndexStore.DataPoint(a.value(), now));
+                republished.add(a.spec);
+            }
+        }
+        return batch;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Spec parsing
+    // ------------------------------------------------------------------------------------------------
+
+    static Aggregate parse(String spec) {
+        if (!isSpec(spec)) throw new IllegalArgumentException("expected key@aggregate");
+        int at = spec.lastIndexOf('@');
+        String source = spec.substring(0, at);
+        String agg = spec.substring(at + 1).toLowerCase(Locale.ROOT);
+
+        String fn = null;
+        for (String f : FUNCTIONS) {
+            if (agg.startsWith(f)) {
+                fn = f;
+                break;
+            }
+        }
+        if (fn == null) throw new IllegalArgumentException("unknown aggregate in '" + agg + "'");
+        int i = fn.length();
+        double q = Double.NaN;
+        if ("p".equals(fn)) {
+            int start = i;
+            while (i < agg.length() && (Character.isDigit(agg.charAt(i)) || agg.charAt(i) == '.')) i++;
+            try {
+                q = Double.parseDouble(agg.substring(start, i)) / 100.0;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("percentile needs a number, e.g. p95");
+            }
+            if (!(q >= 0.0 && q <= 1.0)) throw new IllegalArgumentException("percentile must be within p0..p100");
+        }
+        if (i < agg.length() && agg.charAt(i) == '_') i++;
+        long window = window(agg.substring(i));
+
+        return switch (fn) {
+            case "min" -> new Extreme(spec, source, window, false);
+            case "max" -> new Extreme(spec, source, window, true);
+            case "avg", "mean" -> new Moments(spec, source, window, Moments.MEAN);
+            case "std" -> new Moments(spec, source, window, Moments.STD);
+            case "var" -> new Moments(spec, source, window, Moments.VAR);
+            case "p" -> new Quantile(spec, source, window, q);
+            default -> throw new IllegalStateException(fn);
+        };
+    }
+
+    /** Window length in millis; 0 = since reset. */
+    private static long window(String w) {
+        if (w.isEmpty() || "lap".equals(w)) return 0L;
+        int i = 0;
+        while (i < w.length() && (Character.isDigit(w.charAt(i)) || w.charAt(i) == '.')) i++;
+        double n;
+        try {
+            n = Double.parseDouble(w.substring(0, i));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("bad window '" + w + "'");
+        }
+        double millis = switch (w.substring(i)) {
+            case "ms" -> n;
+            case "s", "" -> n * 1000.0;
+            case "min", "m" -> n * 60_000.0;
+            case "h" -> n * 3_600_000.0;
+            default -> throw new IllegalArgumentException("bad window unit in '" + w + "'");
+        };
+        if (!(millis >= 1.0)) throw new IllegalArgumentException("window must be at least 1ms");
+        return (long) millis;
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Aggregates
+    // ------------------------------------------------------------------------------------------------
+
+    abstract static class Aggregate {
+        final String spec;
+        final String source;
+        final long windowMillis; // 0 = since reset
+        long lastTs;             // newest source sample ts, and the wall time it arrived
+        long lastWall;
+        long outTs;              // ts of the last published value
+
+        Aggregate(String spec, String source, long windowMillis) {
+            this.spec = spec;
+            this.source = source;
+            this.windowMillis = windowMillis;
+        }
+
+        void sampled(long ts, long wallMillis) {
+            lastTs = ts;
+            lastWall = wallMillis;
+            outTs = ts;
+        }
+
+        /** Take a sample and return the aggregate over the current window. */
+        abstract double add(long ts, double v);
+
+        /** Slide the window to now without a sample; true if anything left it. */
+        abstract boolean advance(long now);
+
+        abstract boolean hasValue();
+
+        /** The aggregate over the current window (hasValue() must be true). */
+        abstract double value();
+
+        abstract void reset();
+    }
+
+    /** min / max: monotonic deque (sliding) or a held extreme (since reset). */
+    static final class Extreme extends Aggregate {
+        private final boolean max;
+        private final Samples deque = new Samples();
+        private double held = Double.NaN;
+
+        Extreme(String spec, String source, long windowMillis, boolean max) {
+            super(spec, source, windowMillis);
+            this.max = max;
+        }
+
+        @Override double add(long ts, double v) {
+            if (windowMillis == 0) {
+                if (Double.isNaN(held) || (max ? v > held : v < held)) held = v;
+                return held;
+            }
+            // Drop samples the new one dominates: the front is then always the window extreme
+            while (deque.size > 0 && (max ? deque.newestValue() <= v : deque.newestValue() >= v)) deque.dropNewest();
+            deque.push(ts, v);
+            deque.evictBefore(ts - windowMillis, null);
+            return deque.oldestValue();
+        }
+
+        @Override boolean advance(long now) {
+            return deque.evictBefore(now - windowMillis, null);
+        }
+
+        @Override boolean hasValue() {
+            return windowMillis == 0 ? !Double.isNaN(held) : deque.size > 0;
+        }
+
+        @Override double value() {
+            return windowMillis == 0 ? held : deque.oldestValue();
+        }
+
+        @Override void reset() {
+            held = Double.NaN;
+            deque.clear();
+        }
+    }
+
+    /** avg / std / var: sliding sums (shifted by the first sample for precision) or Welford. */
+    static final class Moments extends Aggregate {
+        static final int MEAN = 0, STD = 1, VAR = 2;
+
+        private final int kind;
+        private final Samples ring = new Samples();
+        private final Samples.Removal onEvict = this::remove;
+        private long n;
+        private double mean, m2;          // since reset (Welford)
+        private double shift, sum, sumSq; // sliding, relative to shift
+
+        Moments(String spec, String source, long windowMillis, int kind) {
+            super(spec, source, windowMillis);
+            this.kind = kind;
+        }
+
+        @Override double add(long ts, double v) {
+            if (windowMillis == 0) {
+                n++;
+                double d = v - mean;
+                mean += d / n;
+                m2 += d * (v - mean);
+                return value();
+            }
+            if (ring.size == 0) {
+                shift = v;
+                sum = 0.0;
+                sumSq = 0.0;
+            }
+            ring.push(ts, v, onEvict);
+            double x = v - shift;
+            sum += x;
+            sumSq += x * x;
+            ring.evictBefore(ts - windowMillis, onEvict);
+            return value();
+        }
+
+        @Override boolean advance(long now) {
+            return ring.evictBefore(now - windowMillis, onEvict);
+        }
+
+        @Override boolean hasValue() {
+            return windowMillis == 0 ? n > 0 : ring.size > 0;
+        }
+
+        @Override double value() {
+            if (windowMillis == 0) return result(mean, n < 2 ? Double.NaN : m2 / (n - 1));
+            int k = ring.size;
+            double m = sum / k;
+            double var = k < 2 ? Double.NaN : Math.max(0.0, (sumSq - sum * m) / (k - 1));
+            return result(shift + m, var);
+        }
+
+        private void remove(double v) {
+            double x = v - shift;
+            sum -= x;
+            sumSq -= x * x;
+        }
+
+        private double result(double m, double var) {
+            return switch (kind) {
+                case MEAN -> m;
+                case VAR -> var;
+                default -> Math.sqrt(var);
+            };
+        }
+
+        @Override void reset() {
+            n = 0;
+            mean = 0.0;
+            m2 = 0.0;
+            ring.clear();
+        }
+    }
+
+    /** pNN: log-bucketed sketch; sliding windows remove evicted samples from it. */
+    static final class Quantile extends Aggregate {
+        private final double q;
+        private final Sketch sketch = new Sketch(0.01);
+        private final Samples ring = new Samples();
+        private final Samples.Removal onEvict;
+
+        Quantile(String spec, String source, long windowMillis, double q) {
+            super(spec, source, windowMillis);
+            this.q = q;
+            this.onEvict = sketch::remove;
+        }
+
+        @Override double add(long ts, double v) {
+            sketch.add(v);
+            if (windowMillis > 0) {
+                ring.push(ts, v, onEvict);
+                ring.evictBefore(ts - windowMillis, onEvict);
+            }
+            return sketch.quantile(q);
+        }
+
+        @Override boolean advance(long now) {
+            return ring.evictBefore(now - windowMillis, onEvict);
+        }
+
+        @Override boolean hasValue() {
+            return sketch.total > 0;
+        }
+
+        @Override double value() {
+            return sketch.quantile(q);
+        }
+
+        @Override void reset() {
+            sketch.clear();
+            ring.clear();
+        }
+    }
+
+    // ------------------------------------------------------------------------------------------------
+    // Primitive structures
+    // ------------------------------------------------------------------------------------------------
+
+    /** Circular (ts, value) buffer, oldest at head; used as a FIFO ring and as a monotonic deque. */
+    static final class Samples {
+        interface Removal { void removed(double v); }
+
+        long[] ts = new long[16];
+        double[] v = new double[16];
+        int head;
+        int size;
+
+        void push(long t, double value) {
+            push(t, value, null);
+        }
+
+        void push(long t, double value, Removal onRemove) {
+            if (size == ts.length) {
+                if (size >= MAX_SAMPLES) {
+                    if (onRemove != null) onRemove.removed(v[head]);
+                    dropOldest();
+                } else {
+                    grow();
+                }
+            }
+            int slot = (head + size) & (ts.length - 1);
+            ts[slot] = t;
+            v[slot] = value;
+            size++;
+        }
+
+        /** Remove samples older than cutoff, always keeping the newest; true if any left. */
+        boolean evictBefore(long cutoff, Removal onRemove) {
+            boolean evicted = false;
+            while (size > 1 && ts[head] <= cutoff) {
+                if (onRemove != null) onRemove.removed(v[head]);
+                dropOldest();
+                evicted = true;
+            }
+            return evicted;
+        }
+
+        double oldestValue() {
+            return v[head];
+        }
+
+        double newestValue() {
+            return v[(head + size - 1) & (ts.length - 1)];
+        }
+
+        void dropOldest() {
+            head = (head + 1) & (ts.length - 1);
+            size--;
+        }
+
+        void dropNewest() {
+            size--;
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        private void grow() {
+            int cap = ts.length * 2;
+            long[] nts = new long[cap];
+            double[] nv = new double[cap];
+            for (int i = 0; i < size; i++) {
+                int idx = (head + i) & (ts.length - 1);
+                nts[i] = ts[idx];
+                nv[i] = v[idx];
+            }
+            ts = nts;
+            v = nv;
+            head = 0;
+        }
+    }
+
+    /**
+     * Relative-error quantile sketch (DDSketch-style): value x > 0 counts into bucket
+     * ceil(log_gamma(x)), negatives into a mirrored store, |x| below MIN_POSITIVE as zero. Counts
+     * can be decremented, so it follows a sliding window exactly up to the bucket resolution.
+     * quantile() walks the buckets between the lowest and highest occupied index (about 115 per
+     * decade of |x| at 1%), not the whole allocated range; the bounds themselves are kept by Buckets.
+     */
+    static final class Sketch {
+        private static final double MIN_POSITIVE = 1e-9;
+
+        private final double gamma;
+        private final double logGamma;
+        private final Buckets positive = new Buckets();
+        private final Buckets negative = new Buckets();
+        private long zeros;
+        private long total;
+
+        Sketch(double relativeAccuracy) {
+            this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+            this.logGamma = Math.log(gamma);
+        }
+
+        void add(double x) {
+            change(x, 1);
+        }
+
+        void remove(double x) {
+            change(x, -1);
+        }
+
+        private void change(double x, int delta) {
+            if (Double.isNaN(x)) return;
+            total += delta;
+            if (x > MIN_POSITIVE) positive.add(index(x), delta);
+            else if (x < -MIN_POSITIVE) negative.add(index(-x), delta);
+            else zeros += delta;
+        }
+
+        private int index(double x) {
+            return (int) Math.ceil(Math.log(x) / logGamma);
+        }
+
+        private double valueOf(int index) {
+            return 2.0 * Math.pow(gamma, index) / (gamma + 1.0);
+        }
+
+        double quantile(double q) {
+            if (total <= 0) return Double.NaN;
+            long rank = (long) (q * (total - 1));
+            // Ascending: most negative first (largest negative index), then zeros, then positives
+            long seen = 0;
+            if (negative.nonEmpty()) {
+                for (int i = negative.maxIndex(), lo = negative.minIndex(); i >= lo; i--) {
+                    seen += negative.count(i);
+                    if (seen > rank) return -valueOf(i);
+                }
+            }
+            seen += zeros;
+            if (seen > rank) return 0.0;
+            if (positive.nonEmpty()) {
+                int hi = positive.maxIndex();
+                for (int i = positive.minIndex(); i <= hi; i++) {
+                    seen += positive.count(i);
+                    if (seen > rank) return valueOf(i);
+                }
+                return valueOf(hi);
+            }
+            return 0.0;
+        }
+
+        void clear() {
+            positive.clear();
+            negative.clear();
+            zeros = 0;
+            total = 0;
+        }
+    }
+
+    /**
+     * Dense counts over a growing index range. The lowest and highest occupied index are tracked
+     * as counts change; only emptying an edge bucket scans, and then only across empty buckets.
+     */
+    static final class Buckets {
+        private long[] counts = new long[0];
+        private int offset;     // index of counts[0]
+        private long live;
+        private int lo, hi;     // occupied range, valid while live > 0
+
+        void add(int index, int delta) {
+            if (counts.length == 0) {
+                counts = new long[64];
+                offset = index - 32;
+            }
+            if (index < offset || index >= offset + counts.length) growTo(index);
+            long c = counts[index - offset] += delta;
+            if (live == 0) {
+                lo = hi = index;
+            } else if (c > 0) {
+                if (index < lo) lo = index;
+                if (index > hi) hi = index;
+            }
+            live += delta;
+            if (c == 0 && live > 0) {
+                while (counts[lo - offset] == 0) lo++;
+                while (counts[hi - offset] == 0) hi--;
+            }
+        }
+
+        long count(int index) {
+            int i = index - offset;
+            return i < 0 || i >= counts.length ? 0 : counts[i];
+        }
+
+        boolean nonEmpty() {
+            return live > 0;
+        }
+
+        int minIndex() {
+            return live > 0 ? lo : offset;
+        }
+
+        int maxIndex() {
+            return live > 0 ? hi : offset - 1;
+        }
+
+        void clear() {
+            counts = new long[0];
+            live = 0;
+        }
+
+        private void growTo(int index) {
+            int lo = Math.min(offset, index);
+            int hi = Math.max(offset + counts.length, index + 1);
+            int cap = Math.max(hi - lo, counts.length * 2);
+            int newOffset = index < offset ? hi - cap : lo;
+            long[] n = new long[cap];
+            System.arraycopy(counts, 0, n, offset - newOffset, counts.length);
+            counts = n;
+            offset = newOffset;
+        }
+    }
+}
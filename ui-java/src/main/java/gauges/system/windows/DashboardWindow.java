@@ -1,19 +1,24 @@
 package gauges.system.windows;
 
 import java.lang.ref.WeakReference;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
-import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
+import gauges.system.Metrics;
 import gauges.system.ModeController;
+import gauges.system.ModeLayout;
 import gauges.system.WindowManager;
+import gauges.system.pipeline.ChannelHistory;
+import gauges.system.pipeline.FreshnessTracker;
 import gauges.system.pipeline.IndexRouter;
 import gauges.system.pipeline.IndexStore;
-import javafx.animation.AnimationTimer;
+import gauges.system.pipeline.KeySubscriptions;
+import gauges.system.pipeline.LatencyTracer;
 import javafx.application.Platform;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
@@ -25,8 +30,9 @@ import javafx.stage.Stage;
 
 /**
  * DashboardWindow
- * Renders all objects under dashboard.displays[] from the current mode JSON.
- * Uses ModeController's section splitter and a tiny in-class JSON parser.
+ * Renders all objects under dashboard.displays[] from the current mode.
+ * Reads the pre-compiled ModeLayout from ModeController (no JSON parsing here).
+ * Mode switches re-mount by diff (see GaugeMounter): unchanged gauges stay in the scene.
  * Places gauges using center-based (x,y) with width (w) and height (h).
  */
 public final class DashboardWindow implements WindowManager.WindowSceneController {
@@ -43,7 +49,8 @@ public final class DashboardWindow implements WindowManager.WindowSceneControlle
     // Mode listener
     private ModeController.Listener modeListener;
 
-    private final GaugeBindingManager gaugeBindings = new GaugeBindingManager("[Dashboard]");
+    private final GaugeBindingManager gaugeBindings = new GaugeBindingManager("[Dashboard]", "dashboard");
+    private final GaugeMounter mounter = new GaugeMounter("[Dashboard]");
 
     public DashboardWindow() {
         // no-op
@@ -69,7 +76,18 @@ public final class DashboardWindow implements WindowManager.WindowSceneControlle
         this.shell = shell;
 
         // Listen for future mode changes (FX thread-safe)
-        this.modeListener = (name, rawJson) -> Platform.runLater(() -> rebuildFromModeJson(rawJson));
+        this.modeListener = new ModeController.Listener() {
+            @Override
+            public void onModeChanged(String name, String rawJson) {
+                Platform.runLater(() -> rebuildFromModeJson(rawJson));
+            }
+
+            @Override
+            public void onModePrepared(String name, ModeLayout layout) {
+                // Build the upcoming mode's gauges off-screen so the switch only swaps nodes
+                Platform.runLater(() -> mounter.prepare(layout.dashboard()));
+            }
+        };
         ModeController.global().addListener(this.modeListener);
     }
 
@@ -100,243 +118,58 @@ public final class DashboardWindow implements WindowManager.WindowSceneControlle
     // ---------------- Rendering logic ----------------
 
     private void rebuildFromModeJson(String ignoredRaw) {
-        // Pull the isolated dashboard section from ModeController
         gaugeBindings.reset();
 
-        String ds = ModeController.global().getDashboardSectionRaw();
-        if (ds == null || ds.isEmpty()) {
+        // Pre-compiled by ModeController: no JSON work happens here
+        ModeLayout layout = ModeController.global().getCurrentLayout();
+        if (layout == null || layout.dashboard().isEmpty()) {
+            mounter.unmountAll();
             contentLayer.getChildren().clear();
             return;
         }
 
-        // Deep diagnostics (safe)
-        debugDumpJson("[Dashboard][Debug] dashboardSection", ds);
-
-        // --- Normalize common gotchas so the parser survives ---
-        String norm = (ModeController.global().getDashboardSectionRaw() == null ? "" : ModeController.global().getDashboardSectionRaw())
-                .replace("\r", "")
-                // strip standalone lines with just "..."
-                .replaceAll("(?m)^\\s*\\.\\.\\.\\s*$", "")
-                // replace curly “smart quotes” with normal quotes
-                .replace('“','"').replace('”','"').replace('’','\'');
-
-        // Parse using MiniJson (robust), then fall back to legacy scanner if needed
-        List<DisplaySpec> specs = parseDashboardDisplaysViaJson(norm);
-        if (specs.isEmpty()) {
-            System.out.println("[Dashboard][Debug] JSON parser found 0 items. Trying legacy fallback.");
-            specs = parseDashboardDisplays_Fallback(norm);
-        }
+        // Diff against what is on screen: unchanged gauges stay, others come from the pool
+        List<ModeLayout.Display> specs = layout.dashboard();
+        List<Node> nodes = mounter.mount(specs);
 
-        contentLayer.getChildren().clear();
-        for (DisplaySpec spec : specs) {
-            Node node = instantiate(spec.type);
+        // Detach only gauges that left; nodes that stay keep their scene (no re-layout flash)
+        contentLayer.getChildren().retainAll(new HashSet<>(nodes));
+
+        for (int i = 0; i < specs.size(); i++) {
+            ModeLayout.Display spec = specs.get(i);
+            Node node = nodes.get(i);
             if (node == null) {
-                log("[Dashboard] Could not instantiate: " + spec.type);
+                log("[Dashboard] Could not instantiate: " + spec.type());
                 continue;
             }
 
-            // Load config JSON and call setConfig if exists
-            Map<String, Object> cfg = readConfigJson(spec.configPath);
-            trySetConfig(node, cfg);
-
-            // Probe config resource presence (classpath check, dev help)
-            probeResource(spec.configPath);
-
             // Attach live data binding if available
-            if (spec.bindKey != null && !spec.bindKey.isBlank()) {
-                gaugeBindings.register(node, spec.bindKey);
+            if (spec.bindKey() != null && !spec.bindKey().isBlank()) {
+                gaugeBindings.register(node, spec.bindKey());
             } else {
-                System.out.println("[Dashboard] No bind key provided for " + spec.type);
+                System.out.println("[Dashboard] No bind key provided for " + spec.type());
             }
 
             // Center-based placement: x,y are the center; w,h are size
-            trySetPrefSize(node, spec.w, spec.h); // ensure size before positioning
-            double w = (spec.w > 0 ? spec.w : preferredW(node));
-            double h = (spec.h > 0 ? spec.h : preferredH(node));
-            node.relocate(spec.x - (w * 0.5), spec.y - (h * 0.5));
+            trySetPrefSize(node, spec.w(), spec.h()); // ensure size before positioning
+            double w = (spec.w() > 0 ? spec.w() : preferredW(node));
+            double h = (spec.h() > 0 ? spec.h() : preferredH(node));
+            node.relocate(spec.x() - (w * 0.5), spec.y() - (h * 0.5));
 
-            contentLayer.getChildren().add(node);
-
-            log("[Dashboard] mounted: type=" + spec.type +
-                " config=" + spec.configPath + " bind=" + spec.bindKey +
-                " center=(" + spec.x + "," + spec.y + ") size=(" + w + "," + h + ")");
-        }
-
-        gaugeBindings.ensureRunning();
-    }
-
-    // ---------------- DisplaySpec model & parsers ----------------
-
-    /** One gauge entry from dashboard.displays[]. */
-    private static final class DisplaySpec {
-        String type;
-        String configPath;
-        String bindKey;
-        double x;
-        double y;
-        double w;
-        double h;
-    }
-
-    private static String asString(Object o, String def) {
-        return (o instanceof String s) ? s : def;
-    }
-    private static double asDouble(Object o, double def) {
-        if (o instanceof Number n) return n.doubleValue();
-        if (o instanceof String s) try { return Double.parseDouble(s.trim()); } catch (Exception ignore) {}
-        return def;
-    }
-
-    /** Parse dashboard.displays[] using the built-in MiniJson parser. */
-    @SuppressWarnings("")
-    private List<DisplaySpec> parseDashboardDisplaysViaJson(String dashboardSectionRaw) {
-        ArrayList<DisplaySpec> out = new ArrayList<>();
-        if (dashboardSectionRaw == null || dashboardSectionRaw.isBlank()) return out;
-
-        Object root = MiniJson.parse(dashboardSectionRaw);
-        if (!(root instanceof Map<?,?> map)) return out;
-
-        Object displays = map.get("displays");
-        if (!(displays instanceof List<?> list)) return out;
-
-        for (Object item : list) {
-            if (!(item instanceof Map<?,?> m)) continue;
-            DisplaySpec spec = new DisplaySpec();
-            spec.type       = asString(m.get("type"), null);
-            spec.configPath = asString(m.get("config"), null);
-            spec.bindKey    = asString(m.get("bind"), null);
-            spec.x          = asDouble(m.get("x"), 0);
-            spec.y          = asDouble(m.get("y"), 0);
-            spec.w          = asDouble(m.get("w"), 0);
-            spec.h          = asDouble(m.get("h"), 0);
-
-            if (spec.type == null || spec.type.isBlank()) {
-                System.out.println("[Dashboard] Skipping display with missing 'type'");
-                continue;
+            if (node.getParent() != contentLayer) {
+                contentLayer.getChildren().add(node);
             }
-            out.add(spec);
-        }
-        return out;
-    }
+            node.toFront(); // keep z-order = display order
 
-    /**
-     * Legacy fallback parser — brace-depth slice of displays[] with simple field extraction.
-     * Keeps your existing resilience if someone drops a comma or has odd spacing.
-     */
-    private List<DisplaySpec> parseDashboardDisplays_Fallback(String norm) {
-        ArrayList<DisplaySpec> out = new ArrayList<>();
-        if (norm == null || norm.isBlank()) return out;
-
-        // Find "displays" array
-        String needle = "\"displays\"";
-        int di = norm.indexOf(needle);
-        if (di < 0) return out;
-        int colon = norm.indexOf(':', di + needle.length());
-        if (colon < 0) return out;
-
-        // Find '[' start
-        int arrStart = -1;
-        for (int j = colon + 1; j < norm.length(); j++) {
-            char c = norm.charAt(j);
-            if (Character.isWhitespace(c)) continue;
-            if (c == '[') { arrStart = j; break; }
-            else return out;
+            log("[Dashboard] mounted: type=" + spec.type() +
+                " config=" + spec.configPath() + " bind=" + spec.bindKey() +
+                " center=(" + spec.x() + "," + spec.y() + ") size=(" + w + "," + h + ")");
         }
-        if (arrStart < 0) return out;
-
-        // Walk to matching ']' with depth tracking for nested objects
-        int depth = 0, arrEnd = -1;
-        for (int j = arrStart; j < norm.length(); j++) {
-            char c = norm.charAt(j);
-            if (c == '[') depth++;
-            else if (c == ']') {
-                depth--;
-                if (depth == 0) { arrEnd = j; break; }
-            }
-        }
-        if (arrEnd < 0) return out;
-
-        String arrayBody = norm.substring(arrStart + 1, arrEnd);
-        // Split top-level objects { ... } by brace-depth
-        int i = 0;
-        while (i < arrayBody.length()) {
-            // find next '{'
-            int objStart = arrayBody.indexOf('{', i);
-            if (objStart < 0) break;
-            int d = 0, objEnd = -1;
-            for (int j = objStart; j < arrayBody.length(); j++) {
-                char c = arrayBody.charAt(j);
-                if (c == '{') d++;
-                else if (c == '}') {
-                    d--;
-                    if (d == 0) { objEnd = j; break; }
-                }
-            }
-            if (objEnd < 0) break;
-
-            String obj = arrayBody.substring(objStart, objEnd + 1);
-            DisplaySpec spec = new DisplaySpec();
-            spec.type       = extractString(obj, "\"type\"");
-            spec.configPath = extractString(obj, "\"config\"");
-            spec.bindKey    = extractString(obj, "\"bind\"");
-            spec.x          = extractNumber(obj, "\"x\"");
-            spec.y          = extractNumber(obj, "\"y\"");
-            spec.w          = extractNumber(obj, "\"w\"");
-            spec.h          = extractNumber(obj, "\"h\"");
-
-            if (spec.type != null && !spec.type.isBlank()) out.add(spec);
 
-            i = objEnd + 1;
-        }
-        return out;
-    }
-
-    // Tiny helpers for the fallback string parser
-    private static String extractString(String src, String key) {
-        int k = src.indexOf(key);
-        if (k < 0) return null;
-        int colon = src.indexOf(':', k + key.length());
-        if (colon < 0) return null;
-        int firstQuote = src.indexOf('"', colon + 1);
-        if (firstQuote < 0) return null;
-        int secondQuote = src.indexOf('"', firstQuote + 1);
-        if (secondQuote < 0) return null;
-        return src.substring(firstQuote + 1, secondQuote);
-    }
-    private static double extractNumber(String src, String key) {
-        int k = src.indexOf(key);
-        if (k < 0) return 0;
-        int colon = src.indexOf(':', k + key.length());
-        if (colon < 0) return 0;
-        int j = colon + 1;
-        while (j < src.length() && Character.isWhitespace(src.charAt(j))) j++;
-        int end = j;
-        while (end < src.length()) {
-            char c = src.charAt(end);
-            if ((c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+') { end++; continue; }
-            break;
-        }
-        try {
-            return Double.parseDouble(src.substring(j, end));
-        } catch (Exception ignore) { return 0; }
+        gaugeBindings.ensureRunning();
     }
 
-    // ---------------- Gauge instantiation / config / layout helpers ----------------
-
-    private Node instantiate(String fqcn) {
-        if (fqcn == null || fqcn.isBlank()) return null;
-        try {
-            Class<?> cls = Class.forName(fqcn);
-            Constructor<?> ctor = cls.getDeclaredConstructor();
-            ctor.setAccessible(true);
-            Object obj = ctor.newInstance();
-            if (obj instanceof Node n) return n;
-            return null;
-        } catch (Throwable t) {
-            System.out.println("[Dashboard] instantiate failed for " + fqcn + ": " + t);
-            return null;
-        }
-    }
+    // ---------------- Gauge layout helpers ----------------
 
     private void trySetPrefSize(Node node, double w, double h) {
         if (!(node instanceof Region r)) return;
@@ -351,136 +184,119 @@ public final class DashboardWindow implements WindowManager.WindowSceneControlle
         return (node instanceof Region r) ? r.prefHeight(-1) : 0;
     }
 
-    // --- Helpers: config loading + reflective setConfig (no external JSON helper) ---
-
-    @SuppressWarnings("unchecked")
-    private Map<String, Object> readConfigJson(String resourcePath) {
-        try {
-            if (resourcePath == null || resourcePath.isBlank()) return java.util.Collections.emptyMap();
-            String norm = resourcePath.startsWith("/") ? resourcePath.substring(1) : resourcePath;
-            try (java.io.InputStream in = Thread.currentThread()
-                    .getContextClassLoader().getResourceAsStream(norm)) {
-                if (in == null) {
-                    System.out.println("[Dashboard] config not found on classpath: " + norm);
-                    return java.util.Collections.emptyMap();
-                }
-                String json = new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8)
-                        .replace("\r", "")
-                        .replaceAll("(?m)^\\s*\\.\\.\\.\\s*$", "")
-                        .replace('“','"').replace('”','"').replace('’','\'');
-
-                Object root = MiniJson.parse(json);
-                if (root instanceof Map) {
-                    return (Map<String, Object>) root;
-                }
-                System.out.println("[Dashboard] config root is not an object: " + norm);
-                return java.util.Collections.emptyMap();
-            }
-        } catch (Throwable t) {
-            System.out.println("[Dashboard] readConfigJson error: " + t);
-            return java.util.Collections.emptyMap();
-        }
-    }
-
-    /** If the node exposes setConfig(Map<String,Object>), invoke it reflectively. */
-    private void trySetConfig(Node node, Map<String, Object> cfg) {
-        if (node == null || cfg == null) return;
-        try {
-            Method m = node.getClass().getMethod("setConfig", Map.class);
-            m.invoke(node, cfg);
-        } catch (NoSuchMethodException nsme) {
-            // Gauge doesn't support setConfig(Map) — ignore.
-        } catch (Throwable t) {
-            System.out.println("[Dashboard] setConfig failed for " + node.getClass().getName() + ": " + t);
-        }
-    }
-
     // ---------------- Diagnostics / utils ----------------
 
-    private void probeResource(String path) {
-        if (path == null || path.isBlank()) return;
-        String norm = path.startsWith("/") ? path.substring(1) : path;
-        URL url = Thread.currentThread().getContextClassLoader().getResource(norm);
-        if (url == null) {
-            System.out.println("[Dashboard][Probe] MISSING resource: " + norm);
-        } else {
-            System.out.println("[Dashboard][Probe] found: " + url);
-        }
-    }
-
-    private void debugDumpJson(String tag, String text) {
-        if (text == null) {
-            System.out.println(tag + " is null");
-            return;
-        }
-        int len = text.length();
-        System.out.println(tag + " length=" + len);
-        System.out.println(tag + " head=\n" + text.substring(0, Math.min(400, len)));
-        if (len > 400) {
-            System.out.println(tag + " tail=\n" + text.substring(Math.max(0, len - 200)));
-        }
-    }
-
     private static void log(String s) {
         System.out.println(s);
     }
 
     // ---------------- Gauge binding support ----------------
 
-    private static final class GaugeBindingManager extends AnimationTimer {
+    private static final class GaugeBindingManager {
         private final String logPrefix;
         private final List<GaugeBindingEntry> bindings = new ArrayList<>();
+        private final Map<String, List<GaugeBindingEntry>> byKey = new HashMap<>();
 
-        GaugeBindingManager(String logPrefix) {
+        private final Metrics.Histogram handleNanos;
+        private final Metrics.Counter dispatches;
+        private KeySubscriptions.Subscription subscription;
+        private final FreshnessTracker.Listener freshnessListener = this::onFreshness;
+        private FreshnessTracker freshness;
+
+        GaugeBindingManager(String logPrefix, String metricPrefix) {
             this.logPrefix = logPrefix == null ? "" : logPrefix.trim();
+            this.handleNanos = Metrics.histogram(metricPrefix + ".bindings.update.nanos");
+            this.dispatches = Metrics.counter(metricPrefix + ".bindings.dispatch");
         }
 
         void reset() {
-            stop();
+            unsubscribe();
+            for (GaugeBindingEntry entry : bindings) StaleMarker.clear(entry.nodeRef.get());
             bindings.clear();
+            byKey.clear();
         }
 
         void register(Node node, String bindKey) {
             if (node == null) return;
-            String key = bindKey == null ? "" : bindKey.trim();
-            if (key.isEmpty()) {
+            String name = bindKey == null ? "" : bindKey.trim();
+            if (name.isEmpty()) {
                 System.out.println(logPrefix + " gauge skipped empty bind key for " + node.getClass().getName());
                 return;
             }
+            // Aliases are resolved here, once, so every later read uses the canonical key
+            String key = IndexRouter.resolve(name);
 
-            GaugeBindingEntry entry = GaugeBindingEntry.tryCreate(node, key, logPrefix);
+            GaugeBindingEntry entry = GaugeBindingEntry.tryCreate(node, key, logPrefix, dispatches);
             if (entry != null) {
                 bindings.add(entry);
+                byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(entry);
             }
+            // Plotting gauges read the key's shared history instead of sampling their own
+            ChannelHistory.attach(node, key);
         }
 
+        /** Subscribe to the bound keys (changes arrive coalesced once per FX pulse) and show current values. */
         void ensureRunning() {
-            if (!bindings.isEmpty()) {
-                start();
-            } else {
-                stop();
-            }
-        }
-
-        @Override
-        public void handle(long now) {
-            if (bindings.isEmpty()) {
-                stop();
-                return;
-            }
+            unsubscribe();
+            if (bindings.isEmpty()) return;
 
             IndexRouter router;
             try {
                 router = IndexRouter.global();
             } catch (IllegalStateException missing) {
-                // Router not ready yet; wait for next pulse.
+                System.out.println(logPrefix + " router not installed; bindings stay idle");
                 return;
             }
-
-            bindings.removeIf(entry -> !entry.update(router));
-            if (bindings.isEmpty()) {
-                stop();
+            // Subscribe before the first read so nothing applied in between is missed
+            subscription = router.subscribe(byKey.keySet(), KeySubscriptions.Delivery.fx(), this::onChanged);
+            // Grey out gauges whose channel stops updating (current outages are replayed first)
+            freshness = FreshnessTracker.global();
+            if (freshness != null) freshness.addListener(freshnessListener, Platform::runLater);
+            long t0 = System.nanoTime();
+            bindings.removeIf(entry -> !entry.update(router, 0L));
+            handleNanos.recordSince(t0);
+        }
+
+        private void unsubscribe() {
+            if (subscription != null) {
+                subscription.close();
+                subscription = null;
+            }
+            if (freshness != null) {
+                freshness.removeListener(freshnessListener);
+                freshness = null;
+            }
+        }
+
+        /** FX thread: mark or unmark the gauges bound to keys that went stale / came back. */
+        private void onFreshness(List<FreshnessTracker.Change> changes) {
+            if (freshness == null) return;
+            for (FreshnessTracker.Change c : changes) {
+                List<GaugeBindingEntry> entries = byKey.get(c.key());
+                if (entries == null) continue;
+                for (GaugeBindingEntry entry : entries) StaleMarker.apply(entry.nodeRef.get(), c.state());
+            }
+        }
+
+        /** FX thread: update only the gauges whose key changed since the last pulse. */
+        private void onChanged(KeySubscriptions.Changes changes) {
+            if (subscription == null) return;
+            IndexRouter router = IndexRouter.global();
+            long t0 = System.nanoTime();
+            for (int i = 0; i < changes.size(); i++) {
+                List<GaugeBindingEntry> entries = byKey.get(changes.key(i));
+                if (entries == null) continue;
+                long version = changes.version(i);
+                for (int j = entries.size() - 1; j >= 0; j--) {
+                    GaugeBindingEntry entry = entries.get(j);
+                    if (!entry.update(router, version)) {
+                        entries.remove(j);
+                        bindings.remove(entry);
+                    }
+                }
             }
+            handleNanos.recordSince(t0);
+            if (bindings.isEmpty()) unsubscribe();
         }
     }
 
@@ -490,44 +306,51 @@ public final class DashboardWindow implements WindowManager.WindowSceneControlle
         private final Method method;
         private final ValueKind kind;
         private final String logPrefix;
+        private final Metrics.Counter dispatches;
+        private final LatencyTracer.Probe latency;
+        private long version;
+        private long sampleTs;      // ts of the DataPoint being dispatched
 
         private boolean dispatched;
         private double lastDouble = Double.NaN;
         private String lastString;
         private IndexStore.DataPoint lastDataPoint;
 
-        private GaugeBindingEntry(Node node, String key, Method method, ValueKind kind, String logPrefix) {
+        private GaugeBindingEntry(Node node, String key, Method method, ValueKind kind, String logPrefix,
+                                  Metrics.Counter dispatches) {
             this.nodeRef = new WeakReference<>(node);
             this.key = key;
             this.method = method;
             this.kind = kind;
             this.logPrefix = logPrefix;
+            this.dispatches = dispatches;
+            this.latency = LatencyTracer.probe(key);
         }
 
-        static GaugeBindingEntry tryCreate(Node node, String key, String logPrefix) {
+        static GaugeBindingEntry tryCreate(Node node, String key, String logPrefix, Metrics.Counter dispatches) {
             Method m = findMethod(node.getClass(), "setValue", double.class);
             if (m != null) {
-                return new GaugeBindingEntry(node, key, m, ValueKind.PRIMITIVE_DOUBLE, logPrefix);
+                return new GaugeBindingEntry(node, key, m, ValueKind.PRIMITIVE_DOUBLE, logPrefix, dispatches);
             }
 
             m = findMethod(node.getClass(), "setValue", Double.class);
             if (m != null) {
-                return new GaugeBindingEntry(node, key, m, ValueKind.BOXED_DOUBLE, logPrefix);
+                return new GaugeBindingEntry(node, key, m, ValueKind.BOXED_DOUBLE, logPrefix, dispatches);
             }
 
             m = findMethod(node.getClass(), "setValue", Number.class);
             if (m != null) {
-                return new GaugeBindingEntry(node, key, m, ValueKind.NUMBER, logPrefix);
+                return new GaugeBindingEntry(node, key, m, ValueKind.NUMBER, logPrefix, dispatches);
             }
 
             m = findMethod(node.getClass(), "setText", String.class);
             if (m != null) {
-                return new GaugeBindingEntry(node, key, m, ValueKind.STRING, logPrefix);
+                return new GaugeBindingEntry(node, key, m, ValueKind.STRING, logPrefix, dispatches);
             }
 
             m = findMethod(node.getClass(), "setDataPoint", IndexStore.DataPoint.class);
             if (m != null) {
-                return new GaugeBindingEntry(node, key, m, ValueKind.DATA_POINT, logPrefix);
+                return new GaugeBindingEntry(node, key, m, ValueKind.DATA_POINT, logPrefix, dispatches);
             }
 
             System.out.println((logPrefix == null ? "" : logPrefix + " ")
@@ -535,19 +358,24 @@ public final class DashboardWindow implements WindowManager.WindowSceneControlle
             return null;
         }
 
-        boolean update(IndexRouter router) {
+        /** version: store version that carried the value (for latency tracing), 0 when unknown. */
+        boolean update(IndexRouter router, long version) {
             Node node = nodeRef.get();
             if (node == null) {
                 return false;
             }
+            this.version = version;
 
             try {
+                // One read: the value dispatched and the ts traced come from the same DataPoint
+                IndexStore.DataPoint dp = router.getRaw(key);
+                sampleTs = dp == null ? 0L : dp.ts;
                 switch (kind) {
-                    case PRIMITIVE_DOUBLE -> updatePrimitiveDouble(node, router);
-                    case BOXED_DOUBLE -> updateBoxedDouble(node, router);
-                    case NUMBER -> updateNumber(node, router);
-                    case STRING -> updateString(node, router);
-                    case DATA_POINT -> updateDataPoint(node, router);
+                    case PRIMITIVE_DOUBLE -> updatePrimitiveDouble(node, dp);
+                    case BOXED_DOUBLE -> updateBoxedDouble(node, dp);
+                    case NUMBER -> updateNumber(node, dp);
+                    case STRING -> updateString(node, dp);
+                    case DATA_POINT -> updateDataPoint(node, dp);
                 }
             } catch (Throwable t) {
                 System.out.println((logPrefix == null ? "" : logPrefix + " ")
@@ -557,51 +385,58 @@ public final class DashboardWindow implements WindowManager.WindowSceneControlle
             return true;
         }
 
-        private void updatePrimitiveDouble(Node node, IndexRouter router) throws Exception {
-            double value = router.getDouble(key);
+        private void updatePrimitiveDouble(Node node, IndexStore.DataPoint dp) throws Exception {
+            double value = dp == null ? Double.NaN : dp.v;
             if (!dispatched || compareDoubleChanged(value, lastDouble)) {
-                method.invoke(node, value);
+                dispatch(node, value);
                 lastDouble = value;
                 dispatched = true;
             }
         }
 
-        private void updateBoxedDouble(Node node, IndexRouter router) throws Exception {
-            double value = router.getDouble(key);
+        private void updateBoxedDouble(Node node, IndexStore.DataPoint dp) throws Exception {
+            double value = dp == null ? Double.NaN : dp.v;
             if (!dispatched || compareDoubleChanged(value, lastDouble)) {
-                method.invoke(node, Double.valueOf(value));
+                dispatch(node, Double.valueOf(value));
                 lastDouble = value;
                 dispatched = true;
             }
         }
 
-        private void updateNumber(Node node, IndexRouter router) throws Exception {
-            double value = router.getDouble(key);
+        private void updateNumber(Node node, IndexStore.DataPoint dp) throws Exception {
+            double value = dp == null ? Double.NaN : dp.v;
             if (!dispatched || compareDoubleChanged(value, lastDouble)) {
-                method.invoke(node, Double.valueOf(value));
+                dispatch(node, Double.valueOf(value));
                 lastDouble = value;
                 dispatched = true;
             }
         }
 
-        private void updateString(Node node, IndexRouter router) throws Exception {
-            String value = router.getString(key);
+        private void updateString(Node node, IndexStore.DataPoint dp) throws Exception {
+            String value = IndexRouter.asString(dp);
             if (!dispatched || !Objects.equals(value, lastString)) {
-                method.invoke(node, value);
+                dispatch(node, value);
                 lastString = value;
                 dispatched = true;
             }
         }
 
-        private void updateDataPoint(Node node, IndexRouter router) throws Exception {
-            IndexStore.DataPoint value = router.getRaw(key);
+        private void updateDataPoint(Node node, IndexStore.DataPoint value) throws Exception {
             if (!dispatched || !sameDataPoint(value, lastDataPoint)) {
-                method.invoke(node, value);
+                dispatch(node, value);
                 lastDataPoint = value;
                 dispatched = true;
             }
         }
 
+        /** Invoke the gauge setter and trace dispatch → redraw for the key. */
+        private void dispatch(Node node, Object value) throws Exception {
+            long t0 = System.nanoTime();
+            method.invoke(node, value);
+            dispatches.inc();
+            latency.record(version, sampleTs, t0, System.nanoTime());
+        }
+
         private static boolean compareDoubleChanged(double a, double b) {
             if (Double.isNaN(a) && Double.isNaN(b)) return false;
             return Double.compare(a, b) != 0;
@@ -634,167 +469,4 @@ public final class DashboardWindow implements WindowManager.WindowSceneControlle
         STRING,
         DATA_POINT
     }
-
-    // ---------------- Minimal JSON parser ----------------
-
-    /** Minimal JSON parser (objects, arrays, strings, numbers, booleans, null). */
-    private static final class MiniJson {
-        private final String s;
-        private int i;
-
-        private MiniJson(String s) { this.s = s; this.i = 0; }
-
-        static Object parse(String s) {
-            return new MiniJson(s).parseValueTrimmed();
-        }
-
-        private Object parseValueTrimmed() {
-            skipWs();
-            Object v = parseValue();
-            skipWs();
-            return v;
-        }
-
-        private Object parseValue() {
-            skipWs();
-            if (eof()) throw err("Unexpected end");
-            char c = s.charAt(i);
-            if (c == '{') return parseObject();
-            if (c == '[') return parseArray();
-            if (c == '"') return parseString();
-            if (c == 't' || c == 'f') return parseBoolean();
-            if (c == 'n') return parseNull();
-            if (c == '-' || isDigit(c)) return parseNumber();
-            throw err("Unexpected char: " + c);
-        }
-
-        @SuppressWarnings("")
-        private Map<String,Object> parseObject() {
-            expect('{');
-            java.util.LinkedHashMap<String,Object> map = new java.util.LinkedHashMap<>();
-            skipWs();
-            if (peek('}')) { i++; return map; }
-            while (true) {
-                skipWs();
-                String key = parseString();
-                skipWs();
-                expect(':');
-                skipWs();
-                Object val = parseValue();
-                map.put(key, val);
-                skipWs();
-                if (peek('}')) { i++; break; }
-                expect(',');
-            }
-            return map;
-        }
-
-        private java.util.List<Object> parseArray() {
-            expect('[');
-            java.util.ArrayList<Object> list = new java.util.ArrayList<>();
-            skipWs();
-            if (peek(']')) { i++; return list; }
-            while (true) {
-                skipWs();
-                list.add(parseValue());
-                skipWs();
-                if (peek(']')) { i++; break; }
-                expect(',');
-            }
-            return list;
-        }
-
-        private String parseString() {
-            expect('"');
-            StringBuilder sb = new StringBuilder();
-            while (!eof()) {
-                char c = s.charAt(i++);
-                if (c == '"') break;
-                if (c == '\\') {
-                    if (eof()) throw err("Bad escape");
-                    char e = s.charAt(i++);
-                    switch (e) {
-                        case '"': sb.append('"'); break;
-                        case '\\': sb.append('\\'); break;
-                        case '/': sb.append('/'); break;
-                        case 'b': sb.append('\b'); break;
-                        case 'f': sb.append('\f'); break;
-                        case 'n': sb.append('\n'); break;
-                        case 'r': sb.append('\r'); break;
-                        case 't': sb.append('\t'); break;
-                        case 'u':
-                            if (i+4 > s.length()) throw err("Bad \\u escape");
-                            String hex = s.substring(i, i+4);
-                            i += 4;
-                            sb.append((char)Integer.parseInt(hex, 16));
-                            break;
-                        default: throw err("Illegal escape: \\" + e);
-                    }
-                } else {
-                    sb.append(c);
-                }
-            }
-            return sb.toString();
-        }
-
-        private Boolean parseBoolean() {
-            if (matchAhead("true"))  { i += 4; return Boolean.TRUE; }
-            if (matchAhead("false")) { i += 5; return Boolean.FALSE; }
-            throw err("Bad boolean");
-        }
-
-        private Object parseNull() {
-            if (matchAhead("null")) { i += 4; return null; }
-            throw err("Bad null");
-        }
-
-        private Number parseNumber() {
-            int start = i;
-            if (peek('-')) i++;
-            while (!eof() && isDigit(s.charAt(i))) i++;
-            if (peek('.')) {
-                i++;
-                while (!eof() && isDigit(s.charAt(i))) i++;
-            }
-            if (peek('e') || peek('E')) {
-                i++;
-                if (peek('+') || peek('-')) i++;
-                while (!eof() && isDigit(s.charAt(i))) i++;
-            }
-            String m = s.substring(start, i);
-            try {
-                if (m.indexOf('.') >= 0 || m.indexOf('e') >= 0 || m.indexOf('E') >= 0) return Double.parseDouble(m);
-                long lv = Long.parseLong(m);
-                if (lv >= Integer.MIN_VALUE && lv <= Integer.MAX_VALUE) return (int) lv;
-                return lv;
-            } catch (NumberFormatException nfe) {
-                throw err("Bad number: " + m);
-            }
-        }
-
-        // --- utils ---
-        private void skipWs() {
-            while (!eof()) {
-                char c = s.charAt(i);
-                if (c==' ' || c=='\t' || c=='\n' || c=='\r') i++;
-                else break;
-            }
-        }
-        private void expect(char ch) {
-            if (eof() || s.charAt(i) != ch) throw err("Expected '" + ch + "'");
-            i++;
-        }
-        private boolean peek(char ch) { return !eof() && s.charAt(i) == ch; }
-        private boolean eof() { return i >= s.length(); }
-        private boolean isDigit(char c) { return c >= '0' && c <= '9'; }
-        private boolean matchAhead(String lit) {
-            return s.regionMatches(i, lit, 0, lit.length());
-        }
-        private IllegalArgumentException err(String msg) {
-            int from = Math.max(0, i-20), to = Math.min(s.length(), i+20);
-            return new IllegalArgumentException(msg + " at " + i + " near: " + s.substring(from, to));
-        }
-    }
 }
-
-
@@ -0,0 +1,201 @@
+package gauges.system.windows;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import gauges.system.Metrics;
+import gauges.system.ModeLayout;
+import javafx.scene.Node;
+
+/**
+ * GaugeMounter
+ *
+ * Keeps gauge nodes alive across mode switches instead of rebuilding them.
+ * - mount(displays) diffs the requested displays against what is currently mounted:
+ *   a gauge whose class and config are unchanged is kept as-is (the caller only moves/resizes it),
+ *   anything else is taken from a per-class pool when a parked gauge has the identical config,
+ *   or instantiated. A parked gauge is never re-configured: setConfig treats the current field
+ *   values as defaults, so keys missing from the new config would keep the old config's values.
+ * - Gauges that are no longer requested are parked in the pool for the next switch (oldest
+ *   evicted when a class's pool is full).
+ * - prepare(displays) builds and configures the gauges of an upcoming mode off-screen, so the
+ *   later mount() only swaps nodes in.
+ *
+ * FX thread only. Nodes are returned in display order; a slot is null when the gauge
+ * could not be created.
+ */
+final class GaugeMounter {
+
+    /** Upper bound of parked nodes per gauge class; the oldest is dropped to make room. */
+    private static final int MAX_POOLED_PER_TYPE = 8;
+
+    private static final Metrics.Counter KEPT    = Metrics.counter("mount.kept");
+    private static final Metrics.Counter REUSED  = Metrics.counter("mount.pool.reused");
+    private static final Metrics.Counter CREATED = Metrics.counter("mount.created");
+    private static final Metrics.Counter PREPARED = Metrics.counter("mount.prepared");
+
+    private final String logPrefix;
+    private final List<Slot> mounted = new ArrayList<>();
+    private final Map<Class<?>, ArrayDeque<Slot>> pool = new HashMap<>();
+
+    /** A live gauge node plus the config it was last configured with. */
+    private static final class Slot {
+        final Node node;
+        Map<String, Object> config;
+
+        Slot(Node node, Map<String, Object> config) {
+            this.node = node;
+            this.config = config;
+        }
+    }
+
+    GaugeMounter(String logPrefix) {
+        this.logPrefix = logPrefix == null ? "" : logPrefix.trim();
+    }
+
+    /** Resolve one node per display, reusing mounted and pooled gauges wherever possible. */
+    List<Node> mount(List<ModeLayout.Display> displays) {
+        int n = displays.size();
+        Slot[] result = new Slot[n];
+        List<Slot> previous = new ArrayList<>(mounted);
+
+        // 1) Keep gauges whose class and config are unchanged
+        for (int i = 0; i < n; i++) {
+            ModeLayout.Display d = displays.get(i);
+            if (d.gaugeClass() == null) continue;
+            Slot hit = takeMatching(previous, d.gaugeClass(), d.config());
+            if (hit != null) {
+                result[i] = hit;
+                KEPT.inc();
+            }
+        }
+
+        // 2) Everything else comes from the pool or is created fresh
+        for (int i = 0; i < n; i++) {
+            if (result[i] != null) continue;
+            ModeLayout.Display d = displays.get(i);
+            if (d.gaugeClass() == null) continue;
+
+            Slot slot = fromPool(d.gaugeClass(), d.config());
+            if (slot != null) {
+                REUSED.inc();
+            } else {
+                Node node = instantiate(d.gaugeClass());
+                if (node == null) continue;
+                slot = new Slot(node, null);
+                CREATED.inc();
+            }
+            if (slot.config == null) {
+                trySetConfig(slot.node, d.config());
+                slot.config = d.config();
+            }
+            result[i] = slot;
+        }
+
+        // 3) Park whatever is no longer used
+        for (Slot s : previous) park(s);
+
+        mounted.clear();
+        List<Node> nodes = new ArrayList<>(n);
+        for (Slot s : result) {
+            if (s != null) mounted.add(s);
+            nodes.add(s == null ? null : s.node);
+        }
+        return nodes;
+    }
+
+    /**
+     * Pre-build gauges for displays that neither the mounted set nor the pool can serve with an
+     * identical config. Built nodes are configured and parked; nothing is attached to the scene.
+     */
+    void prepare(List<ModeLayout.Display> displays) {
+        List<Slot> available = new ArrayList<>(mounted);
+        for (ArrayDeque<Slot> q : pool.values()) available.addAll(q);
+
+        for (ModeLayout.Display d : displays) {
+            if (d.gaugeClass() == null) continue;
+            if (takeMatching(available, d.gaugeClass(), d.config()) != null) continue;
+
+            Node node = instantiate(d.gaugeClass());
+            if (node == null) continue;
+            trySetConfig(node, d.config());
+            park(new Slot(node, d.config()));
+            PREPARED.inc();
+        }
+    }
+
+    /** Park every mounted gauge (e.g., when the window closes or the mode has no displays). */
+    void unmountAll() {
+        for (Slot s : mounted) park(s);
+        mounted.clear();
+    }
+
+    // ---------------- Pool ----------------
+
+    private static Slot takeMatching(List<Slot> candidates, Class<?> cls, Map<String, Object> config) {
+        for (Iterator<Slot> it = candidates.iterator(); it.hasNext(); ) {
+            Slot s = it.next();
+            if (s.node.getClass() == cls && Objects.equals(s.config, config)) {
+                it.remove();
+                return s;
+            }
+        }
+        return null;
+    }
+
+    /** A parked gauge of cls configured exactly like config, or null. */
+    private Slot fromPool(Class<?> cls, Map<String, Object> config) {
+        ArrayDeque<Slot> q = pool.get(cls);
+        if (q == null || q.isEmpty()) return null;
+        for (Iterator<Slot> it = q.iterator(); it.hasNext(); ) {
+            Slot s = it.next();
+            if (Objects.equals(s.config, config)) {
+                it.remove();
+                return s;
+            }
+        }
+        return null;
+    }
+
+    private void park(Slot s) {
+        ArrayDeque<Slot> q = pool.computeIfAbsent(s.node.getClass(), k -> new ArrayDeque<>());
+        if (q.size() >= MAX_POOLED_PER_TYPE) q.pollFirst();
+        q.addLast(s);
+    }
+
+    // ---------------- Reflection helpers ----------------
+
+    private Node instantiate(Class<?> cls) {
+        try {
+            Constructor<?> ctor = cls.getDeclaredConstructor();
+            ctor.setAccessible(true);
+            Object obj = ctor.newInstance();
+            if (obj instanceof Node n) return n;
+            System.out.println(logPrefix + " not a Node: " + cls.getName());
+            return null;
+        } catch (Throwable t) {
+            System.out.println(logPrefix + " instantiate failed for " + cls.getName() + ": " + t);
+            return null;
+        }
+    }
+
+    /** If the node exposes setConfig(Map<String,Object>), invoke it reflectively. */
+    private void trySetConfig(Node node, Map<String, Object> cfg) {
+        if (node == null || cfg == null) return;
+        try {
+            Method m = node.getClass().getMethod("setConfig", Map.class);
+            m.invoke(node, cfg);
+        } catch (NoSuchMethodException nsme) {
+            // Gauge doesn't support setConfig(Map) — ignore.
+        } catch (Throwable t) {
+            System.out.println(logPrefix + " setConfig failed for " + node.getClass().getName() + ": " + t);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package gauges.system.windows;
+
+import gauges.system.pipeline.FreshnessTracker;
+import javafx.scene.Node;
+import javafx.scene.effect.ColorAdjust;
+import javafx.scene.effect.Effect;
+
+/**
+ * StaleMarker
+ *
+ * Greys out a bound gauge while its channel is stale (desaturated) or dead (also dimmed), so a
+ * frozen value is not mistaken for a live one. Works on any Node; the gauge's own effect is kept
+ * in the node properties and put back when the channel is fresh again.
+ */
+final class StaleMarker {
+
+    private static final String SAVED_EFFECT = "gauges.stale.savedEffect";
+    private static final Effect STALE = new ColorAdjust(0, -1.0, -0.25, 0);
+    private static final Effect DEAD = new ColorAdjust(0, -1.0, -0.55, 0);
+
+    private StaleMarker() { }
+
+    /** FX thread: show state on node. */
+    static void apply(Node node, FreshnessTracker.State state) {
+        if (node == null) return;
+        boolean marked = node.getProperties().containsKey(SAVED_EFFECT);
+        Effect mark = switch (state) {
+            case STALE -> STALE;
+            case DEAD -> DEAD;
+            default -> null;
+        };
+        if (mark == null) {
+            if (marked) node.setEffect((Effect) node.getProperties().remove(SAVED_EFFECT));
+            return;
+        }
+        if (!marked) node.getProperties().put(SAVED_EFFECT, node.getEffect());
+        node.setEffect(mark);
+    }
+
+    /** FX thread: back to the gauge's own look (unbinding or re-mounting). */
+    static void clear(Node node) {
+        apply(node, FreshnessTracker.State.FRESH);
+    }
+}
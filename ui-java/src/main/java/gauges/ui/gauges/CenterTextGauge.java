@@ -1,8 +1,9 @@
 package gauges.ui.gauges;
 
 import java.util.Map;
-import java.util.Objects;
 
+import gauges.helpers.JsonConfig;
+import gauges.system.Metrics;
 import javafx.animation.AnimationTimer;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
@@ -28,6 +29,8 @@ import javafx.scene.text.TextAlignment;
  */
 public class CenterTextGauge extends Region {
 
+    private static final Metrics.Histogram DRAW_NANOS = Metrics.histogram("gauge.center_text.draw.nanos");
+
     private final Canvas canvas = new Canvas(320, 180);
     private final DoubleProperty value = new SimpleDoubleProperty(0);
 
@@ -61,11 +64,31 @@ public class CenterTextGauge extends Region {
         }
     };
 
+    // Config paths, compiled once (see JsonConfig.path)
+    private static final JsonConfig.Path RANGE_MIN = JsonConfig.path("range.min");
+    private static final JsonConfig.Path RANGE_MAX = JsonConfig.path("range.max");
+    private static final JsonConfig.Path DISPLAY_TITLE = JsonConfig.path("display.title");
+    private static final JsonConfig.Path DISPLAY_FORMAT = JsonConfig.path("display.format");
+    private static final JsonConfig.Path DISPLAY_SUFFIX = JsonConfig.path("display.suffix");
+    private static final JsonConfig.Path STYLES_BG = JsonConfig.path("styles.bg");
+    private static final JsonConfig.Path STYLES_TITLE = JsonConfig.path("styles.title");
+    private static final JsonConfig.Path STYLES_VALUE = JsonConfig.path("styles.value");
+    private static final JsonConfig.Path STYLES_RING_BG = JsonConfig.path("styles.ring.bg");
+    private static final JsonConfig.Path STYLES_RING_FG = JsonConfig.path("styles.ring.fg");
+    private static final JsonConfig.Path LAYOUT_WIDTH = JsonConfig.path("layout.width");
+    private static final JsonConfig.Path LAYOUT_HEIGHT = JsonConfig.path("layout.height");
+    private static final JsonConfig.Path SIMULATE_ENABLED = JsonConfig.path("simulate.enabled");
+    private static final JsonConfig.Path SIMULATE_MIN = JsonConfig.path("simulate.min");
+    private static final JsonConfig.Path SIMULATE_MAX = JsonConfig.path("simulate.max");
+    private static final JsonConfig.Path SIMULATE_SPEED_HZ = JsonConfig.path("simulate.speed_hz");
+
     public CenterTextGauge() {
         getChildren().add(canvas);
         value.addListener((obs, ov, nv) -> draw());
         widthProperty().addListener((o, a, b) -> resizeCanvas());
         heightProperty().addListener((o, a, b) -> resizeCanvas());
+        // Simulation only runs while shown (pooled gauges sit idle off-scene)
+        sceneProperty().addListener((o, a, b) -> { if (b != null && simEnabled) simTimer.start(); else simTimer.stop(); });
         setPrefSize(canvas.getWidth(), canvas.getHeight());
         draw();
     }
@@ -74,31 +97,31 @@ public class CenterTextGauge extends Region {
     public void setConfig(Map<String, Object> cfg) {
         if (cfg == null) return;
 
-        min = d(cfg, "range.min", min);
-        max = d(cfg, "range.max", max);
-        title = s(cfg, "display.title", title);
-        format = s(cfg, "display.format", format);
-        suffix = s(cfg, "display.suffix", suffix);
+        min = d(cfg, RANGE_MIN, min);
+        max = d(cfg, RANGE_MAX, max);
+        title = s(cfg, DISPLAY_TITLE, title);
+        format = s(cfg, DISPLAY_FORMAT, format);
+        suffix = s(cfg, DISPLAY_SUFFIX, suffix);
 
-        bg = color(s(cfg, "styles.bg", "#0D0F14"));
-        titleColor = color(s(cfg, "styles.title", "#9AA4B2"));
-        valueColor = color(s(cfg, "styles.value", "#28E0A6"));
-        ringBack   = color(s(cfg, "styles.ring.bg", "#1B2230"));
-        ringFore   = color(s(cfg, "styles.ring.fg", "#28E0A6"));
+        bg = color(s(cfg, STYLES_BG, "#0D0F14"));
+        titleColor = color(s(cfg, STYLES_TITLE, "#9AA4B2"));
+        valueColor = color(s(cfg, STYLES_VALUE, "#28E0A6"));
+        ringBack   = color(s(cfg, STYLES_RING_BG, "#1B2230"));
+        ringFore   = color(s(cfg, STYLES_RING_FG, "#28E0A6"));
 
-        double w = d(cfg, "layout.width", canvas.getWidth());
-        double h = d(cfg, "layout.height", canvas.getHeight());
+        double w = d(cfg, LAYOUT_WIDTH, canvas.getWidth());
+        double h = d(cfg, LAYOUT_HEIGHT, canvas.getHeight());
         canvas.setWidth(w);
         canvas.setHeight(h);
         setPrefSize(w, h);
 
-        simEnabled = b(cfg, "simulate.enabled", false);
-        simMin = d(cfg, "simulate.min", min);
-        simMax = d(cfg, "simulate.max", max);
-        simHz = d(cfg, "simulate.speed_hz", 0.5);
+        simEnabled = b(cfg, SIMULATE_ENABLED, false);
+        simMin = d(cfg, SIMULATE_MIN, min);
+        simMax = d(cfg, SIMULATE_MAX, max);
+        simHz = d(cfg, SIMULATE_SPEED_HZ, 0.5);
         phase = 0;
         lastNs = 0;
-        if (simEnabled) simTimer.start(); else simTimer.stop();
+        if (simEnabled && getScene() != null) simTimer.start(); else simTimer.stop();
 
         draw();
     }
@@ -140,6 +163,12 @@ public class CenterTextGauge extends Region {
 
     // --- Draw ---
     private void draw() {
+        long t0 = System.nanoTime();
+        render();
+        DRAW_NANOS.recordSince(t0);
+    }
+
+    private void render() {
         GraphicsContext g = canvas.getGraphicsContext2D();
         double W = canvas.getWidth();
         double H = canvas.getHeight();
@@ -181,35 +210,16 @@ public class CenterTextGauge extends Region {
     }
 
     // --- Config Helpers ---
-    @SuppressWarnings("unchecked")
-    private static Object get(Map<String, Object> m, String path) {
-        String[] parts = path.split("\\.");
-        Object cur = m;
-        for (String p : parts) {
-            if (!(cur instanceof Map)) return null;
-            cur = ((Map<String, Object>) cur).get(p);
-            if (cur == null) return null;
-        }
-        return cur;
-    }
-
-    private static double d(Map<String, Object> m, String p, double def) {
-        Object o = get(m, p);
-        if (o instanceof Number n) return n.doubleValue();
-        if (o instanceof String s) try { return Double.parseDouble(s); } catch (Exception ignore) {}
-        return def;
+    private static double d(Map<String, Object> m, JsonConfig.Path p, double def) {
+        return p.getDouble(m, def);
     }
 
-    private static String s(Map<String, Object> m, String p, String def) {
-        Object o = get(m, p);
-        return (o == null) ? def : Objects.toString(o);
+    private static String s(Map<String, Object> m, JsonConfig.Path p, String def) {
+        return p.getString(m, def);
     }
 
-    private static boolean b(Map<String, Object> m, String p, boolean def) {
-        Object o = get(m, p);
-        if (o instanceof Boolean B) return B;
-        if (o instanceof String S) return Boolean.parseBoolean(S);
-        return def;
+    private static boolean b(Map<String, Object> m, JsonConfig.Path p, boolean def) {
+        return p.getBoolean(m, def);
     }
 
     private static Color color(String hex) {
@@ -1,8 +1,9 @@
 package gauges.ui.gauges;
 
 import java.util.Map;
-import java.util.Objects;
 
+import gauges.helpers.JsonConfig;
+import gauges.system.Metrics;
 import javafx.animation.AnimationTimer;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
@@ -29,6 +30,8 @@ import javafx.scene.text.TextAlignment;
  */
 public class NoTextGaugeDigital extends Region {
 
+    private static final Metrics.Histogram DRAW_NANOS = Metrics.histogram("gauge.no_text_digital.draw.nanos");
+
     private final Canvas canvas = new Canvas(300, 140);
     private final DoubleProperty value = new SimpleDoubleProperty(0);
 
@@ -60,6 +63,21 @@ public class NoTextGaugeDigital extends Region {
         }
     };
 
+    // Config paths, compiled once (see JsonConfig.path)
+    private static final JsonConfig.Path RANGE_MIN = JsonConfig.path("range.min");
+    private static final JsonConfig.Path RANGE_MAX = JsonConfig.path("range.max");
+    private static final JsonConfig.Path DISPLAY_FORMAT = JsonConfig.path("display.format");
+    private static final JsonConfig.Path DISPLAY_SUFFIX = JsonConfig.path("display.suffix");
+    private static final JsonConfig.Path STYLES_BG = JsonConfig.path("styles.bg");
+    private static final JsonConfig.Path STYLES_FG = JsonConfig.path("styles.fg");
+    private static final JsonConfig.Path STYLES_ACCENT = JsonConfig.path("styles.accent");
+    private static final JsonConfig.Path LAYOUT_WIDTH = JsonConfig.path("layout.width");
+    private static final JsonConfig.Path LAYOUT_HEIGHT = JsonConfig.path("layout.height");
+    private static final JsonConfig.Path SIMULATE_ENABLED = JsonConfig.path("simulate.enabled");
+    private static final JsonConfig.Path SIMULATE_MIN = JsonConfig.path("simulate.min");
+    private static final JsonConfig.Path SIMULATE_MAX = JsonConfig.path("simulate.max");
+    private static final JsonConfig.Path SIMULATE_SPEED_HZ = JsonConfig.path("simulate.speed_hz");
+
     public NoTextGaugeDigital() {
         getChildren().add(canvas);
 
@@ -67,6 +85,8 @@ public class NoTextGaugeDigital extends Region {
         value.addListener((obs, ov, nv) -> draw());
         widthProperty().addListener((o, a, b) -> resizeCanvas());
         heightProperty().addListener((o, a, b) -> resizeCanvas());
+        // Simulation only runs while shown (pooled gauges sit idle off-scene)
+        sceneProperty().addListener((o, a, b) -> { if (b != null && simEnabled) simTimer.start(); else simTimer.stop(); });
 
         // Initial paint
         resizeCanvas();
@@ -78,33 +98,33 @@ public class NoTextGaugeDigital extends Region {
         if (cfg == null) return;
 
         // Range
-        min = readD(cfg, "range.min", min);
-        max = readD(cfg, "range.max", max);
+        min = readD(cfg, RANGE_MIN, min);
+        max = readD(cfg, RANGE_MAX, max);
 
         // Display
-        format = readS(cfg, "display.format", format);
-        suffix = readS(cfg, "display.suffix", suffix);
+        format = readS(cfg, DISPLAY_FORMAT, format);
+        suffix = readS(cfg, DISPLAY_SUFFIX, suffix);
 
         // Styles
-        bg     = parseColor(readS(cfg, "styles.bg", "#101015"));
-        fg     = parseColor(readS(cfg, "styles.fg", "#00D1FF"));
-        accent = parseColor(readS(cfg, "styles.accent", "#2A2E39"));
+        bg     = parseColor(readS(cfg, STYLES_BG, "#101015"));
+        fg     = parseColor(readS(cfg, STYLES_FG, "#00D1FF"));
+        accent = parseColor(readS(cfg, STYLES_ACCENT, "#2A2E39"));
 
         // Layout (initial preferred size only; Region will still resize)
-        double w = readD(cfg, "layout.width", canvas.getWidth());
-        double h = readD(cfg, "layout.height", canvas.getHeight());
+        double w = readD(cfg, LAYOUT_WIDTH, canvas.getWidth());
+        double h = readD(cfg, LAYOUT_HEIGHT, canvas.getHeight());
         canvas.setWidth(w);
         canvas.setHeight(h);
         setPrefSize(w, h);
 
         // Simulation
-        simEnabled = readB(cfg, "simulate.enabled", false);
-        simMin     = readD(cfg, "simulate.min", min);
-        simMax     = readD(cfg, "simulate.max", max);
-        simSpeedHz = readD(cfg, "simulate.speed_hz", 0.5);
+        simEnabled = readB(cfg, SIMULATE_ENABLED, false);
+        simMin     = readD(cfg, SIMULATE_MIN, min);
+        simMax     = readD(cfg, SIMULATE_MAX, max);
+        simSpeedHz = readD(cfg, SIMULATE_SPEED_HZ, 0.5);
         simPhase = 0;
         lastNs = 0;
-        if (simEnabled) simTimer.start(); else simTimer.stop();
+        if (simEnabled && getScene() != null) simTimer.start(); else simTimer.stop();
 
         draw();
     }
@@ -147,6 +167,12 @@ public class NoTextGaugeDigital extends Region {
     }
 
     private void draw() {
+        long t0 = System.nanoTime();
+        render();
+        DRAW_NANOS.recordSince(t0);
+    }
+
+    private void render() {
         GraphicsContext g = canvas.getGraphicsContext2D();
         double W = canvas.getWidth();
         double H = canvas.getHeight();
@@ -193,37 +219,16 @@ public class NoTextGaugeDigital extends Region {
 
     // --- Tiny config helpers
 
-    @SuppressWarnings("unchecked")
-    private static Object getPath(Map<String, Object> m, String path) {
-        String[] parts = path.split("\\.");
-        Object cur = m;
-        for (String p : parts) {
-            if (!(cur instanceof Map)) return null;
-            cur = ((Map<String, Object>) cur).get(p);
-            if (cur == null) return null;
-        }
-        return cur;
-    }
-
-    private static double readD(Map<String, Object> m, String p, double def) {
-        Object o = getPath(m, p);
-        if (o instanceof Number n) return n.doubleValue();
-        if (o instanceof String s) {
-            try { return Double.parseDouble(s); } catch (Exception ignore) {}
-        }
-        return def;
+    private static double readD(Map<String, Object> m, JsonConfig.Path p, double def) {
+        return p.getDouble(m, def);
     }
 
-    private static String readS(Map<String, Object> m, String p, String def) {
-        Object o = getPath(m, p);
-        return (o == null) ? def : Objects.toString(o);
+    private static String readS(Map<String, Object> m, JsonConfig.Path p, String def) {
+        return p.getString(m, def);
     }
 
-    private static boolean readB(Map<String, Object> m, String p, boolean def) {
-        Object o = getPath(m, p);
-        if (o instanceof Boolean b) return b;
-        if (o instanceof String s) return Boolean.parseBoolean(s);
-        return def;
+    private static boolean readB(Map<String, Object> m, JsonConfig.Path p, boolean def) {
+        return p.getBoolean(m, def);
     }
 
     private static Color parseColor(String hex) {
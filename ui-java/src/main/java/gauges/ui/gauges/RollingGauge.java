@@ -3,8 +3,10 @@ package gauges.ui.gauges;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.Map;
-import java.util.Objects;
 
+import gauges.helpers.JsonConfig;
+import gauges.system.Metrics;
+import gauges.system.pipeline.ChannelHistory;
 import javafx.animation.AnimationTimer;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
@@ -17,19 +19,27 @@ import javafx.scene.paint.Color;
  * Config keys (all optional, safe defaults provided):
  *   range.min / range.max          : number (value clamp & vertical scale)
  *   display.history                : number (samples kept, e.g., 240)
+ *   display.window_ms              : number (time span shown from shared history; default history/60 s)
  *   layout.width / layout.height   : number (initial preferred size)
  *   styles.bg / styles.grid / styles.line : hex colors
  *   simulate.enabled               : boolean
  *   simulate.min / .max            : number (sim range)
  *   simulate.speed_hz              : number (cycles per second)
+ *
+ * When bound to a key, the binding hands over the key's shared ChannelHistory series and the
+ * graph is drawn from it (downsampled to one min/max bucket per point); the gauge's own sample
+ * buffer is only used unbound or while simulating.
  */
 public class RollingGauge extends Region {
 
+    private static final Metrics.Histogram DRAW_NANOS = Metrics.histogram("gauge.rolling.draw.nanos");
+
     private final Canvas canvas = new Canvas(420, 160);
 
     // Range & look
     private double min = 0, max = 100;
     private int history = 240;
+    private double windowMs = 4000;
     private Color bg   = Color.web("#0B0D12");
     private Color grid = Color.web("#223");
     private Color line = Color.web("#00B2FF");
@@ -37,6 +47,9 @@ public class RollingGauge extends Region {
     // Data
     private final Deque<Double> samples = new ArrayDeque<>();
     private double currentValue = 0;
+    private ChannelHistory.Series shared;
+    private double[] bucketMin = new double[0];
+    private double[] bucketMax = new double[0];
 
     // Simulation
     private boolean simEnabled = false;
@@ -57,11 +70,26 @@ public class RollingGauge extends Region {
                 currentValue = mid + Math.sin(phase) * amp;
             }
 
-            pushSample(currentValue);
+            if (!useShared()) pushSample(currentValue);
             draw();
         }
     };
 
+    // Config paths, compiled once (see JsonConfig.path)
+    private static final JsonConfig.Path RANGE_MIN = JsonConfig.path("range.min");
+    private static final JsonConfig.Path RANGE_MAX = JsonConfig.path("range.max");
+    private static final JsonConfig.Path DISPLAY_HISTORY = JsonConfig.path("display.history");
+    private static final JsonConfig.Path DISPLAY_WINDOW_MS = JsonConfig.path("display.window_ms");
+    private static final JsonConfig.Path STYLES_BG = JsonConfig.path("styles.bg");
+    private static final JsonConfig.Path STYLES_GRID = JsonConfig.path("styles.grid");
+    private static final JsonConfig.Path STYLES_LINE = JsonConfig.path("styles.line");
+    private static final JsonConfig.Path LAYOUT_WIDTH = JsonConfig.path("layout.width");
+    private static final JsonConfig.Path LAYOUT_HEIGHT = JsonConfig.path("layout.height");
+    private static final JsonConfig.Path SIMULATE_ENABLED = JsonConfig.path("simulate.enabled");
+    private static final JsonConfig.Path SIMULATE_MIN = JsonConfig.path("simulate.min");
+    private static final JsonConfig.Path SIMULATE_MAX = JsonConfig.path("simulate.max");
+    private static final JsonConfig.Path SIMULATE_SPEED_HZ = JsonConfig.path("simulate.speed_hz");
+
     public RollingGauge() {
         getChildren().add(canvas);
 
@@ -70,7 +98,17 @@ public class RollingGauge extends Region {
         heightProperty().addListener((o, a, b) -> resizeCanvas());
 
         setPrefSize(canvas.getWidth(), canvas.getHeight());
-        timer.start(); // keep the rolling effect alive
+
+        // Keep the rolling effect alive only while shown (pooled gauges sit idle off-scene)
+        // (a parked gauge also drops its history; the next binding attaches one again)
+        sceneProperty().addListener((o, a, b) -> {
+            if (b != null) {
+                timer.start();
+            } else {
+                timer.stop();
+                shared = null;
+            }
+        });
         draw();
     }
 
@@ -78,24 +116,26 @@ public class RollingGauge extends Region {
     public void setConfig(Map<String, Object> cfg) {
         if (cfg == null) return;
 
-        min     = d(cfg, "range.min", min);
-        max     = d(cfg, "range.max", max);
-        history = (int) Math.max(30, d(cfg, "display.history", history));
+        min     = d(cfg, RANGE_MIN, min);
+        max     = d(cfg, RANGE_MAX, max);
+        history = (int) Math.max(30, d(cfg, DISPLAY_HISTORY, history));
+        windowMs = Math.max(100, d(cfg, DISPLAY_WINDOW_MS, history * 1000.0 / 60.0));
+        if (shared != null) shared.ensureCapacity(history);
 
-        bg   = color(s(cfg, "styles.bg",   "#0B0D12"));
-        grid = color(s(cfg, "styles.grid", "#223"));
-        line = color(s(cfg, "styles.line", "#00B2FF"));
+        bg   = color(s(cfg, STYLES_BG,   "#0B0D12"));
+        grid = color(s(cfg, STYLES_GRID, "#223"));
+        line = color(s(cfg, STYLES_LINE, "#00B2FF"));
 
-        double w = d(cfg, "layout.width",  canvas.getWidth());
-        double h = d(cfg, "layout.height", canvas.getHeight());
+        double w = d(cfg, LAYOUT_WIDTH,  canvas.getWidth());
+        double h = d(cfg, LAYOUT_HEIGHT, canvas.getHeight());
         canvas.setWidth(w);
         canvas.setHeight(h);
         setPrefSize(w, h);
 
-        simEnabled = b(cfg, "simulate.enabled", false);
-        simMin     = d(cfg, "simulate.min", min);
-        simMax     = d(cfg, "simulate.max", max);
-        simHz      = d(cfg, "simulate.speed_hz", 1.0);
+        simEnabled = b(cfg, SIMULATE_ENABLED, false);
+        simMin     = d(cfg, SIMULATE_MIN, min);
+        simMax     = d(cfg, SIMULATE_MAX, max);
+        simHz      = d(cfg, SIMULATE_SPEED_HZ, 1.0);
         phase = 0;
         lastNs = 0;
 
@@ -110,6 +150,13 @@ public class RollingGauge extends Region {
         currentValue = cv;
     }
 
+    /** Shared history of the bound key (see ChannelHistory.attach). */
+    public void setHistory(ChannelHistory.Series series) {
+        shared = series;
+        if (series != null) series.ensureCapacity(history);
+        draw();
+    }
+
     // --- Layout plumbing
 
     private void resizeCanvas() {
@@ -143,12 +190,22 @@ public class RollingGauge extends Region {
 
     // --- Drawing
 
+    private boolean useShared() {
+        return shared != null && !simEnabled;
+    }
+
     private void pushSample(double v) {
         samples.addLast(v);
         while (samples.size() > history) samples.removeFirst();
     }
 
     private void draw() {
+        long t0 = System.nanoTime();
+        render();
+        DRAW_NANOS.recordSince(t0);
+    }
+
+    private void render() {
         GraphicsContext g = canvas.getGraphicsContext2D();
         double W = canvas.getWidth();
         double H = canvas.getHeight();
@@ -170,6 +227,11 @@ public class RollingGauge extends Region {
             g.strokeLine(0, y, W, y);
         }
 
+        if (useShared()) {
+            renderShared(g, W, H);
+            return;
+        }
+
         // Nothing to draw yet
         if (samples.isEmpty()) return;
 
@@ -188,6 +250,32 @@ public class RollingGauge extends Region {
         }
     }
 
+    /** Line through per-bucket midpoints of the shared history, with min/max whiskers. */
+    private void renderShared(GraphicsContext g, double W, double H) {
+        int n = (int) Math.max(2, Math.min(history, W));
+        if (bucketMin.length != n) {
+            bucketMin = new double[n];
+            bucketMax = new double[n];
+        }
+        long now = Math.max(System.currentTimeMillis(), shared.lastTs());
+        shared.downsample(now - (long) windowMs, now + 1, bucketMin, bucketMax);
+
+        g.setStroke(line);
+        g.setLineWidth(Math.max(2, H * 0.02));
+        boolean havePrev = false;
+        double prevX = 0, prevY = 0;
+        for (int i = 0; i < n; i++) {
+            if (Double.isNaN(bucketMin[i])) { havePrev = false; continue; }
+            double x = W * i / (n - 1);
+            double yLo = map(bucketMin[i], min, max, H, 0);
+            double yHi = map(bucketMax[i], min, max, H, 0);
+            double y = (yLo + yHi) * 0.5;
+            if (yLo != yHi) g.strokeLine(x, yLo, x, yHi);
+            if (havePrev) g.strokeLine(prevX, prevY, x, y);
+            prevX = x; prevY = y; havePrev = true;
+        }
+    }
+
     private static double map(double v, double inMin, double inMax, double outMin, double outMax) {
         double t = (v - inMin) / Math.max(1e-9, (inMax - inMin));
         t = Math.max(0, Math.min(1, t));
@@ -196,37 +284,16 @@ public class RollingGauge extends Region {
 
     // --- Small config helpers
 
-    @SuppressWarnings("unchecked")
-    private static Object get(Map<String, Object> m, String path) {
-        String[] parts = path.split("\\.");
-        Object cur = m;
-        for (String p : parts) {
-            if (!(cur instanceof Map)) return null;
-            cur = ((Map<String, Object>) cur).get(p);
-            if (cur == null) return null;
-        }
-        return cur;
-    }
-
-    private static double d(Map<String, Object> m, String p, double def) {
-        Object o = get(m, p);
-        if (o instanceof Number n) return n.doubleValue();
-        if (o instanceof String s) {
-            try { return Double.parseDouble(s); } catch (Exception ignore) {}
-        }
-        return def;
+    private static double d(Map<String, Object> m, JsonConfig.Path p, double def) {
+        return p.getDouble(m, def);
     }
 
-    private static String s(Map<String, Object> m, String p, String def) {
-        Object o = get(m, p);
-        return (o == null) ? def : Objects.toString(o);
+    private static String s(Map<String, Object> m, JsonConfig.Path p, String def) {
+        return p.getString(m, def);
     }
 
-    private static boolean b(Map<String, Object> m, String p, boolean def) {
-        Object o = get(m, p);
-        if (o instanceof Boolean B) return B;
-        if (o instanceof String S) return Boolean.parseBoolean(S);
-        return def;
+    private static boolean b(Map<String, Object> m, JsonConfig.Path p, boolean def) {
+        return p.getBoolean(m, def);
     }
 
     private static Color color(String hex) {
@@ -1,5 +1,216 @@
 package gauges.ui.special;
 
-public class ShiftIndicator {
-    
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import gauges.helpers.JsonConfig;
+import gauges.system.Metrics;
+import gauges.system.pipeline.AlarmEngine;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.util.Duration;
+
+/**
+ * ShiftIndicator — row of shift lights driven by AlarmEngine rules.
+ *
+ * One light per rule whose id starts with shift.prefix, ordered by threshold (e.g. shift.1 ..
+ * shift.5 as "above" rules on rpm). A light is lit while its rule is active; when the last stage
+ * is active every light flashes. Redraws happen on transitions only, plus the flash timeline
+ * while the last stage holds.
+ *
+ * Config keys (all optional):
+ *   shift.prefix                     : rule id prefix (default "shift.")
+ *   shift.flash_hz                   : flash rate of the last stage (default 8, 0 = steady)
+ *   layout.width / layout.height     : numeric
+ *   styles.bg / styles.off           : hex color (background / unlit light)
+ *   styles.low / styles.mid / styles.high / styles.flash : hex color (first 40% / next 35% / rest / flash)
+ */
+public class ShiftIndicator extends Region {
+
+    private static final Metrics.Histogram DRAW_NANOS = Metrics.histogram("gauge.shift_indicator.draw.nanos");
+
+    private final Canvas canvas = new Canvas(560, 40);
+    private final AlarmEngine.Listener listener = this::onAlarms;
+    private final Set<String> lit = new HashSet<>();
+    private List<String> stages = List.of();
+    private AlarmEngine engine;
+
+    private final Timeline flash = new Timeline();
+    private boolean flashOn;
+
+    // Config defaults
+    private String prefix = "shift.";
+    private double flashHz = 8;
+    private Color bg = Color.web("#0D0F14");
+    private Color off = Color.web("#1B2230");
+    private Color low = Color.web("#28E0A6");
+    private Color mid = Color.web("#F2C94C");
+    private Color high = Color.web("#EB5757");
+    private Color flashColor = Color.web("#4DA3FF");
+
+    // Config paths, compiled once (see JsonConfig.path)
+    private static final JsonConfig.Path SHIFT_PREFIX = JsonConfig.path("shift.prefix");
+    private static final JsonConfig.Path SHIFT_FLASH_HZ = JsonConfig.path("shift.flash_hz");
+    private static final JsonConfig.Path LAYOUT_WIDTH = JsonConfig.path("layout.width");
+    private static final JsonConfig.Path LAYOUT_HEIGHT = JsonConfig.path("layout.height");
+    private static final JsonConfig.Path STYLES_BG = JsonConfig.path("styles.bg");
+    private static final JsonConfig.Path STYLES_OFF = JsonConfig.path("styles.off");
+    private static final JsonConfig.Path STYLES_LOW = JsonConfig.path("styles.low");
+    private static final JsonConfig.Path STYLES_MID = JsonConfig.path("styles.mid");
+    private static final JsonConfig.Path STYLES_HIGH = JsonConfig.path("styles.high");
+    private static final JsonConfig.Path STYLES_FLASH = JsonConfig.path("styles.flash");
+
+    public ShiftIndicator() {
+        getChildren().add(canvas);
+        flash.setCycleCount(Timeline.INDEFINITE);
+        widthProperty().addListener((o, a, b) -> resizeCanvas());
+        heightProperty().addListener((o, a, b) -> resizeCanvas());
+        // Only listen while shown (pooled gauges sit idle off-scene)
+        sceneProperty().addListener((o, a, b) -> { if (b != null) subscribe(); else unsubscribe(); });
+        setPrefSize(canvas.getWidth(), canvas.getHeight());
+        draw();
+    }
+
+    // --- Configuration ---
+    public void setConfig(Map<String, Object> cfg) {
+        if (cfg == null) return;
+
+        prefix = SHIFT_PREFIX.getString(cfg, "shift.");
+        flashHz = Math.max(0, SHIFT_FLASH_HZ.getDouble(cfg, 8));
+
+        bg = color(STYLES_BG.getString(cfg, "#0D0F14"));
+        off = color(STYLES_OFF.getString(cfg, "#1B2230"));
+        low = color(STYLES_LOW.getString(cfg, "#28E0A6"));
+        mid = color(STYLES_MID.getString(cfg, "#F2C94C"));
+        high = color(STYLES_HIGH.getString(cfg, "#EB5757"));
+        flashColor = color(STYLES_FLASH.getString(cfg, "#4DA3FF"));
+
+        double w = LAYOUT_WIDTH.getDouble(cfg, canvas.getWidth());
+        double h = LAYOUT_HEIGHT.getDouble(cfg, canvas.getHeight());
+        canvas.setWidth(w);
+        canvas.setHeight(h);
+        setPrefSize(w, h);
+
+        flash.stop();
+        flash.getKeyFrames().setAll(flashHz > 0
+                ? List.of(new KeyFrame(Duration.seconds(0.5 / flashHz), e -> { flashOn = !flashOn; draw(); }))
+                : List.of());
+        if (engine != null) {
+            unsubscribe();
+            subscribe();
+        }
+        draw();
+    }
+
+    // --- Alarm feed (FX thread) ---
+    private void subscribe() {
+        AlarmEngine e = AlarmEngine.global();
+        if (e == null || engine != null) return;
+        engine = e;
+        stages = new ArrayList<>(e.ruleIds(prefix));
+        lit.clear();
+        e.addListener(listener, Platform::runLater);
+        draw();
+    }
+
+    private void unsubscribe() {
+        if (engine == null) return;
+        engine.removeListener(listener);
+        engine = null;
+        updateFlash();
+    }
+
+    private void onAlarms(List<AlarmEngine.Alarm> transitions) {
+        boolean changed = false;
+        for (AlarmEngine.Alarm a : transitions) {
+            if (!a.id().startsWith(prefix)) continue;
+            changed |= a.active() ? lit.add(a.id()) : lit.remove(a.id());
+        }
+        if (!changed) return;
+        updateFlash();
+        draw();
+    }
+
+    private boolean lastStageLit() {
+        return engine != null && !stages.isEmpty() && lit.contains(stages.get(stages.size() - 1));
+    }
+
+    private void updateFlash() {
+        boolean want = lastStageLit() && flashHz > 0;
+        if (want && flash.getStatus() != Timeline.Status.RUNNING) {
+            flashOn = true;
+            flash.play();
+        } else if (!want && flash.getStatus() == Timeline.Status.RUNNING) {
+            flash.stop();
+            flashOn = false;
+        }
+    }
+
+    // --- Layout handling ---
+    private void resizeCanvas() {
+        double W = getWidth();
+        double H = getHeight();
+        if (W > 0 && H > 0) {
+            canvas.setWidth(W);
+            canvas.setHeight(H);
+            draw();
+        }
+    }
+
+    @Override
+    protected double computePrefWidth(double height) { return canvas.getWidth(); }
+
+    @Override
+    protected double computePrefHeight(double width) { return canvas.getHeight(); }
+
+    @Override
+    protected void layoutChildren() {
+        canvas.setLayoutX(0);
+        canvas.setLayoutY(0);
+        canvas.setWidth(getWidth());
+        canvas.setHeight(getHeight());
+        draw();
+    }
+
+    // --- Draw ---
+    private void draw() {
+        long t0 = System.nanoTime();
+        render();
+        DRAW_NANOS.recordSince(t0);
+    }
+
+    private void render() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        double W = canvas.getWidth();
+        double H = canvas.getHeight();
+
+        g.setFill(bg);
+        g.fillRect(0, 0, W, H);
+
+        int n = stages.size();
+        if (n == 0) return;
+        double slot = W / n;
+        double d = Math.min(slot * 0.8, H * 0.8);
+        boolean flashing = lastStageLit();
+        for (int i = 0; i < n; i++) {
+            Color c;
+            if (flashing) c = flashOn || flashHz == 0 ? flashColor : off;
+            else if (!lit.contains(stages.get(i))) c = off;
+            else c = i < n * 0.4 ? low : i < n * 0.75 ? mid : high;
+            g.setFill(c);
+            g.fillOval(slot * i + (slot - d) / 2, (H - d) / 2, d, d);
+        }
+    }
+
+    private static Color color(String hex) {
+        try { return Color.web(hex); } catch (Exception e) { return Color.WHITE; }
+    }
 }
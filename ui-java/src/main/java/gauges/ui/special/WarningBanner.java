@@ -1,5 +1,203 @@
 package gauges.ui.special;
 
-public class WarningBanner {
-    
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import gauges.helpers.JsonConfig;
+import gauges.system.Metrics;
+import gauges.system.pipeline.AlarmEngine;
+import javafx.application.Platform;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * WarningBanner — strip showing the most severe active alarm.
+ *
+ * Listens to AlarmEngine while on a scene and redraws only when an alarm turns on or off;
+ * nothing runs per frame. When several alarms are active the highest severity (then the most
+ * recent) is shown with a "+N" count.
+ *
+ * Config keys (all optional):
+ *   alarms.prefix                    : only rules whose id starts with this (default all)
+ *   alarms.min_severity              : info | warning | critical (default info)
+ *   display.idle_text                : text while nothing is active (default empty)
+ *   layout.width / layout.height     : numeric
+ *   styles.bg / styles.text          : hex color (idle background / text)
+ *   styles.info / styles.warning / styles.critical : hex color (background per severity)
+ */
+public class WarningBanner extends Region {
+
+    private static final Metrics.Histogram DRAW_NANOS = Metrics.histogram("gauge.warning_banner.draw.nanos");
+
+    private final Canvas canvas = new Canvas(560, 48);
+    private final Map<String, AlarmEngine.Alarm> shown = new LinkedHashMap<>();
+    private final AlarmEngine.Listener listener = this::onAlarms;
+    private AlarmEngine engine;
+
+    // Config defaults
+    private String prefix = "";
+    private AlarmEngine.Severity minSeverity = AlarmEngine.Severity.INFO;
+    private String idleText = "";
+    private Color bg = Color.web("#0D0F14");
+    private Color text = Color.web("#F4F6FA");
+    private Color info = Color.web("#1E5BB8");
+    private Color warning = Color.web("#C98A00");
+    private Color critical = Color.web("#C62828");
+
+    // Config paths, compiled once (see JsonConfig.path)
+    private static final JsonConfig.Path ALARMS_PREFIX = JsonConfig.path("alarms.prefix");
+    private static final JsonConfig.Path ALARMS_MIN_SEVERITY = JsonConfig.path("alarms.min_severity");
+    private static final JsonConfig.Path DISPLAY_IDLE_TEXT = JsonConfig.path("display.idle_text");
+    private static final JsonConfig.Path LAYOUT_WIDTH = JsonConfig.path("layout.width");
+    private static final JsonConfig.Path LAYOUT_HEIGHT = JsonConfig.path("layout.height");
+    private static final JsonConfig.Path STYLES_BG = JsonConfig.path("styles.bg");
+    private static final JsonConfig.Path STYLES_TEXT = JsonConfig.path("styles.text");
+    private static final JsonConfig.Path STYLES_INFO = JsonConfig.path("styles.info");
+    private static final JsonConfig.Path STYLES_WARNING = JsonConfig.path("styles.warning");
+    private static final JsonConfig.Path STYLES_CRITICAL = JsonConfig.path("styles.critical");
+
+    public WarningBanner() {
+        getChildren().add(canvas);
+        widthProperty().addListener((o, a, b) -> resizeCanvas());
+        heightProperty().addListener((o, a, b) -> resizeCanvas());
+        // Only listen while shown (pooled gauges sit idle off-scene)
+        sceneProperty().addListener((o, a, b) -> { if (b != null) subscribe(); else unsubscribe(); });
+        setPrefSize(canvas.getWidth(), canvas.getHeight());
+        draw();
+    }
+
+    // --- Configuration ---
+    public void setConfig(Map<String, Object> cfg) {
+        if (cfg == null) return;
+
+        prefix = ALARMS_PREFIX.getString(cfg, "");
+        try {
+            minSeverity = AlarmEngine.Severity.valueOf(ALARMS_MIN_SEVERITY.getString(cfg, "info").trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            minSeverity = AlarmEngine.Severity.INFO;
+        }
+        idleText = DISPLAY_IDLE_TEXT.getString(cfg, "");
+
+        bg = color(STYLES_BG.getString(cfg, "#0D0F14"));
+        text = color(STYLES_TEXT.getString(cfg, "#F4F6FA"));
+        info = color(STYLES_INFO.getString(cfg, "#1E5BB8"));
+        warning = color(STYLES_WARNING.getString(cfg, "#C98A00"));
+        critical = color(STYLES_CRITICAL.getString(cfg, "#C62828"));
+
+        double w = LAYOUT_WIDTH.getDouble(cfg, canvas.getWidth());
+        double h = LAYOUT_HEIGHT.getDouble(cfg, canvas.getHeight());
+        canvas.setWidth(w);
+        canvas.setHeight(h);
+        setPrefSize(w, h);
+
+        // Filters changed: rebuild from the engine's current state
+        if (engine != null) {
+            unsubscribe();
+            subscribe();
+        }
+        draw();
+    }
+
+    // --- Alarm feed (FX thread) ---
+    private void subscribe() {
+        AlarmEngine e = AlarmEngine.global();
+        if (e == null || engine != null) return;
+        engine = e;
+        shown.clear();
+        e.addListener(listener, Platform::runLater);
+        draw();
+    }
+
+    private void unsubscribe() {
+        if (engine == null) return;
+        engine.removeListener(listener);
+        engine = null;
+    }
+
+    private void onAlarms(List<AlarmEngine.Alarm> transitions) {
+        boolean changed = false;
+        for (AlarmEngine.Alarm a : transitions) {
+            if (!a.id().startsWith(prefix) || a.severity().compareTo(minSeverity) < 0) continue;
+            if (a.active()) shown.put(a.id(), a);
+            else shown.remove(a.id());
+            changed = true;
+        }
+        if (changed) draw();
+    }
+
+    /** Highest severity first, most recent among equals. */
+    private AlarmEngine.Alarm top() {
+        AlarmEngine.Alarm best = null;
+        for (AlarmEngine.Alarm a : shown.values()) {
+            if (best == null || a.severity().compareTo(best.severity()) >= 0) best = a;
+        }
+        return best;
+    }
+
+    // --- Layout handling ---
+    private void resizeCanvas() {
+        double W = getWidth();
+        double H = getHeight();
+        if (W > 0 && H > 0) {
+            canvas.setWidth(W);
+            canvas.setHeight(H);
+            draw();
+        }
+    }
+
+    @Override
+    protected double computePrefWidth(double height) { return canvas.getWidth(); }
+
+    @Override
+    protected double computePrefHeight(double width) { return canvas.getHeight(); }
+
+    @Override
+    protected void layoutChildren() {
+        canvas.setLayoutX(0);
+        canvas.setLayoutY(0);
+        canvas.setWidth(getWidth());
+        canvas.setHeight(getHeight());
+        draw();
+    }
+
+    // --- Draw ---
+    private void draw() {
+        long t0 = System.nanoTime();
+        render();
+        DRAW_NANOS.recordSince(t0);
+    }
+
+    private void render() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        double W = canvas.getWidth();
+        double H = canvas.getHeight();
+
+        AlarmEngine.Alarm a = top();
+        g.setFill(a == null ? bg : switch (a.severity()) {
+            case INFO -> info;
+            case WARNING -> warning;
+            case CRITICAL -> critical;
+        });
+        g.fillRect(0, 0, W, H);
+
+        String msg = a == null ? idleText : a.message() + (shown.size() > 1 ? "  (+" + (shown.size() - 1) + ")" : "");
+        if (msg.isEmpty()) return;
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.CENTER);
+        g.setFill(text);
+        g.setFont(Font.font(null, FontWeight.BOLD, Math.max(12, H * 0.5)));
+        g.fillText(msg, W / 2, H / 2, W * 0.96);
+    }
+
+    private static Color color(String hex) {
+        try { return Color.web(hex); } catch (Exception e) { return Color.WHITE; }
+    }
 }